@@ -0,0 +1,60 @@
+package com.reynaldoabreu.libraryapi.benchmark;
+
+import com.reynaldoabreu.libraryapi.LibraryApiApplication;
+import com.reynaldoabreu.libraryapi.model.entity.Book;
+import com.reynaldoabreu.libraryapi.service.BookService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sobe a aplicação sem servidor web sobre um H2 em memória exclusivo e popula o catálogo.
+ */
+final class BenchmarkApplication {
+
+    private static final int SEED_CHUNK_SIZE = 1000;
+
+    private BenchmarkApplication() {
+    }
+
+    static ConfigurableApplicationContext start(String name, String... properties) {
+
+        List<String> args = new ArrayList<>(List.of(
+                "spring.datasource.url=jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                "spring.devtools.restart.enabled=false",
+                "spring.main.banner-mode=off",
+                "logging.level.root=WARN"));
+        args.addAll(List.of(properties));
+
+        return new SpringApplicationBuilder(LibraryApiApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(args.toArray(new String[0]))
+                .run();
+    }
+
+    static void seed(BookService service, int catalogSize) {
+
+        List<Book> chunk = new ArrayList<>(SEED_CHUNK_SIZE);
+        for (int i = 0; i < catalogSize; i++) {
+            chunk.add(book(i));
+            if (chunk.size() == SEED_CHUNK_SIZE) {
+                service.saveAll(chunk);
+                chunk = new ArrayList<>(SEED_CHUNK_SIZE);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            service.saveAll(chunk);
+        }
+    }
+
+    static Book book(int i) {
+        return Book.builder()
+                .title((i % 10 == 0 ? "As aventuras " : "Memorias ") + i)
+                .author("Autor " + (i % 500))
+                .isbn(String.format("978%010d", i))
+                .build();
+    }
+}
@@ -0,0 +1,64 @@
+package com.reynaldoabreu.libraryapi.benchmark;
+
+import com.reynaldoabreu.libraryapi.api.dto.BookDTO;
+import com.reynaldoabreu.libraryapi.api.dto.BookPageDTO;
+import com.reynaldoabreu.libraryapi.api.resource.BookController;
+import com.reynaldoabreu.libraryapi.model.entity.Book;
+import com.reynaldoabreu.libraryapi.service.BookService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chama os métodos do BookController diretamente para medir consulta e mapeamento
+ * para DTO sem o custo do servlet.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookControllerBenchmark {
+
+    @Param({"10000"})
+    int catalogSize;
+
+    @Param({"20", "500"})
+    int pageSize;
+
+    private ConfigurableApplicationContext context;
+    private BookController controller;
+    private BookDTO filter;
+    private long existingId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("book-controller-" + catalogSize + "-" + pageSize);
+        BookService service = context.getBean(BookService.class);
+        BenchmarkApplication.seed(service, catalogSize);
+        controller = context.getBean(BookController.class);
+        filter = BookDTO.builder().author("autor 1").build();
+        existingId = service.findAfter(new Book(), null, 1).getContent().get(0).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public BookPageDTO find() {
+        return controller.find(filter, PageRequest.of(0, pageSize), false);
+    }
+
+    @Benchmark
+    public ResponseEntity<BookDTO> get() {
+        return controller.get(existingId, new ServletWebRequest(new MockHttpServletRequest()));
+    }
+}
@@ -0,0 +1,86 @@
+package com.reynaldoabreu.libraryapi.benchmark;
+
+import com.reynaldoabreu.libraryapi.exception.BusinessException;
+import com.reynaldoabreu.libraryapi.model.entity.Book;
+import com.reynaldoabreu.libraryapi.service.BookService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caminhos quentes do BookServiceImp sobre H2 em memória com catálogos de tamanhos diferentes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookServiceBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    int catalogSize;
+
+    private ConfigurableApplicationContext context;
+    private BookService service;
+    private final AtomicInteger nextIsbn = new AtomicInteger();
+    private Book filter;
+    private String existingIsbn;
+    private int deepPage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("book-service-" + catalogSize);
+        service = context.getBean(BookService.class);
+        BenchmarkApplication.seed(service, catalogSize);
+        nextIsbn.set(catalogSize);
+        filter = Book.builder().title("aventuras").build();
+        existingIsbn = BenchmarkApplication.book(catalogSize / 2).getIsbn();
+        deepPage = Math.max(0, catalogSize / 10 / 20 - 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<Book> findFirstPage() {
+        return service.find(filter, PageRequest.of(0, 20));
+    }
+
+    @Benchmark
+    public Page<Book> findDeepPage() {
+        return service.find(filter, PageRequest.of(deepPage, 20));
+    }
+
+    @Benchmark
+    public Slice<Book> findAfterKeyset() {
+        return service.findAfter(filter, (long) catalogSize / 2, 20);
+    }
+
+    @Benchmark
+    public Optional<Book> getBookByIsbn() {
+        return service.getBookByIsbn(existingIsbn);
+    }
+
+    @Benchmark
+    public Book saveNewIsbn() {
+        return service.save(BenchmarkApplication.book(nextIsbn.getAndIncrement()));
+    }
+
+    @Benchmark
+    public Object saveDuplicateIsbn() {
+        try {
+            return service.save(Book.builder().title("Duplicado").author("Autor").isbn(existingIsbn).build());
+        } catch (BusinessException ex) {
+            return ex;
+        }
+    }
+}
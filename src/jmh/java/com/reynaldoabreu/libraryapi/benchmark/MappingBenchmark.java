@@ -0,0 +1,76 @@
+package com.reynaldoabreu.libraryapi.benchmark;
+
+import com.reynaldoabreu.libraryapi.api.dto.BookDTO;
+import com.reynaldoabreu.libraryapi.api.dto.LoanDto;
+import com.reynaldoabreu.libraryapi.api.mapper.BookMapper;
+import com.reynaldoabreu.libraryapi.api.mapper.LoanMapper;
+import com.reynaldoabreu.libraryapi.model.entity.Book;
+import com.reynaldoabreu.libraryapi.model.entity.Loan;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara os mapeadores escritos à mão com o caminho anterior via ModelMapper.
+ * Rode com {@code -prof gc} para ver também a alocação por operação.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingBenchmark {
+
+    private final ModelMapper modelMapper = new ModelMapper();
+    private final BookMapper bookMapper = new BookMapper();
+    private final LoanMapper loanMapper = new LoanMapper();
+
+    private BookDTO dto;
+    private Book book;
+    private LoanDto loanDto;
+    private LocalDate today;
+
+    @Setup
+    public void setUp() {
+        dto = BookDTO.builder().id(1L).title("As aventuras").author("Arthur").isbn("123456").build();
+        book = Book.builder().id(1L).title("As aventuras").author("Arthur").isbn("123456").build();
+        loanDto = LoanDto.builder().isbn("123456").costumer("Fulano").build();
+        today = LocalDate.now();
+    }
+
+    @Benchmark
+    public Book modelMapperToEntity() {
+        return modelMapper.map(dto, Book.class);
+    }
+
+    @Benchmark
+    public Book bookMapperToEntity() {
+        return bookMapper.toEntity(dto);
+    }
+
+    @Benchmark
+    public BookDTO modelMapperToDto() {
+        return modelMapper.map(book, BookDTO.class);
+    }
+
+    @Benchmark
+    public BookDTO bookMapperToDto() {
+        return bookMapper.toDto(book);
+    }
+
+    @Benchmark
+    public Loan modelMapperLoan() {
+        Loan loan = modelMapper.map(loanDto, Loan.class);
+        loan.setBook(book);
+        loan.setLoanDate(today);
+        return loan;
+    }
+
+    @Benchmark
+    public Loan loanMapperLoan() {
+        return loanMapper.toEntity(loanDto, book, today);
+    }
+}
@@ -0,0 +1,100 @@
+package com.reynaldoabreu.libraryapi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reynaldoabreu.libraryapi.api.dto.BookDTO;
+import com.reynaldoabreu.libraryapi.api.dto.BookPageDTO;
+import com.reynaldoabreu.libraryapi.api.mapper.BookMapper;
+import com.reynaldoabreu.libraryapi.model.entity.Book;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Serialização JSON da página de livros: o formato antigo (DTOs + PageImpl) contra o
+ * {@link BookPageDTO} escrito direto no gerador. Ambos partem das entidades, como no controller,
+ * e escrevem num stream que só conta bytes; o tamanho de cada resposta é impresso no setup.
+ * Para acompanhar alocação por operação: {@code -Djmh.args="PageSerialization -prof gc"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PageSerializationBenchmark {
+
+    @Param({"20", "500", "1000"})
+    int pageSize;
+
+    private ObjectMapper objectMapper;
+    private BookMapper mapper;
+    private Page<Book> page;
+    private CountingOutputStream out;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        mapper = new BookMapper();
+        out = new CountingOutputStream();
+        List<Book> content = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            Book book = BenchmarkApplication.book(i);
+            book.setId((long) i + 1);
+            content.add(book);
+        }
+        page = new PageImpl<>(content, PageRequest.of(3, pageSize), 100_000);
+
+        System.out.printf("%nresponse bytes (pageSize=%d): pageImpl=%d, bookPage=%d%n",
+                pageSize, pageImpl(), bookPage());
+    }
+
+    @Benchmark
+    public long pageImpl() throws IOException {
+        List<BookDTO> list = page.getContent()
+                .stream()
+                .map(mapper::toDto)
+                .collect(Collectors.toList());
+        out.reset();
+        objectMapper.writeValue(out, new PageImpl<>(list, page.getPageable(), page.getTotalElements()));
+        return out.count;
+    }
+
+    @Benchmark
+    public long bookPage() throws IOException {
+        out.reset();
+        objectMapper.writeValue(out, BookPageDTO.of(page));
+        return out.count;
+    }
+
+    static final class CountingOutputStream extends OutputStream {
+
+        long count;
+
+        void reset() {
+            count = 0;
+        }
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
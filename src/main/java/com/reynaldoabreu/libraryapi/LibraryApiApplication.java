@@ -1,16 +1,24 @@
 package com.reynaldoabreu.libraryapi;
 
-import org.modelmapper.ModelMapper;
+import com.reynaldoabreu.libraryapi.api.mapper.BookMapper;
+import com.reynaldoabreu.libraryapi.api.mapper.LoanMapper;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.context.annotation.Bean;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class LibraryApiApplication {
 
 	@Bean
-	public ModelMapper modelMapper(){
-		return new ModelMapper();
+	public BookMapper bookMapper(){
+		return new BookMapper();
+	}
+
+	@Bean
+	public LoanMapper loanMapper(){
+		return new LoanMapper();
 	}
 
 	public static void main(String[] args) {
@@ -2,7 +2,15 @@ package com.reynaldoabreu.libraryapi.api;
 
 import com.reynaldoabreu.libraryapi.api.exception.ApiErrors;
 import com.reynaldoabreu.libraryapi.exception.BusinessException;
+import com.reynaldoabreu.libraryapi.exception.ConflictException;
+import com.reynaldoabreu.libraryapi.exception.QueueFullException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -14,9 +22,18 @@ import org.springframework.web.server.ResponseStatusException;
 @RestControllerAdvice
 public class ApplicationControllerAdvice {
 
+    static final String ERRORS_METRIC = "library.api.errors";
+
+    private final MeterRegistry registry;
+
+    public ApplicationControllerAdvice(ObjectProvider<MeterRegistry> registry) {
+        this.registry = registry.getIfAvailable(() -> Metrics.globalRegistry);
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ApiErrors handleValidationException(MethodArgumentNotValidException ex){
+        count(ex, HttpStatus.BAD_REQUEST);
         BindingResult bindingResult = ex.getBindingResult();
 
         return  new ApiErrors(bindingResult);
@@ -25,12 +42,42 @@ public class ApplicationControllerAdvice {
     @ExceptionHandler(BusinessException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ApiErrors handleBusinessException(BusinessException ex){
+        count(ex, HttpStatus.BAD_REQUEST);
+        return new ApiErrors(ex);
+    }
+
+    @ExceptionHandler(ConflictException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ApiErrors handleConflictException(ConflictException ex){
+        count(ex, HttpStatus.CONFLICT);
         return new ApiErrors(ex);
     }
 
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+    public ApiErrors handleOptimisticLockingFailure(OptimisticLockingFailureException ex){
+        count(ex, HttpStatus.PRECONDITION_FAILED);
+        return new ApiErrors("Book was modified");
+    }
+
+    @ExceptionHandler(QueueFullException.class)
+    public ResponseEntity<ApiErrors> handleQueueFullException(QueueFullException ex){
+        count(ex, HttpStatus.TOO_MANY_REQUESTS);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new ApiErrors(ex.getMessage()));
+    }
+
     @ExceptionHandler(ResponseStatusException.class)
     public ResponseEntity<ApiErrors> handleResponseStatusException(ResponseStatusException ex){
+        count(ex, ex.getStatusCode());
         return new ResponseEntity<>(new ApiErrors(ex), ex.getStatusCode());
     }
 
+    private void count(Exception ex, HttpStatusCode status) {
+        registry.counter(ERRORS_METRIC,
+                "exception", ex.getClass().getSimpleName(),
+                "status", String.valueOf(status.value())).increment();
+    }
+
 }
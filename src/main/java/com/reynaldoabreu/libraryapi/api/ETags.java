@@ -0,0 +1,80 @@
+package com.reynaldoabreu.libraryapi.api;
+
+import com.reynaldoabreu.libraryapi.model.entity.Book;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ETags fortes derivados da versão otimista do livro, usados nas requisições condicionais.
+ */
+public final class ETags {
+
+    private ETags() {
+    }
+
+    public static String of(Book book) {
+        return of(book.getVersion());
+    }
+
+    public static String of(Long version) {
+
+        if (version == null) {
+            return null;
+        }
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Versões aceitas pelo {@code If-Match}, para os comandos condicionais executados direto no banco.
+     * Retorna {@code null} quando o cabeçalho está ausente ou é {@code *}; ETags fracos ou malformados
+     * são descartados, já que nunca casam na comparação forte.
+     */
+    public static List<Long> versions(String ifMatch) {
+
+        if (ifMatch == null) {
+            return null;
+        }
+
+        List<Long> versions = new ArrayList<>();
+        for (String candidate : ifMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*")) {
+                return null;
+            }
+            if (candidate.length() > 2 && candidate.startsWith("\"") && candidate.endsWith("\"")) {
+                try {
+                    versions.add(Long.valueOf(candidate.substring(1, candidate.length() - 1)));
+                } catch (NumberFormatException ignored) {
+                    // não é um ETag emitido por nós: não casa com nenhuma versão
+                }
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Valida o cabeçalho {@code If-Match}: ausente não restringe, {@code *} aceita qualquer versão
+     * e as demais entradas usam comparação forte (ETags fracos nunca casam).
+     */
+    public static void checkIfMatch(String ifMatch, Book book) {
+
+        if (ifMatch == null || matches(ifMatch, of(book))) {
+            return;
+        }
+        throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Book was modified");
+    }
+
+    static boolean matches(String ifMatch, String etag) {
+
+        for (String candidate : ifMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*") || (etag != null && candidate.equals(etag))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,26 @@
+package com.reynaldoabreu.libraryapi.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Disponibilidade de um livro pedido por id ou ISBN; ISBN desconhecido volta sem {@code id}
+ * nem {@code available}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AvailabilityDTO {
+
+    private Long id;
+
+    private String isbn;
+
+    private Boolean available;
+
+}
@@ -0,0 +1,38 @@
+package com.reynaldoabreu.libraryapi.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Livro criado ou alterado desde a marca d'água; uma remoção vem só com {@code id},
+ * {@code changedAt} e {@code deleted = true}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BookChangeDTO {
+
+    private Long id;
+
+    private String title;
+
+    private String author;
+
+    private String isbn;
+
+    private Long version;
+
+    private Instant createdAt;
+
+    private Instant changedAt;
+
+    private boolean deleted;
+
+}
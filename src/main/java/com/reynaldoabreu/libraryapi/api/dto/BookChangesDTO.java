@@ -0,0 +1,28 @@
+package com.reynaldoabreu.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Página do sincronismo incremental. {@code watermark} sempre vem preenchida: com
+ * {@code hasNext} a próxima página segue na hora, sem ele a próxima sincronização parte dela.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookChangesDTO {
+
+    private List<BookChangeDTO> content;
+
+    private int size;
+
+    private boolean hasNext;
+
+    private String watermark;
+
+}
@@ -0,0 +1,30 @@
+package com.reynaldoabreu.libraryapi.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookImportDTO {
+
+    private long received;
+
+    private long created;
+
+    private long rejected;
+
+    @Builder.Default
+    private List<String> duplicateIsbns = new ArrayList<>();
+
+    private String error;
+
+}
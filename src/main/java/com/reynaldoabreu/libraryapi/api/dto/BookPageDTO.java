@@ -0,0 +1,41 @@
+package com.reynaldoabreu.libraryapi.api.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.reynaldoabreu.libraryapi.model.entity.Book;
+import lombok.Value;
+import org.springframework.data.domain.Page;
+
+import java.util.List;
+import java.util.function.LongPredicate;
+
+/**
+ * Página de livros com formato fixo: {@code page}, {@code size}, {@code totalElements},
+ * {@code totalPages} e {@code content}. Guarda as entidades e deixa o {@link BookPageSerializer}
+ * escrevê-las direto no gerador, sem uma lista intermediária de {@link BookDTO}.
+ * Com {@code available} preenchido, cada livro ganha o campo {@code available}.
+ */
+@Value
+@JsonSerialize(using = BookPageSerializer.class)
+public class BookPageDTO {
+
+    List<Book> content;
+
+    int page;
+
+    int size;
+
+    long totalElements;
+
+    int totalPages;
+
+    LongPredicate available;
+
+    public static BookPageDTO of(Page<Book> page) {
+        return of(page, null);
+    }
+
+    public static BookPageDTO of(Page<Book> page, LongPredicate available) {
+        return new BookPageDTO(page.getContent(), page.getNumber(), page.getSize(),
+                page.getTotalElements(), page.getTotalPages(), available);
+    }
+}
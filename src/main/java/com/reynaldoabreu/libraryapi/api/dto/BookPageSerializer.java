@@ -0,0 +1,58 @@
+package com.reynaldoabreu.libraryapi.api.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.reynaldoabreu.libraryapi.model.entity.Book;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.LongPredicate;
+
+/**
+ * Escreve cada {@link Book} da página com os mesmos campos do {@link BookDTO}, token a token,
+ * sem criar DTOs nem passar pela introspecção de beans do Jackson.
+ */
+public class BookPageSerializer extends StdSerializer<BookPageDTO> {
+
+    public BookPageSerializer() {
+        super(BookPageDTO.class);
+    }
+
+    @Override
+    public void serialize(BookPageDTO page, JsonGenerator gen, SerializerProvider provider) throws IOException {
+
+        gen.writeStartObject();
+        gen.writeNumberField("page", page.getPage());
+        gen.writeNumberField("size", page.getSize());
+        gen.writeNumberField("totalElements", page.getTotalElements());
+        gen.writeNumberField("totalPages", page.getTotalPages());
+
+        List<Book> content = page.getContent();
+        gen.writeFieldName("content");
+        gen.writeStartArray(content, content.size());
+        LongPredicate available = page.getAvailable();
+        for (int i = 0; i < content.size(); i++) {
+            writeBook(content.get(i), available, gen);
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
+
+    static void writeBook(Book book, LongPredicate available, JsonGenerator gen) throws IOException {
+
+        gen.writeStartObject();
+        if (book.getId() == null) {
+            gen.writeNullField("id");
+        } else {
+            gen.writeNumberField("id", book.getId());
+        }
+        gen.writeStringField("title", book.getTitle());
+        gen.writeStringField("author", book.getAuthor());
+        gen.writeStringField("isbn", book.getIsbn());
+        if (available != null && book.getId() != null) {
+            gen.writeBooleanField("available", available.test(book.getId()));
+        }
+        gen.writeEndObject();
+    }
+}
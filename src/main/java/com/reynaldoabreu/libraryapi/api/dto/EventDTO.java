@@ -0,0 +1,39 @@
+package com.reynaldoabreu.libraryapi.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import com.reynaldoabreu.libraryapi.model.entity.OutboxEvent;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Evento do fluxo de mudanças; {@code id} é a posição para retomar a leitura.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventDTO {
+
+    private Long id;
+
+    private String aggregate;
+
+    private Long aggregateId;
+
+    private String type;
+
+    private Instant createdAt;
+
+    // já é JSON na outbox: vai para a resposta sem ser lido de novo
+    @JsonRawValue
+    private String payload;
+
+    public static EventDTO of(OutboxEvent event) {
+        return new EventDTO(event.getId(), event.getAggregate(), event.getAggregateId(), event.getType(),
+                event.getCreatedAt(), event.getPayload());
+    }
+}
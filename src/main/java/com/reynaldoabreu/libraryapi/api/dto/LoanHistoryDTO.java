@@ -0,0 +1,23 @@
+package com.reynaldoabreu.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class LoanHistoryDTO {
+
+    private Long id;
+    private String costumer;
+    private LocalDate loanDate;
+    private Boolean returned;
+    private Long bookId;
+    private String isbn;
+    private String title;
+}
@@ -0,0 +1,17 @@
+package com.reynaldoabreu.libraryapi.api.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ReturnedLoanDTO {
+
+    @NotNull
+    private Boolean returned;
+}
@@ -0,0 +1,37 @@
+package com.reynaldoabreu.libraryapi.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.reynaldoabreu.libraryapi.model.projection.AuthorCount;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class StatsDTO {
+
+    private long books;
+
+    private long authors;
+
+    private long loans;
+
+    private long activeLoans;
+
+    private long availableBooks;
+
+    private List<AuthorCount> topAuthors;
+
+    /** Livros do autor pedido em {@code ?author=}. */
+    private Long authorBooks;
+
+    /** Empréstimos ativos do livro pedido em {@code ?book=}: 0 ou 1, um por livro no máximo. */
+    private Long bookActiveLoans;
+
+}
@@ -24,6 +24,10 @@ public class ApiErrors {
         this.errors = Collections.singletonList(ex.getReason());
     }
 
+    public ApiErrors(String message) {
+        this.errors = Collections.singletonList(message);
+    }
+
     public List<String> getErrors() {
         return errors;
     }
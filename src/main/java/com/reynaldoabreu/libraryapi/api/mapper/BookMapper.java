@@ -0,0 +1,31 @@
+package com.reynaldoabreu.libraryapi.api.mapper;
+
+import com.reynaldoabreu.libraryapi.api.dto.BookDTO;
+import com.reynaldoabreu.libraryapi.model.entity.Book;
+
+/**
+ * Conversão direta entre {@link BookDTO} e {@link Book}, sem reflexão.
+ */
+public class BookMapper {
+
+    public Book toEntity(BookDTO dto) {
+
+        if (dto == null) {
+            return null;
+        }
+        Book book = new Book();
+        book.setId(dto.getId());
+        book.setTitle(dto.getTitle());
+        book.setAuthor(dto.getAuthor());
+        book.setIsbn(dto.getIsbn());
+        return book;
+    }
+
+    public BookDTO toDto(Book book) {
+
+        if (book == null) {
+            return null;
+        }
+        return new BookDTO(book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn());
+    }
+}
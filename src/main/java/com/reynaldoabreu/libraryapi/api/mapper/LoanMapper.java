@@ -0,0 +1,30 @@
+package com.reynaldoabreu.libraryapi.api.mapper;
+
+import com.reynaldoabreu.libraryapi.api.dto.LoanDto;
+import com.reynaldoabreu.libraryapi.api.dto.LoanHistoryDTO;
+import com.reynaldoabreu.libraryapi.model.entity.Book;
+import com.reynaldoabreu.libraryapi.model.entity.Loan;
+import com.reynaldoabreu.libraryapi.model.projection.LoanView;
+
+import java.time.LocalDate;
+
+/**
+ * Conversão direta entre os DTOs de empréstimo e {@link Loan}/{@link LoanView}, sem reflexão.
+ */
+public class LoanMapper {
+
+    public Loan toEntity(LoanDto dto, Book book, LocalDate loanDate) {
+
+        Loan loan = new Loan();
+        loan.setBook(book);
+        loan.setCostumer(dto.getCostumer());
+        loan.setLoanDate(loanDate);
+        return loan;
+    }
+
+    public LoanHistoryDTO toHistoryDto(LoanView view) {
+
+        return new LoanHistoryDTO(view.getId(), view.getCostumer(), view.getLoanDate(), view.getReturned(),
+                view.getBookId(), view.getIsbn(), view.getTitle());
+    }
+}
@@ -0,0 +1,57 @@
+package com.reynaldoabreu.libraryapi.api.ratelimit;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpMethod;
+
+import java.util.regex.Pattern;
+
+/**
+ * Grupos de endpoints com limites próprios. Leituras de um único livro não são limitadas.
+ */
+public enum EndpointClass {
+
+    /**
+     * Listagem com filtros, busca textual, exportação, sincronismo e disponibilidade de livros,
+     * e a consulta do histórico de empréstimos (geral e de um livro).
+     */
+    SEARCH,
+
+    /** Criação, alteração e remoção de livros. */
+    WRITE,
+
+    /** Criação e devolução de empréstimos. */
+    LOAN;
+
+    private static final String BOOKS = "/api/books";
+    private static final String LOANS = "/api/loans";
+    private static final Pattern BOOK_LOANS = Pattern.compile("/\\d+/loans");
+
+    /**
+     * @return a classe do endpoint, ou {@code null} quando a requisição não é limitada
+     */
+    static EndpointClass of(HttpServletRequest request) {
+
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        String method = request.getMethod();
+        boolean read = HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method);
+        if (path.startsWith(LOANS)) {
+            return read ? SEARCH : LOAN;
+        }
+        if (!path.startsWith(BOOKS)) {
+            return null;
+        }
+
+        String rest = path.substring(BOOKS.length());
+        if (rest.equals("/availability")) {
+            return SEARCH;
+        }
+        if (!read) {
+            return WRITE;
+        }
+        if (rest.isEmpty() || rest.equals("/") || rest.equals("/search") || rest.equals("/export")
+                || rest.equals("/changes") || BOOK_LOANS.matcher(rest).matches()) {
+            return SEARCH;
+        }
+        return null;
+    }
+}
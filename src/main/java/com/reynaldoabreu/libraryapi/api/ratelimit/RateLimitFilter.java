@@ -0,0 +1,122 @@
+package com.reynaldoabreu.libraryapi.api.ratelimit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.reynaldoabreu.libraryapi.api.exception.ApiErrors;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Limita requisições por cliente e classe de endpoint antes de chegarem aos controllers.
+ * Chaves de API configuradas têm baldes e limites próprios; o resto é identificado pelo IP,
+ * assim uma chave inventada não serve para escapar do limite.
+ */
+@Component
+@Profile("!reactive")
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@ConditionalOnProperty(prefix = "library.rate-limit", name = "enabled", havingValue = "true")
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    static final String METRIC = "library.ratelimit.requests";
+
+    private final RateLimitProperties properties;
+    private final ObjectMapper objectMapper;
+    private final LongSupplier nanoTime;
+    private final Map<EndpointClass, Cache<String, TokenBucket>> buckets = new EnumMap<>(EndpointClass.class);
+    private final Map<EndpointClass, Counter> allowed = new EnumMap<>(EndpointClass.class);
+    private final Map<EndpointClass, Counter> rejected = new EnumMap<>(EndpointClass.class);
+
+    @Autowired
+    public RateLimitFilter(RateLimitProperties properties, ObjectMapper objectMapper,
+                           ObjectProvider<MeterRegistry> registry) {
+        this(properties, objectMapper, registry.getIfAvailable(() -> Metrics.globalRegistry), System::nanoTime);
+    }
+
+    RateLimitFilter(RateLimitProperties properties, ObjectMapper objectMapper, MeterRegistry registry,
+                    LongSupplier nanoTime) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.nanoTime = nanoTime;
+
+        for (EndpointClass endpoint : EndpointClass.values()) {
+            String tag = endpoint.name().toLowerCase();
+            Cache<String, TokenBucket> cache = Caffeine.newBuilder()
+                    .maximumSize(properties.getMaximumClients())
+                    .expireAfterAccess(properties.getIdleTimeout())
+                    .build();
+            buckets.put(endpoint, cache);
+            allowed.put(endpoint, Counter.builder(METRIC).tag("endpoint", tag).tag("outcome", "allowed").register(registry));
+            rejected.put(endpoint, Counter.builder(METRIC).tag("endpoint", tag).tag("outcome", "rejected").register(registry));
+            Gauge.builder("library.ratelimit.clients", cache, Cache::estimatedSize)
+                    .tag("endpoint", tag)
+                    .register(registry);
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+
+        EndpointClass endpoint = EndpointClass.of(request);
+        if (endpoint == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        String apiKey = request.getHeader(properties.getApiKeyHeader());
+        if (apiKey != null && !properties.getClients().containsKey(apiKey)) {
+            apiKey = null;
+        }
+        String client = apiKey != null ? apiKey : request.getRemoteAddr();
+
+        long now = nanoTime.getAsLong();
+        long wait = bucket(endpoint, client, apiKey, now).tryAcquire(now);
+
+        if (wait == 0) {
+            allowed.get(endpoint).increment();
+            chain.doFilter(request, response);
+            return;
+        }
+
+        rejected.get(endpoint).increment();
+        long retryAfter = Math.max(1, (wait + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new ApiErrors("Too many requests"));
+    }
+
+    private TokenBucket bucket(EndpointClass endpoint, String client, String apiKey, long now) {
+
+        Cache<String, TokenBucket> cache = buckets.get(endpoint);
+        TokenBucket bucket = cache.getIfPresent(client);
+        if (bucket == null) {
+            bucket = cache.get(client, ignored -> new TokenBucket(properties.limitFor(apiKey, endpoint), now));
+        }
+        return bucket;
+    }
+}
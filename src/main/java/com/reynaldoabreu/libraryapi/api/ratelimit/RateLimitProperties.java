@@ -0,0 +1,65 @@
+package com.reynaldoabreu.libraryapi.api.ratelimit;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "library.rate-limit")
+public class RateLimitProperties {
+
+    /**
+     * Desligado por padrão: sem chave, o cliente é o IP remoto da conexão. Atrás de proxy ou
+     * balanceador, ligue junto com {@code server.forward-headers-strategy=framework}, senão
+     * todos os clientes dividem o balde do IP do proxy.
+     */
+    private boolean enabled = false;
+
+    /** Cabeçalho com a chave do cliente; chaves fora de {@link #clients} são limitadas pelo IP. */
+    private String apiKeyHeader = "X-API-Key";
+
+    /** Limites padrão por classe de endpoint, aplicados por IP. */
+    private Map<EndpointClass, Limit> limits = defaultLimits();
+
+    /** Limites próprios por chave de cliente conhecida; classes ausentes usam o padrão. */
+    private Map<String, Map<EndpointClass, Limit>> clients = new HashMap<>();
+
+    /** Máximo de clientes acompanhados por classe de endpoint. */
+    private long maximumClients = 100_000;
+
+    /** Tempo sem requisições até o balde do cliente ser descartado. */
+    private Duration idleTimeout = Duration.ofMinutes(10);
+
+    Limit limitFor(String apiKey, EndpointClass endpoint) {
+
+        Map<EndpointClass, Limit> client = apiKey == null ? null : clients.get(apiKey);
+        Limit limit = client == null ? null : client.get(endpoint);
+        return limit != null ? limit : limits.get(endpoint);
+    }
+
+    private static Map<EndpointClass, Limit> defaultLimits() {
+        Map<EndpointClass, Limit> limits = new EnumMap<>(EndpointClass.class);
+        limits.put(EndpointClass.SEARCH, new Limit(10, 20));
+        limits.put(EndpointClass.WRITE, new Limit(5, 10));
+        limits.put(EndpointClass.LOAN, new Limit(5, 10));
+        return limits;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Limit {
+
+        /** Ritmo sustentado de requisições por segundo. */
+        private double permitsPerSecond;
+
+        /** Requisições aceitas de uma vez com o balde cheio. */
+        private int burst;
+    }
+}
@@ -0,0 +1,38 @@
+package com.reynaldoabreu.libraryapi.api.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Balde de fichas no formato GCRA: o estado é só o instante teórico da próxima chegada,
+ * atualizado com compare-and-set, sem locks nem thread de reposição.
+ */
+final class TokenBucket {
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong theoreticalArrival;
+
+    TokenBucket(RateLimitProperties.Limit limit, long now) {
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / limit.getPermitsPerSecond()));
+        this.toleranceNanos = intervalNanos * (Math.max(1, limit.getBurst()) - 1);
+        this.theoreticalArrival = new AtomicLong(now);
+    }
+
+    /**
+     * @return {@code 0} se a requisição foi aceita, senão quantos nanossegundos esperar
+     */
+    long tryAcquire(long now) {
+
+        for (;;) {
+            long arrival = theoreticalArrival.get();
+            long base = arrival - now > 0 ? arrival : now;
+            long wait = base - now - toleranceNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrival.compareAndSet(arrival, base + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.reynaldoabreu.libraryapi.api.reactive;
+
+import com.reynaldoabreu.libraryapi.api.ETags;
+import com.reynaldoabreu.libraryapi.api.dto.BookDTO;
+import com.reynaldoabreu.libraryapi.api.dto.BookPageDTO;
+import com.reynaldoabreu.libraryapi.api.mapper.BookMapper;
+import com.reynaldoabreu.libraryapi.model.entity.Book;
+import com.reynaldoabreu.libraryapi.service.ReactiveBookService;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.Validator;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import static com.reynaldoabreu.libraryapi.api.reactive.ReactiveValidation.handleErrors;
+import static com.reynaldoabreu.libraryapi.api.reactive.ReactiveValidation.notFound;
+
+@Component
+@Profile("reactive")
+public class BookHandler {
+
+    private final ReactiveBookService service;
+    private final BookMapper bookMapper;
+    private final ReactiveValidation validation;
+
+    public BookHandler(ReactiveBookService service, BookMapper bookMapper, Validator validator) {
+        this.service = service;
+        this.bookMapper = bookMapper;
+        this.validation = new ReactiveValidation(validator);
+    }
+
+    public Mono<ServerResponse> create(ServerRequest request) {
+        return handleErrors(request.bodyToMono(BookDTO.class)
+                .flatMap(validation::validate)
+                .map(bookMapper::toEntity)
+                .flatMap(service::save)
+                .flatMap(book -> ServerResponse.status(HttpStatus.CREATED).bodyValue(bookMapper.toDto(book))));
+    }
+
+    public Mono<ServerResponse> get(ServerRequest request) {
+        return handleErrors(id(request)
+                .flatMap(service::getById)
+                .switchIfEmpty(notFound(null))
+                .flatMap(this::withETag));
+    }
+
+    public Mono<ServerResponse> delete(ServerRequest request) {
+        return handleErrors(id(request)
+                .flatMap(service::deleteById)
+                .flatMap(deleted -> deleted ? ServerResponse.noContent().build() : notFound(null)));
+    }
+
+    public Mono<ServerResponse> update(ServerRequest request) {
+        String ifMatch = request.headers().firstHeader(HttpHeaders.IF_MATCH);
+        return handleErrors(id(request)
+                .flatMap(id -> request.bodyToMono(BookDTO.class)
+                        .flatMap(validation::validate)
+                        .flatMap(dto -> service.getById(id)
+                                .switchIfEmpty(notFound(null))
+                                .flatMap(book -> {
+                                    ETags.checkIfMatch(ifMatch, book);
+                                    book.setAuthor(dto.getAuthor());
+                                    book.setTitle(dto.getTitle());
+                                    return service.update(book);
+                                })))
+                .switchIfEmpty(notFound(null))
+                .flatMap(this::withETag));
+    }
+
+    public Mono<ServerResponse> find(ServerRequest request) {
+        Book filter = Book.builder()
+                .title(request.queryParam("title").orElse(null))
+                .author(request.queryParam("author").orElse(null))
+                .isbn(request.queryParam("isbn").orElse(null))
+                .build();
+
+        return handleErrors(Mono.fromCallable(() -> PageRequest.of(
+                        request.queryParam("page").map(Integer::valueOf).orElse(0),
+                        request.queryParam("size").map(Integer::valueOf).orElse(20)))
+                .onErrorMap(IllegalArgumentException.class, ex -> badRequest("Invalid page request"))
+                .flatMap(pageRequest -> service.find(filter, pageRequest))
+                .flatMap(page -> ServerResponse.ok().bodyValue(BookPageDTO.of(page))));
+    }
+
+    private Mono<ServerResponse> withETag(Book book) {
+        return ServerResponse.ok().eTag(ETags.of(book)).bodyValue(bookMapper.toDto(book));
+    }
+
+    // parâmetros inválidos viram 400 dentro da cadeia, como o binding do MVC faria
+    private static Mono<Long> id(ServerRequest request) {
+        return Mono.fromCallable(() -> Long.valueOf(request.pathVariable("id")))
+                .onErrorMap(NumberFormatException.class, ex -> badRequest("Invalid book id"));
+    }
+
+    private static ResponseStatusException badRequest(String reason) {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, reason);
+    }
+}
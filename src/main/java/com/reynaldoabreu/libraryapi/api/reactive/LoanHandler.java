@@ -0,0 +1,42 @@
+package com.reynaldoabreu.libraryapi.api.reactive;
+
+import com.reynaldoabreu.libraryapi.api.dto.LoanDto;
+import com.reynaldoabreu.libraryapi.api.mapper.LoanMapper;
+import com.reynaldoabreu.libraryapi.service.ReactiveBookService;
+import com.reynaldoabreu.libraryapi.service.ReactiveLoanService;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+
+import static com.reynaldoabreu.libraryapi.api.reactive.ReactiveValidation.handleErrors;
+
+@Component
+@Profile("reactive")
+public class LoanHandler {
+
+    private final ReactiveBookService bookService;
+    private final ReactiveLoanService loanService;
+    private final LoanMapper loanMapper;
+
+    public LoanHandler(ReactiveBookService bookService, ReactiveLoanService loanService, LoanMapper loanMapper) {
+        this.bookService = bookService;
+        this.loanService = loanService;
+        this.loanMapper = loanMapper;
+    }
+
+    public Mono<ServerResponse> create(ServerRequest request) {
+        return handleErrors(request.bodyToMono(LoanDto.class)
+                .flatMap(dto -> bookService.getBookByIsbn(dto.getIsbn())
+                        .switchIfEmpty(Mono.error(() ->
+                                new ResponseStatusException(HttpStatus.BAD_REQUEST, "Book not found for passed isbn")))
+                        .map(book -> loanMapper.toEntity(dto, book, LocalDate.now())))
+                .flatMap(loanService::save)
+                .flatMap(loan -> ServerResponse.status(HttpStatus.CREATED).bodyValue(loan.getId())));
+    }
+}
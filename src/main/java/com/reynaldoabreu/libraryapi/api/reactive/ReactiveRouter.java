@@ -0,0 +1,27 @@
+package com.reynaldoabreu.libraryapi.api.reactive;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+@Configuration
+@Profile("reactive")
+public class ReactiveRouter {
+
+    @Bean
+    public RouterFunction<ServerResponse> libraryRoutes(BookHandler books, LoanHandler loans) {
+        return route()
+                .path("/api/books", builder -> builder
+                        .POST("", books::create)
+                        .GET("", books::find)
+                        .GET("/{id}", books::get)
+                        .PUT("/{id}", books::update)
+                        .DELETE("/{id}", books::delete))
+                .POST("/api/loans", loans::create)
+                .build();
+    }
+}
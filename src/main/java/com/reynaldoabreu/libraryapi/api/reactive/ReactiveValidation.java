@@ -0,0 +1,63 @@
+package com.reynaldoabreu.libraryapi.api.reactive;
+
+import com.reynaldoabreu.libraryapi.api.exception.ApiErrors;
+import com.reynaldoabreu.libraryapi.exception.BusinessException;
+import com.reynaldoabreu.libraryapi.exception.ConflictException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.Validator;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+/**
+ * Validação e respostas de erro das rotas funcionais, no mesmo formato {@link ApiErrors}
+ * que o ApplicationControllerAdvice produz para os controllers MVC.
+ */
+class ReactiveValidation {
+
+    private final Validator validator;
+
+    ReactiveValidation(Validator validator) {
+        this.validator = validator;
+    }
+
+    <T> Mono<T> validate(T target) {
+
+        BeanPropertyBindingResult bindingResult = new BeanPropertyBindingResult(target, target.getClass().getSimpleName());
+        validator.validate(target, bindingResult);
+        if (bindingResult.hasErrors()) {
+            return Mono.error(new InvalidBodyException(bindingResult));
+        }
+        return Mono.just(target);
+    }
+
+    static Mono<ServerResponse> handleErrors(Mono<ServerResponse> response) {
+        return response
+                .onErrorResume(InvalidBodyException.class, ex ->
+                        ServerResponse.badRequest().bodyValue(new ApiErrors(ex.bindingResult)))
+                .onErrorResume(ConflictException.class, ex ->
+                        ServerResponse.status(HttpStatus.CONFLICT).bodyValue(new ApiErrors(ex)))
+                .onErrorResume(BusinessException.class, ex ->
+                        ServerResponse.badRequest().bodyValue(new ApiErrors(ex)))
+                .onErrorResume(OptimisticLockingFailureException.class, ex ->
+                        ServerResponse.status(HttpStatus.PRECONDITION_FAILED).bodyValue(new ApiErrors("Book was modified")))
+                .onErrorResume(ResponseStatusException.class, ex ->
+                        ServerResponse.status(ex.getStatusCode()).bodyValue(new ApiErrors(ex)));
+    }
+
+    static <T> Mono<T> notFound(String reason) {
+        return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, reason));
+    }
+
+    private static class InvalidBodyException extends RuntimeException {
+
+        private final BeanPropertyBindingResult bindingResult;
+
+        InvalidBodyException(BeanPropertyBindingResult bindingResult) {
+            super(null, null, false, false);
+            this.bindingResult = bindingResult;
+        }
+    }
+}
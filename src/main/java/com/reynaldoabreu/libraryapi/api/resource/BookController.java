@@ -1,98 +1,484 @@
 package com.reynaldoabreu.libraryapi.api.resource;
 
+import com.reynaldoabreu.libraryapi.api.Cursors;
+import com.reynaldoabreu.libraryapi.api.ETags;
+import com.reynaldoabreu.libraryapi.api.dto.AvailabilityDTO;
+import com.reynaldoabreu.libraryapi.api.dto.AvailabilityRequestDTO;
+import com.reynaldoabreu.libraryapi.api.dto.BookChangeDTO;
+import com.reynaldoabreu.libraryapi.api.dto.BookChangesDTO;
 import com.reynaldoabreu.libraryapi.api.dto.BookDTO;
-import com.reynaldoabreu.libraryapi.api.exception.ApiErrors;
+import com.reynaldoabreu.libraryapi.api.dto.BookImportDTO;
+import com.reynaldoabreu.libraryapi.api.dto.BookPageDTO;
+import com.reynaldoabreu.libraryapi.api.dto.CursorPageDTO;
+import com.reynaldoabreu.libraryapi.api.dto.LoanHistoryDTO;
+import com.reynaldoabreu.libraryapi.api.mapper.BookMapper;
+import com.reynaldoabreu.libraryapi.api.mapper.LoanMapper;
 import com.reynaldoabreu.libraryapi.exception.BusinessException;
 import com.reynaldoabreu.libraryapi.model.entity.Book;
 import com.reynaldoabreu.libraryapi.service.BookService;
+import com.reynaldoabreu.libraryapi.service.LoanService;
+import com.reynaldoabreu.libraryapi.service.availability.AvailabilityIndex;
+import com.reynaldoabreu.libraryapi.service.changes.BookChange;
+import com.reynaldoabreu.libraryapi.service.changes.BookChangeFeed;
+import com.reynaldoabreu.libraryapi.service.changes.BookChangePage;
+import com.reynaldoabreu.libraryapi.service.changes.Watermark;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
-import org.modelmapper.ModelMapper;
+import jakarta.validation.Validator;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.validation.BindingResult;
-import org.springframework.web.bind.MethodArgumentNotValidException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.WebAsyncTask;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.BufferedWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
 
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("/api/books")
 public class BookController {
 
+    static final String NDJSON_VALUE = "application/x-ndjson";
+    static final String CSV_VALUE = "text/csv";
+    static final int IMPORT_CHUNK_SIZE = 1000;
+    static final int MAX_CURSOR_PAGE_SIZE = 1000;
+    static final int MAX_SEARCH_SIZE = 100;
+    static final int MAX_AVAILABILITY_SIZE = 1000;
+    static final int MAX_CHANGES_SIZE = 5000;
+
     private final BookService service;
-    private final ModelMapper modelMapper;
+    private final LoanService loanService;
+    private final AvailabilityIndex availability;
+    private final BookChangeFeed changeFeed;
+    private final BookMapper bookMapper;
+    private final LoanMapper loanMapper;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final Duration exportTimeout;
 
-    public BookController(BookService service, ModelMapper modelMapper) {
+    public BookController(BookService service, LoanService loanService, AvailabilityIndex availability,
+                          BookChangeFeed changeFeed, BookMapper bookMapper, LoanMapper loanMapper,
+                          ObjectMapper objectMapper, Validator validator,
+                          @Value("${library.books.export.timeout:PT30M}") Duration exportTimeout) {
         this.service = service;
-        this.modelMapper = modelMapper;
+        this.loanService = loanService;
+        this.availability = availability;
+        this.changeFeed = changeFeed;
+        this.bookMapper = bookMapper;
+        this.loanMapper = loanMapper;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.exportTimeout = exportTimeout;
     }
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public BookDTO create(@RequestBody @Valid BookDTO dto){
 
-        Book entity = modelMapper.map(dto, Book.class);
+        Book entity = bookMapper.toEntity(dto);
         entity = service.save(entity);
 
-        return modelMapper.map(entity, BookDTO.class);
+        return bookMapper.toDto(entity);
+    }
+
+    @PostMapping(value = "batch", consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON_VALUE})
+    public ResponseEntity<BookImportDTO> createBatch(InputStream body) throws IOException {
+
+        BookImportDTO result = new BookImportDTO();
+        List<Book> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+
+        try (MappingIterator<BookDTO> iterator = objectMapper.readerFor(BookDTO.class).readValues(body)) {
+            while (iterator.hasNextValue()) {
+                BookDTO dto = iterator.nextValue();
+                result.setReceived(result.getReceived() + 1);
+
+                if (!validator.validate(dto).isEmpty()) {
+                    result.setRejected(result.getRejected() + 1);
+                    continue;
+                }
+
+                chunk.add(bookMapper.toEntity(dto));
+                if (chunk.size() == IMPORT_CHUNK_SIZE) {
+                    importChunk(chunk, result);
+                }
+            }
+        } catch (JsonProcessingException ex) {
+            // os lotes anteriores já foram confirmados: grava o que foi lido até o registro
+            // malformado e devolve as contagens, para o cliente retomar dali
+            importChunk(chunk, result);
+            result.setError("Malformed record after " + result.getReceived() + " records: " + ex.getOriginalMessage());
+            return ResponseEntity.badRequest().body(result);
+        }
+        importChunk(chunk, result);
+
+        return ResponseEntity.status(HttpStatus.CREATED).body(result);
+    }
+
+    private void importChunk(List<Book> chunk, BookImportDTO result) {
+
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        List<Book> savedBooks;
+        try {
+            savedBooks = service.saveAll(chunk);
+        } catch (BusinessException ex) {
+            // um isbn gravado por outra requisição depois da consulta desfez o lote inteiro:
+            // refaz só este lote, livro a livro, e conta como duplicado o que for recusado
+            importOneByOne(chunk, result);
+            return;
+        }
+        Set<String> savedIsbns = new HashSet<>();
+        savedBooks.forEach(book -> savedIsbns.add(book.getIsbn()));
+
+        result.setCreated(result.getCreated() + savedBooks.size());
+        chunk.stream()
+                .map(Book::getIsbn)
+                .filter(isbn -> !savedIsbns.remove(isbn))
+                .forEach(result.getDuplicateIsbns()::add);
+
+        chunk.clear();
+    }
+
+    private void importOneByOne(List<Book> chunk, BookImportDTO result) {
+
+        for (Book book : chunk) {
+            try {
+                service.save(book);
+                result.setCreated(result.getCreated() + 1);
+            } catch (BusinessException ex) {
+                result.getDuplicateIsbns().add(book.getIsbn());
+            }
+        }
+        chunk.clear();
     }
 
     @GetMapping ("{id}")
-    public BookDTO get(@PathVariable Long id){
+    public ResponseEntity<BookDTO> get(@PathVariable Long id, WebRequest request){
 
-        return service.getById(id)
-                .map( book -> modelMapper.map(book, BookDTO.class))
-                .orElseThrow( () -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        Book book = service.getById(id).orElseThrow( () -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+
+        // If-None-Match atendido: 304 sem montar nem serializar o DTO
+        String etag = ETags.of(book);
+        if (etag != null && request.checkNotModified(etag)) {
+            return null;
+        }
+        return withETag(book);
     }
 
     @DeleteMapping("{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    public void delete(@PathVariable Long id){
-        Book book = service.getById(id).orElseThrow( () -> new ResponseStatusException(HttpStatus.NOT_FOUND));
-        service.delete(book);
+    public void delete(@PathVariable Long id, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        conditionally(id, ifMatch, version -> service.deleteById(id, version));
+    }
+
+    @PatchMapping("{id}")
+    public ResponseEntity<Void> patch(@PathVariable Long id, @RequestBody BookDTO dto,
+                                      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+
+        if (dto.getTitle() == null && dto.getAuthor() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Nothing to update");
+        }
+        if ((dto.getTitle() != null && dto.getTitle().isBlank()) || (dto.getAuthor() != null && dto.getAuthor().isBlank())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Title and author can't be blank");
+        }
+
+        Long version = conditionally(id, ifMatch,
+                expected -> service.updateFields(id, dto.getTitle(), dto.getAuthor(), expected));
+
+        ResponseEntity.HeadersBuilder<?> response = ResponseEntity.noContent();
+        if (version != null) {
+            response.eTag(ETags.of(version + 1));
+        }
+        return response.build();
+    }
+
+    /**
+     * Executa um comando direto no banco para cada versão aceita pelo If-Match até que um afete
+     * alguma linha. Só consulta o livro quando nada foi afetado, para diferenciar 404 de 412.
+     *
+     * @return a versão que casou, ou {@code null} quando qualquer versão era aceita
+     */
+    private Long conditionally(Long id, String ifMatch, ToIntFunction<Long> statement) {
+
+        List<Long> versions = ETags.versions(ifMatch);
+        if (versions == null) {
+            if (statement.applyAsInt(null) == 0) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+            }
+            return null;
+        }
+
+        for (Long version : versions) {
+            if (statement.applyAsInt(version) > 0) {
+                return version;
+            }
+        }
+        if (service.getById(id).isPresent()) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Book was modified");
+        }
+        throw new ResponseStatusException(HttpStatus.NOT_FOUND);
     }
 
     @PutMapping("{id}")
-    public BookDTO update(@PathVariable Long id, @RequestBody @Valid BookDTO dto){
+    public ResponseEntity<BookDTO> update(@PathVariable Long id, @RequestBody @Valid BookDTO dto,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
         Book book = service.getById(id).orElseThrow( () -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        ETags.checkIfMatch(ifMatch, book);
         book.setAuthor(dto.getAuthor());
         book.setTitle(dto.getTitle());
-        service.update(book);
+        book = service.update(book);
+
+        return withETag(book);
+
+    }
+
+    private ResponseEntity<BookDTO> withETag(Book book) {
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        String etag = ETags.of(book);
+        if (etag != null) {
+            response.eTag(etag);
+        }
+        return response.body(bookMapper.toDto(book));
+    }
 
-        return modelMapper.map(book, BookDTO.class);
+    @GetMapping("{id}/loans")
+    public Slice<LoanHistoryDTO> loansByBook(@PathVariable Long id, Pageable pageRequest){
 
+        if (service.getById(id).isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        return loanService.findByBook(id, pageRequest).map(loanMapper::toHistoryDto);
     }
 
     @GetMapping
-    public Page<BookDTO> find(BookDTO dto, Pageable pageRequest){
+    public BookPageDTO find(BookDTO dto, Pageable pageRequest,
+                            @RequestParam(value = "availability", defaultValue = "false") boolean withAvailability){
 
-        Book filter = modelMapper.map(dto, Book.class);
+        Book filter = bookMapper.toEntity(dto);
         Page<Book> result = service.find(filter, pageRequest);
+        return withAvailability ? BookPageDTO.of(result, availability::isAvailable) : BookPageDTO.of(result);
+    }
+
+    /**
+     * Disponibilidade de vários livros de uma vez, respondida pelo índice em memória. Ids não
+     * são conferidos no banco; ISBNs são resolvidos pelo cache e uma única consulta para o resto.
+     */
+    @PostMapping("availability")
+    public List<AvailabilityDTO> availability(@RequestBody AvailabilityRequestDTO request){
+
+        List<Long> ids = request.getIds() == null ? List.of() : request.getIds();
+        List<String> isbns = request.getIsbns() == null ? List.of() : request.getIsbns();
+        if (ids.size() + isbns.size() > MAX_AVAILABILITY_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Too many books");
+        }
+
+        List<AvailabilityDTO> result = new ArrayList<>(ids.size() + isbns.size());
+        for (Long id : ids) {
+            if (id != null) {
+                result.add(AvailabilityDTO.builder().id(id).available(availability.isAvailable(id)).build());
+            }
+        }
+        if (!isbns.isEmpty()) {
+            Map<String, Book> books = service.getBooksByIsbn(isbns);
+            for (String isbn : isbns) {
+                Book book = books.get(isbn);
+                result.add(book == null
+                        ? AvailabilityDTO.builder().isbn(isbn).build()
+                        : AvailabilityDTO.builder().id(book.getId()).isbn(isbn).available(availability.isAvailable(book.getId())).build());
+            }
+        }
+        return result;
+    }
+
+    @GetMapping(params = "after")
+    public CursorPageDTO<BookDTO> findAfter(BookDTO dto,
+                                            @RequestParam String after,
+                                            @RequestParam(defaultValue = "20") int size){
+
+        if (size < 1 || size > MAX_CURSOR_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid page size");
+        }
+
+        Book filter = bookMapper.toEntity(dto);
+        Slice<Book> result = service.findAfter(filter, Cursors.decodeLong(after), size);
         List<BookDTO> list = result.getContent()
                 .stream()
-                .map(entity -> modelMapper.map(entity, BookDTO.class))
+                .map(bookMapper::toDto)
+                .collect(Collectors.toList());
+
+        String next = result.hasNext() ? Cursors.encode(list.get(list.size() - 1).getId()) : null;
+        return CursorPageDTO.<BookDTO>builder()
+                .content(list)
+                .size(size)
+                .hasNext(result.hasNext())
+                .next(next)
+                .build();
+    }
+
+    /**
+     * Livros criados, alterados e removidos depois da marca d'água, em ordem. Sem {@code since}
+     * começa do início (carga completa). Marcas d'água mais antigas que a retenção das remoções
+     * recebem 410: o cliente precisa recomeçar do zero.
+     */
+    @GetMapping("changes")
+    public BookChangesDTO changes(@RequestParam(value = "since", required = false) String since,
+                                  @RequestParam(defaultValue = "500") int size){
+
+        if (size < 1 || size > MAX_CHANGES_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid page size");
+        }
+
+        Watermark watermark = since == null ? Watermark.START : watermark(since);
+        if (since != null && watermark.getChangedAt().isBefore(changeFeed.horizon())) {
+            throw new ResponseStatusException(HttpStatus.GONE, "Watermark expired, full sync required");
+        }
+
+        BookChangePage page = changeFeed.changesAfter(watermark, size);
+        List<BookChangeDTO> content = page.getChanges()
+                .stream()
+                .map(BookController::toChangeDto)
+                .collect(Collectors.toList());
+        Watermark next = page.getNext();
+        return BookChangesDTO.builder()
+                .content(content)
+                .size(size)
+                .hasNext(page.isHasNext())
+                .watermark(Cursors.encode(next.getChangedAt().getEpochSecond(), next.getChangedAt().getNano(), next.getId()))
+                .build();
+    }
+
+    private static Watermark watermark(String since) {
+
+        String[] parts = Cursors.decode(since, 3);
+        try {
+            return new Watermark(Instant.ofEpochSecond(Long.parseLong(parts[0]), Long.parseLong(parts[1])),
+                    Long.parseLong(parts[2]));
+        } catch (RuntimeException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+
+    private static BookChangeDTO toChangeDto(BookChange change) {
+        return new BookChangeDTO(change.getId(), change.getTitle(), change.getAuthor(), change.getIsbn(),
+                change.getVersion(), change.getCreatedAt(), change.getChangedAt(), change.isDeleted());
+    }
+
+    @GetMapping("search")
+    public List<BookDTO> search(@RequestParam("q") String query, @RequestParam(defaultValue = "20") int size){
+
+        if (size < 1 || size > MAX_SEARCH_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid page size");
+        }
+
+        return service.search(query, size)
+                .stream()
+                .map(bookMapper::toDto)
                 .collect(Collectors.toList());
+    }
+
+    @GetMapping("export")
+    public WebAsyncTask<Void> export(BookDTO dto, @RequestParam(defaultValue = "ndjson") String format,
+                                     HttpServletResponse response){
+
+        Book filter = bookMapper.toEntity(dto);
 
-        return new PageImpl<BookDTO>(list, pageRequest, result.getTotalElements());
+        StreamingResponseBody body;
+        if ("csv".equalsIgnoreCase(format)) {
+            response.setContentType(CSV_VALUE);
+            body = out -> exportCsv(filter, out);
+        } else if ("ndjson".equalsIgnoreCase(format)) {
+            response.setContentType(NDJSON_VALUE);
+            body = out -> exportNdjson(filter, out);
+        } else {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported export format");
+        }
 
+        // tempo limite próprio: o padrão das requisições assíncronas (30s no Tomcat) cortaria a
+        // exportação do catálogo inteiro no meio, com o 200 já enviado
+        return new WebAsyncTask<>(exportTimeout.toMillis(), () -> {
+            body.writeTo(response.getOutputStream());
+            return null;
+        });
     }
 
-    @ExceptionHandler(MethodArgumentNotValidException.class)
-    @ResponseStatus(HttpStatus.BAD_REQUEST)
-    public ApiErrors handleValidationException(MethodArgumentNotValidException ex){
-        BindingResult bindingResult = ex.getBindingResult();
+    private void exportNdjson(Book filter, OutputStream out) throws IOException {
 
-        return  new ApiErrors(bindingResult);
+        try (JsonGenerator generator = objectMapper.createGenerator(out)) {
+            // cada registro termina no próprio \n, inclusive o último, como o NDJSON exige
+            generator.setRootValueSeparator(null);
+            service.export(filter, book -> {
+                try {
+                    objectMapper.writeValue(generator, bookMapper.toDto(book));
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
     }
 
-    @ExceptionHandler(BusinessException.class)
-    @ResponseStatus(HttpStatus.BAD_REQUEST)
-    public ApiErrors handleBusinessException(BusinessException ex){
-        return new ApiErrors(ex);
+    private void exportCsv(Book filter, OutputStream out) throws IOException {
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write("id,title,author,isbn\n");
+        service.export(filter, book -> {
+            try {
+                writer.write(String.valueOf(book.getId()));
+                writer.write(',');
+                writer.write(csv(book.getTitle()));
+                writer.write(',');
+                writer.write(csv(book.getAuthor()));
+                writer.write(',');
+                writer.write(csv(book.getIsbn()));
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.flush();
+    }
+
+    private static String csv(String value) {
+
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
     }
 
 }
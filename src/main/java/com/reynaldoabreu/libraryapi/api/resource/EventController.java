@@ -0,0 +1,67 @@
+package com.reynaldoabreu.libraryapi.api.resource;
+
+import com.reynaldoabreu.libraryapi.api.dto.EventDTO;
+import com.reynaldoabreu.libraryapi.service.outbox.OutboxRelay;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+@RestController
+@Profile("!reactive")
+@RequestMapping("/api/events")
+public class EventController {
+
+    static final int MAX_BATCH_SIZE = 1000;
+
+    private final EventStream eventStream;
+    private final OutboxRelay relay;
+
+    public EventController(EventStream eventStream, OutboxRelay relay) {
+        this.eventStream = eventStream;
+        this.relay = relay;
+    }
+
+    /**
+     * Fluxo SSE das mudanças de livros e empréstimos, em ordem de id. A leitura retoma depois
+     * de {@code Last-Event-ID} (enviado pelo navegador ao reconectar) ou de {@code after};
+     * sem nenhum dos dois, começa pelos eventos novos.
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestParam(value = "after", required = false) Long after,
+                             @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId){
+
+        return eventStream.subscribe(lastEventId == null ? after : offset(lastEventId));
+    }
+
+    /**
+     * Os mesmos eventos em lotes JSON, para consumidores que preferem consultar: o próximo
+     * lote começa depois do id do último evento recebido.
+     */
+    @GetMapping("batch")
+    public List<EventDTO> batch(@RequestParam(value = "after", defaultValue = "0") long after,
+                                @RequestParam(value = "size", defaultValue = "100") int size){
+
+        if (size <= 0 || size > MAX_BATCH_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid batch size");
+        }
+        return relay.eventsAfter(after, size).stream().map(EventDTO::of).collect(Collectors.toList());
+    }
+
+    private static Long offset(String lastEventId) {
+        try {
+            return Long.valueOf(lastEventId.trim());
+        } catch (NumberFormatException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid Last-Event-ID");
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.reynaldoabreu.libraryapi.api.resource;
+
+import com.reynaldoabreu.libraryapi.api.dto.EventDTO;
+import com.reynaldoabreu.libraryapi.model.entity.OutboxEvent;
+import com.reynaldoabreu.libraryapi.service.outbox.OutboxListener;
+import com.reynaldoabreu.libraryapi.service.outbox.OutboxProperties;
+import com.reynaldoabreu.libraryapi.service.outbox.OutboxRelay;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Assinantes SSE de {@code /api/events}. Cada assinante guarda o último id enviado e, a cada
+ * rodada do relay, recebe em ordem o que foi liberado depois dele: a retomada a partir de um
+ * id e o acompanhamento ao vivo são o mesmo caminho. Os envios acontecem só na thread do relay.
+ */
+@Component
+@Profile("!reactive")
+public class EventStream implements OutboxListener, MeterBinder {
+
+    // lotes por assinante e rodada: um cliente muito atrasado não segura os demais
+    static final int CATCH_UP_BATCHES = 10;
+
+    private final OutboxRelay relay;
+    private final OutboxProperties properties;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    public EventStream(OutboxRelay relay, OutboxProperties properties) {
+        this.relay = relay;
+        this.properties = properties;
+    }
+
+    /**
+     * @param after último id já recebido pelo cliente; sem ele, só os eventos a partir de agora
+     */
+    public SseEmitter subscribe(Long after) {
+
+        if (subscribers.size() >= properties.getMaxSubscribers()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many event subscribers");
+        }
+
+        SseEmitter emitter = new SseEmitter(properties.getEmitterTimeout().toMillis());
+        Subscriber subscriber = new Subscriber(emitter, after == null ? relay.watermark() : after, System.nanoTime());
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(ex -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        return emitter;
+    }
+
+    @Override
+    public void published(long watermark) {
+
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            try {
+                deliver(subscriber, watermark, now);
+            } catch (IOException | IllegalStateException ex) {
+                // conexão fechada pelo cliente: ele volta com Last-Event-ID
+                subscribers.remove(subscriber);
+                subscriber.emitter.completeWithError(ex);
+            }
+        }
+    }
+
+    // atrasados com id acima do último enviado chegam pelo caminho normal, já em ordem. O id
+    // menor passa a ser o Last-Event-ID do cliente: ao reconectar ele recebe repetidos, não perde
+    @Override
+    public void late(List<OutboxEvent> events) {
+
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            try {
+                for (OutboxEvent event : events) {
+                    if (event.getId() <= subscriber.lastSent) {
+                        send(subscriber, event, now);
+                    }
+                }
+            } catch (IOException | IllegalStateException ex) {
+                subscribers.remove(subscriber);
+                subscriber.emitter.completeWithError(ex);
+            }
+        }
+    }
+
+    private void deliver(Subscriber subscriber, long watermark, long now) throws IOException {
+
+        int batchSize = properties.getBatchSize();
+        for (int batch = 0; batch < CATCH_UP_BATCHES && subscriber.lastSent < watermark; batch++) {
+            List<OutboxEvent> events = relay.eventsAfter(subscriber.lastSent, batchSize);
+            for (OutboxEvent event : events) {
+                send(subscriber, event, now);
+                subscriber.lastSent = event.getId();
+            }
+            if (events.size() < batchSize) {
+                break;
+            }
+        }
+
+        if (now - subscriber.lastActivity >= properties.getHeartbeat().toNanos()) {
+            subscriber.emitter.send(SseEmitter.event().comment("keep-alive"));
+            subscriber.lastActivity = now;
+        }
+    }
+
+    private static void send(Subscriber subscriber, OutboxEvent event, long now) throws IOException {
+        subscriber.emitter.send(SseEmitter.event()
+                .id(String.valueOf(event.getId()))
+                .name(event.getAggregate() + "." + event.getType())
+                .data(EventDTO.of(event), MediaType.APPLICATION_JSON));
+        subscriber.lastActivity = now;
+    }
+
+    int subscribers() {
+        return subscribers.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("library.events.subscribers", subscribers, List::size)
+                .description("Conexões SSE abertas em /api/events")
+                .register(registry);
+    }
+
+    private static final class Subscriber {
+
+        final SseEmitter emitter;
+        long lastSent;
+        long lastActivity;
+
+        Subscriber(SseEmitter emitter, long lastSent, long lastActivity) {
+            this.emitter = emitter;
+            this.lastSent = lastSent;
+            this.lastActivity = lastActivity;
+        }
+    }
+}
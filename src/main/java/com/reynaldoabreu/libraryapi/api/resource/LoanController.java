@@ -1,37 +1,148 @@
 package com.reynaldoabreu.libraryapi.api.resource;
 
 import com.reynaldoabreu.libraryapi.api.dto.LoanDto;
+import com.reynaldoabreu.libraryapi.api.dto.LoanHistoryDTO;
+import com.reynaldoabreu.libraryapi.api.dto.ReturnedLoanDTO;
+import com.reynaldoabreu.libraryapi.api.mapper.LoanMapper;
 import com.reynaldoabreu.libraryapi.model.entity.Book;
 import com.reynaldoabreu.libraryapi.model.entity.Loan;
 import com.reynaldoabreu.libraryapi.service.BookService;
 import com.reynaldoabreu.libraryapi.service.LoanService;
-import lombok.RequiredArgsConstructor;
+import com.reynaldoabreu.libraryapi.service.idempotency.IdempotencyRecord;
+import com.reynaldoabreu.libraryapi.service.idempotency.IdempotencyStore;
+import com.reynaldoabreu.libraryapi.service.writebehind.LoanWriteBehindQueue;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("/api/loans")
-@RequiredArgsConstructor
 public class LoanController {
 
+    static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
     private final BookService bookService;
     private final LoanService loanService;
+    private final LoanMapper loanMapper;
+    private final IdempotencyStore idempotencyStore;
+    private final LoanWriteBehindQueue writeBehindQueue;
+
+    public LoanController(BookService bookService, LoanService loanService, LoanMapper loanMapper,
+                          IdempotencyStore idempotencyStore, ObjectProvider<LoanWriteBehindQueue> writeBehindQueue) {
+        this.bookService = bookService;
+        this.loanService = loanService;
+        this.loanMapper = loanMapper;
+        this.idempotencyStore = idempotencyStore;
+        this.writeBehindQueue = writeBehindQueue.getIfAvailable();
+    }
 
+    /**
+     * Com {@code Idempotency-Key}, uma repetição do mesmo pedido devolve o id do empréstimo
+     * original sem consultar livro nem banco. A mesma chave com outro conteúdo é rejeitada (422)
+     * e, enquanto o pedido original não termina, as repetições recebem 409.
+     * No modo write-behind o id chega quando o lote do pedido é confirmado, e a chave é
+     * concluída na mesma transação do lote.
+     */
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
-    public Long create(@RequestBody LoanDto dto){
+    public CompletableFuture<Long> create(@RequestBody LoanDto dto,
+                       @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey){
+
+        if (idempotencyKey == null) {
+            return createLoan(dto, null);
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid Idempotency-Key");
+        }
+
+        String fingerprint = fingerprint(dto);
+        Optional<IdempotencyRecord> previous = idempotencyStore.reserve(idempotencyKey, fingerprint);
+        if (previous.isPresent()) {
+            return CompletableFuture.completedFuture(replay(previous.get(), fingerprint));
+        }
+
+        try {
+            return createLoan(dto, idempotencyKey).whenComplete((id, ex) -> {
+                if (ex != null) {
+                    idempotencyStore.release(idempotencyKey);
+                } else if (writeBehindQueue == null) {
+                    idempotencyStore.complete(idempotencyKey, id);
+                }
+            });
+        } catch (RuntimeException ex) {
+            idempotencyStore.release(idempotencyKey);
+            throw ex;
+        }
+    }
+
+    private CompletableFuture<Long> createLoan(LoanDto dto, String idempotencyKey) {
+
+        if (writeBehindQueue != null) {
+            return writeBehindQueue.submit(dto.getIsbn(), dto.getCostumer(), LocalDate.now(), idempotencyKey);
+        }
 
         Book book = bookService.getBookByIsbn(dto.getIsbn())
                 .orElseThrow( () -> new ResponseStatusException (HttpStatus.BAD_REQUEST, "Book not found for passed isbn"));
 
-        Loan entity = Loan.builder().book(book)
-                .costumer(dto.getCostumer())
-                .loanDate(LocalDate.now()).build();
+        Loan entity = loanMapper.toEntity(dto, book, LocalDate.now());
 
         entity = loanService.save(entity);
-        return entity.getId();
+        return CompletableFuture.completedFuture(entity.getId());
+    }
+
+    private static Long replay(IdempotencyRecord previous, String fingerprint) {
+
+        if (!previous.getFingerprint().equals(fingerprint)) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, "Idempotency-Key already used for a different request");
+        }
+        if (!previous.isCompleted()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Request with this Idempotency-Key is still in progress");
+        }
+        return previous.getResultId();
+    }
+
+    private static String fingerprint(LoanDto dto) {
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(dto.getIsbn()).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(dto.getCostumer()).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @PatchMapping("{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void returnBook(@PathVariable Long id, @RequestBody @Valid ReturnedLoanDTO dto){
+
+        if (loanService.updateReturned(id, dto.getReturned()) == 0) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+    }
+
+    @GetMapping
+    public Slice<LoanHistoryDTO> find(@RequestParam(value = "customer", required = false) String customer,
+                                      @RequestParam(required = false) String isbn,
+                                      Pageable pageRequest){
+
+        return loanService.find(customer, isbn, pageRequest).map(loanMapper::toHistoryDto);
     }
 }
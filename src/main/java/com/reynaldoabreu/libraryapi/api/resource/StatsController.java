@@ -0,0 +1,46 @@
+package com.reynaldoabreu.libraryapi.api.resource;
+
+import com.reynaldoabreu.libraryapi.api.dto.StatsDTO;
+import com.reynaldoabreu.libraryapi.service.availability.AvailabilityIndex;
+import com.reynaldoabreu.libraryapi.service.stats.CatalogStatistics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+@RestController
+@Profile("!reactive")
+@RequestMapping("/api/stats")
+@RequiredArgsConstructor
+public class StatsController {
+
+    private final CatalogStatistics statistics;
+    private final AvailabilityIndex availability;
+
+    @GetMapping
+    public StatsDTO get(@RequestParam(defaultValue = "10") int top,
+                        @RequestParam(required = false) String author,
+                        @RequestParam(required = false) Long book){
+
+        if (top < 0 || top > CatalogStatistics.MAX_TOP) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid top size");
+        }
+
+        long books = statistics.books();
+        long activeLoans = statistics.activeLoans();
+        return StatsDTO.builder()
+                .books(books)
+                .authors(statistics.authors())
+                .loans(statistics.loans())
+                .activeLoans(activeLoans)
+                .availableBooks(Math.max(0, books - activeLoans))
+                .topAuthors(statistics.topAuthors(top))
+                .authorBooks(author == null ? null : statistics.authorBooks(author))
+                .bookActiveLoans(book == null ? null : availability.isAvailable(book) ? 0L : 1L)
+                .build();
+    }
+}
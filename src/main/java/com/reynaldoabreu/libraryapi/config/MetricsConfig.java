@@ -0,0 +1,28 @@
+package com.reynaldoabreu.libraryapi.config;
+
+import com.reynaldoabreu.libraryapi.metrics.QueryCountInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class MetricsConfig implements WebMvcConfigurer {
+
+    private final MeterRegistry registry;
+    private final int queryThreshold;
+
+    public MetricsConfig(ObjectProvider<MeterRegistry> registry,
+                         @Value("${library.metrics.queries-per-request-threshold:20}") int queryThreshold) {
+        this.registry = registry.getIfAvailable(() -> Metrics.globalRegistry);
+        this.queryThreshold = queryThreshold;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry interceptors) {
+        interceptors.addInterceptor(new QueryCountInterceptor(registry, queryThreshold)).addPathPatterns("/api/**");
+    }
+}
@@ -0,0 +1,58 @@
+package com.reynaldoabreu.libraryapi.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import java.time.Duration;
+
+/**
+ * Infraestrutura do perfil "reactive". A ConnectionFactory do R2DBC é declarada aqui
+ * porque, quando ela existe, a auto-configuração do Spring Boot deixa de criar o
+ * DataSource, que o JPA continua usando para criar o esquema e para os serviços bloqueantes.
+ */
+@Configuration
+@Profile("reactive")
+@EnableConfigurationProperties(DataSourceProperties.class)
+public class ReactiveDataConfig {
+
+    // usa as mesmas credenciais do DataSource, já que os dois acessam o mesmo banco; as conexões
+    // são reaproveitadas num pool, como as do Hikari, em vez de abertas a cada consulta
+    @Bean(destroyMethod = "dispose")
+    public ConnectionPool connectionFactory(@Value("${library.r2dbc.url}") String url,
+                                            @Value("${library.r2dbc.pool.max-size:10}") int maxSize,
+                                            @Value("${library.r2dbc.pool.max-idle-time:PT30M}") Duration maxIdleTime,
+                                            DataSourceProperties properties) {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, properties.determineUsername())
+                .option(ConnectionFactoryOptions.PASSWORD, properties.determinePassword())
+                .build();
+        return new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .initialSize(1)
+                .maxSize(maxSize)
+                .maxIdleTime(maxIdleTime)
+                .build());
+    }
+
+    @Bean
+    public DatabaseClient databaseClient(ConnectionFactory connectionFactory) {
+        return DatabaseClient.create(connectionFactory);
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+}
@@ -0,0 +1,11 @@
+package com.reynaldoabreu.libraryapi.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(prefix = "library.scheduling", name = "enabled", matchIfMissing = true)
+public class SchedulingConfig {
+}
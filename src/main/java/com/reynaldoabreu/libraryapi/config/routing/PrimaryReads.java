@@ -0,0 +1,34 @@
+package com.reynaldoabreu.libraryapi.config.routing;
+
+import java.util.function.Supplier;
+
+/**
+ * Força ao primário as leituras feitas dentro de {@link #call}, mesmo em transação readOnly.
+ * Serve para o que vai ser guardado em cache: uma cópia lida de uma réplica atrasada seria
+ * servida até expirar, e não só pelo tempo do atraso. Vale para a conexão pedida dentro da
+ * chamada; numa transação que já tem conexão, ela continua onde está.
+ */
+public final class PrimaryReads {
+
+    private static final ThreadLocal<Boolean> ACTIVE = new ThreadLocal<>();
+
+    private PrimaryReads() {
+    }
+
+    public static <T> T call(Supplier<T> read) {
+
+        if (ACTIVE.get() != null) {
+            return read.get();
+        }
+        ACTIVE.set(Boolean.TRUE);
+        try {
+            return read.get();
+        } finally {
+            ACTIVE.remove();
+        }
+    }
+
+    static boolean isActive() {
+        return ACTIVE.get() != null;
+    }
+}
@@ -0,0 +1,68 @@
+package com.reynaldoabreu.libraryapi.config.routing;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+/**
+ * Lembra por uma janela curta quais clientes escreveram no primário, para que as leituras
+ * seguintes deles não caiam numa réplica atrasada. O cliente da thread atual é definido
+ * pelo {@link ReadYourWritesFilter}; trabalho sem cliente (jobs, startup) não é afetado.
+ */
+public class ReadYourWrites {
+
+    private static final ThreadLocal<String> CLIENT = new ThreadLocal<>();
+
+    private final Cache<String, Boolean> recentWriters;
+
+    public ReadYourWrites(Duration window) {
+        this(window, Ticker.systemTicker());
+    }
+
+    ReadYourWrites(Duration window, Ticker ticker) {
+        this.recentWriters = window.isZero() ? null : Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(window)
+                .ticker(ticker)
+                .build();
+    }
+
+    public static void setClient(String client) {
+        CLIENT.set(client);
+    }
+
+    public static void clearClient() {
+        CLIENT.remove();
+    }
+
+    boolean mustReadPrimary() {
+
+        String client = CLIENT.get();
+        return recentWriters != null && client != null && recentWriters.getIfPresent(client) != null;
+    }
+
+    /**
+     * Marca o cliente atual quando a transação de escrita confirmar; sem transação, marca na hora.
+     */
+    void recordWrite() {
+
+        String client = CLIENT.get();
+        if (recentWriters == null || client == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            recentWriters.put(client, Boolean.TRUE);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recentWriters.put(client, Boolean.TRUE);
+            }
+        });
+    }
+}
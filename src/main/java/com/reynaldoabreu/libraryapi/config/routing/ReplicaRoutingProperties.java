@@ -0,0 +1,40 @@
+package com.reynaldoabreu.libraryapi.config.routing;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "library.datasource.routing")
+public class ReplicaRoutingProperties {
+
+    private boolean enabled = false;
+
+    /** Réplicas de leitura; o primário continua configurado em {@code spring.datasource.*}. */
+    private List<Replica> replicas = new ArrayList<>();
+
+    private Duration healthCheckInterval = Duration.ofSeconds(5);
+
+    private Duration healthCheckTimeout = Duration.ofSeconds(1);
+
+    /** Por quanto tempo as leituras de um cliente vão ao primário depois de uma escrita dele; zero desliga. */
+    private Duration readYourWrites = Duration.ZERO;
+
+    /** Cabeçalho que identifica o cliente para o read-your-writes; sem ele, vale o IP. */
+    private String clientHeader = "X-API-Key";
+
+    @Data
+    public static class Replica {
+
+        private String url;
+
+        private String username;
+
+        private String password;
+
+        private int maximumPoolSize = 10;
+    }
+}
@@ -0,0 +1,7 @@
+package com.reynaldoabreu.libraryapi.exception;
+
+public class ConflictException extends BusinessException {
+    public ConflictException(String messageError) {
+        super(messageError);
+    }
+}
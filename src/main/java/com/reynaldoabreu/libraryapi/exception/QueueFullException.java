@@ -0,0 +1,7 @@
+package com.reynaldoabreu.libraryapi.exception;
+
+public class QueueFullException extends RuntimeException {
+    public QueueFullException(String messageError) {
+        super(messageError);
+    }
+}
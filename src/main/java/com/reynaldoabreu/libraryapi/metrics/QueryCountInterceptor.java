@@ -0,0 +1,72 @@
+package com.reynaldoabreu.libraryapi.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Registra quantos comandos SQL cada requisição executou ({@code library.http.queries})
+ * e conta como suspeita de N+1 ({@code library.http.queries.excessive}) as que passam do limite.
+ * Em handlers assíncronos o que o primeiro dispatch executou fica num atributo da requisição
+ * e é somado ao do dispatch ASYNC, que roda em outra thread.
+ */
+public class QueryCountInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String INITIAL_COUNT = QueryCountInterceptor.class.getName() + ".INITIAL_COUNT";
+
+    private static final Logger log = LoggerFactory.getLogger(QueryCountInterceptor.class);
+
+    private final MeterRegistry registry;
+    private final int threshold;
+
+    public QueryCountInterceptor(MeterRegistry registry, int threshold) {
+        this.registry = registry;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        QueryCountInspector.reset();
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        request.setAttribute(INITIAL_COUNT, QueryCountInspector.count());
+        QueryCountInspector.clear();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+
+        int queries = QueryCountInspector.count();
+        QueryCountInspector.clear();
+        Object initial = request.getAttribute(INITIAL_COUNT);
+        if (initial != null) {
+            queries += (Integer) initial;
+        }
+
+        String uri = String.valueOf(request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE));
+        DistributionSummary.builder("library.http.queries")
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(queries);
+
+        if (queries > threshold) {
+            Counter.builder("library.http.queries.excessive")
+                    .tag("method", request.getMethod())
+                    .tag("uri", uri)
+                    .register(registry)
+                    .increment();
+            log.warn("{} {} executed {} SQL statements (threshold {}), possible N+1", request.getMethod(), uri, queries, threshold);
+        }
+    }
+}
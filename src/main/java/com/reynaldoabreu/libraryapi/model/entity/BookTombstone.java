@@ -0,0 +1,61 @@
+package com.reynaldoabreu.libraryapi.model.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+/**
+ * Marca de remoção de um livro, para que o sincronismo incremental também entregue as remoções.
+ * Gravada na transação do DELETE; os ids de livro não são reutilizados.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "book_tombstone", indexes = @Index(name = "idx_book_tombstone_deleted_at", columnList = "deleted_at, book_id"))
+public class BookTombstone implements Persistable<Long> {
+
+    @Id
+    @Column(name = "book_id")
+    private Long bookId;
+
+    @Column(name = "deleted_at", nullable = false)
+    private Instant deletedAt;
+
+    @Transient
+    @Builder.Default
+    private boolean newTombstone = true;
+
+    public BookTombstone(Long bookId, Instant deletedAt) {
+        this(bookId, deletedAt, true);
+    }
+
+    @Override
+    public Long getId() {
+        return bookId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return newTombstone;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        newTombstone = false;
+    }
+}
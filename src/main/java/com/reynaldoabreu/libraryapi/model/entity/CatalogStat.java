@@ -0,0 +1,57 @@
+package com.reynaldoabreu.libraryapi.model.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * Contador materializado das estatísticas do catálogo ({@code books}, {@code loans}, ...).
+ * {@code generation} é a do último recálculo, igual em todas as linhas.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "catalog_stat")
+public class CatalogStat implements Persistable<String> {
+
+    @Id
+    @Column(length = 300)
+    private String name;
+
+    @Column(nullable = false)
+    private long total;
+
+    @Column(nullable = false)
+    private long generation;
+
+    @Transient
+    @Builder.Default
+    private boolean newStat = true;
+
+    @Override
+    public String getId() {
+        return name;
+    }
+
+    @Override
+    public boolean isNew() {
+        return newStat;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        newStat = false;
+    }
+}
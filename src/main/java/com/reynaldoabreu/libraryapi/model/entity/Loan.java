@@ -1,5 +1,6 @@
 package com.reynaldoabreu.libraryapi.model.entity;
 
+import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -11,11 +12,54 @@ import java.time.LocalDate;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+@Entity
+@Table(
+        indexes = {
+                @Index(name = "idx_loan_book_returned", columnList = "book_id, returned"),
+                @Index(name = "idx_loan_returned_loan_date", columnList = "returned, loan_date, id"),
+                // histórico sem filtro (findViews): mais recentes primeiro, sem ordenar a tabela inteira
+                @Index(name = "idx_loan_loan_date", columnList = "loan_date desc, id desc"),
+                @Index(name = "idx_loan_costumer", columnList = "costumer, loan_date"),
+                @Index(name = "idx_loan_reopened", columnList = "reopened")
+        },
+        uniqueConstraints = @UniqueConstraint(name = "uk_loan_active_book", columnNames = "active_book_id"))
 public class Loan {
+
+    @Id
+    @Column
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loan_seq")
+    @SequenceGenerator(name = "loan_seq", sequenceName = "loan_seq", allocationSize = 50)
     private Long id;
+
+    @Column(length = 100)
     private String costumer;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "book_id", nullable = false, foreignKey = @ForeignKey(name = "fk_loan_book"))
     private Book book;
+
+    @Column(name = "loan_date")
     private LocalDate loanDate;
+
+    @Column(nullable = false)
     private Boolean returned;
 
+    // Espelha book_id enquanto o empréstimo está ativo e fica nulo após a devolução,
+    // assim a constraint única garante no banco um único empréstimo ativo por livro.
+    @Column(name = "active_book_id")
+    private Long activeBookId;
+
+    // Marcado ao reabrir: a varredura de atrasos já pode ter passado pela chave (loan_date, id)
+    // deste empréstimo, então a próxima execução o reavalia à parte. Nulo quando não há pendência.
+    @Column(name = "reopened")
+    private Boolean reopened;
+
+    @PrePersist
+    @PreUpdate
+    void syncActiveBook() {
+        if (returned == null) {
+            returned = false;
+        }
+        activeBookId = returned ? null : book.getId();
+    }
 }
@@ -0,0 +1,46 @@
+package com.reynaldoabreu.libraryapi.model.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Evento de mudança de um livro ou empréstimo, gravado na mesma transação da escrita.
+ * O id é a posição do evento no fluxo publicado em {@code /api/events}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "outbox_event", indexes = @Index(name = "idx_outbox_event_created_at", columnList = "created_at"))
+public class OutboxEvent {
+
+    // Sem blocos pré-alocados: os ids saem contíguos da sequência, então um buraco no fluxo
+    // só aparece enquanto uma transação não confirmou (ou quando ela é desfeita). Os eventos
+    // das escritas em lote tiram o id no próprio INSERT (OutboxEventRepository.insertAll).
+    @Id
+    @Column
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_event_seq")
+    @SequenceGenerator(name = "outbox_event_seq", sequenceName = "outbox_event_seq", allocationSize = 1)
+    private Long id;
+
+    @Column(nullable = false, length = 20)
+    private String aggregate;
+
+    @Column(name = "aggregate_id", nullable = false)
+    private Long aggregateId;
+
+    @Column(nullable = false, length = 20)
+    private String type;
+
+    @Column(nullable = false, length = 4000)
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
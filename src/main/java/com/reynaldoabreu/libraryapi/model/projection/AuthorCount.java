@@ -0,0 +1,12 @@
+package com.reynaldoabreu.libraryapi.model.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+@Value
+@AllArgsConstructor
+public class AuthorCount {
+
+    String author;
+    long books;
+}
@@ -0,0 +1,23 @@
+package com.reynaldoabreu.libraryapi.model.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+import java.time.LocalDate;
+
+/**
+ * Linha do histórico de empréstimos com os dados do livro, lida numa única consulta
+ * sem hidratar as entidades {@code Loan} e {@code Book}.
+ */
+@Value
+@AllArgsConstructor
+public class LoanView {
+
+    Long id;
+    String costumer;
+    LocalDate loanDate;
+    Boolean returned;
+    Long bookId;
+    String isbn;
+    String title;
+}
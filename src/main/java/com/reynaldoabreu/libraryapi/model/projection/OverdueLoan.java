@@ -0,0 +1,21 @@
+package com.reynaldoabreu.libraryapi.model.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+import java.time.LocalDate;
+
+/**
+ * Dados de um empréstimo atrasado necessários para a notificação, lidos numa única consulta.
+ */
+@Value
+@AllArgsConstructor
+public class OverdueLoan {
+
+    Long id;
+    String costumer;
+    LocalDate loanDate;
+    Long bookId;
+    String isbn;
+    String title;
+}
@@ -1,9 +1,81 @@
 package com.reynaldoabreu.libraryapi.model.repository;
 
 import com.reynaldoabreu.libraryapi.model.entity.Book;
+import com.reynaldoabreu.libraryapi.model.projection.AuthorCount;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 public interface BookRepository extends JpaRepository<Book, Long> {
 
+    // mesmo casamento do Example com CONTAINING usado em find(): % e _ do filtro valem como texto
+    String FILTER = "(:title is null or lower(b.title) like lower(concat('%', :#{escape(#title ?: '')}, '%')) escape :#{escapeCharacter()})" +
+            " and (:author is null or lower(b.author) like lower(concat('%', :#{escape(#author ?: '')}, '%')) escape :#{escapeCharacter()})" +
+            " and (:isbn is null or lower(b.isbn) like lower(concat('%', :#{escape(#isbn ?: '')}, '%')) escape :#{escapeCharacter()})";
+
     boolean existsByIsbn(String isbn);
+
+    @Transactional(readOnly = true)
+    Optional<Book> findByIsbn(String isbn);
+
+    @Transactional(readOnly = true)
+    List<Book> findByIsbnIn(Collection<String> isbns);
+
+    @Query("select b.isbn from Book b where b.isbn in :isbns")
+    Set<String> findExistingIsbns(@Param("isbns") Collection<String> isbns);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select b from Book b where " + FILTER + " order by b.id")
+    Stream<Book> streamAll(@Param("title") String title, @Param("author") String author, @Param("isbn") String isbn);
+
+    @Query("select b from Book b where b.id > :afterId and " + FILTER + " order by b.id")
+    Slice<Book> findAfter(@Param("afterId") Long afterId,
+                          @Param("title") String title, @Param("author") String author, @Param("isbn") String isbn,
+                          Pageable pageable);
+
+    @Modifying(clearAutomatically = true)
+    @Query("delete from Book b where b.id = :id and (:version is null or b.version = :version)")
+    int deleteBookById(@Param("id") Long id, @Param("version") Long version);
+
+    // o UPDATE em massa não passa pelo @Version nem pelo @PreUpdate: a versão é incrementada aqui
+    // e updated_at vem de quem chama (Book.now()). O "update versioned" do HQL faria o mesmo, mas
+    // quebra uma asserção do Hibernate 6.1 ao gerar o literal da versão.
+    @Modifying(clearAutomatically = true)
+    @Query("update Book b set b.title = coalesce(:title, b.title), b.author = coalesce(:author, b.author)," +
+            " b.version = b.version + 1, b.updatedAt = :now" +
+            " where b.id = :id and (:version is null or b.version = :version)")
+    int updateFields(@Param("id") Long id, @Param("title") String title, @Param("author") String author,
+                     @Param("version") Long version, @Param("now") Instant now);
+
+    // remarcação antes do commit (ChangeStamps): sem versão nova, o conteúdo não mudou
+    @Modifying(flushAutomatically = true)
+    @Query("update Book b set b.updatedAt = :now where b.id in :ids and b.updatedAt < :now")
+    int restamp(@Param("ids") Collection<Long> ids, @Param("now") Instant now);
+
+    @Query("select b from Book b" +
+            " where (b.updatedAt > :since or (b.updatedAt = :since and b.id > :afterId)) and b.updatedAt <= :until" +
+            " order by b.updatedAt, b.id")
+    List<Book> findChangedAfter(@Param("since") Instant since, @Param("afterId") long afterId,
+                                @Param("until") Instant until, Pageable pageable);
+
+    @Query("select new com.reynaldoabreu.libraryapi.model.projection.AuthorCount(b.author, count(b))" +
+            " from Book b where b.author is not null group by b.author")
+    List<AuthorCount> countByAuthor();
 }
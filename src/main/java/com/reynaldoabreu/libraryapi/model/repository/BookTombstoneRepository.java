@@ -0,0 +1,29 @@
+package com.reynaldoabreu.libraryapi.model.repository;
+
+import com.reynaldoabreu.libraryapi.model.entity.BookTombstone;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface BookTombstoneRepository extends JpaRepository<BookTombstone, Long> {
+
+    @Query("select t from BookTombstone t" +
+            " where (t.deletedAt > :since or (t.deletedAt = :since and t.bookId > :afterId)) and t.deletedAt <= :until" +
+            " order by t.deletedAt, t.bookId")
+    List<BookTombstone> findDeletedAfter(@Param("since") Instant since, @Param("afterId") long afterId,
+                                         @Param("until") Instant until, Pageable pageable);
+
+    @Modifying(flushAutomatically = true)
+    @Query("update BookTombstone t set t.deletedAt = :now where t.bookId in :ids and t.deletedAt < :now")
+    int restamp(@Param("ids") Collection<Long> ids, @Param("now") Instant now);
+
+    @Modifying
+    @Query("delete from BookTombstone t where t.deletedAt < :before")
+    int deleteDeletedBefore(@Param("before") Instant before);
+}
@@ -0,0 +1,24 @@
+package com.reynaldoabreu.libraryapi.model.repository;
+
+import com.reynaldoabreu.libraryapi.model.entity.CatalogStat;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+public interface CatalogStatRepository extends JpaRepository<CatalogStat, String> {
+
+    // só soma na geração em que os incrementos foram contados: depois de um recálculo, nenhuma linha
+    @Modifying
+    @Query("update CatalogStat s set s.total = s.total + :delta where s.name = :name and s.generation = :generation")
+    int increment(@Param("name") String name, @Param("delta") long delta, @Param("generation") long generation);
+
+    // só o valor: a entidade ficaria no contexto e colidiria com a linha regravada no recálculo
+    @Query("select s.total from CatalogStat s where s.name = :name")
+    Optional<Long> findTotal(@Param("name") String name);
+
+    @Query("select max(s.generation) from CatalogStat s")
+    Optional<Long> findGeneration();
+}
@@ -0,0 +1,34 @@
+package com.reynaldoabreu.libraryapi.model.repository;
+
+import com.reynaldoabreu.libraryapi.model.entity.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+
+    @Modifying
+    @Query("update IdempotencyKey k set k.resultId = :resultId where k.key = :key")
+    int complete(@Param("key") String key, @Param("resultId") Long resultId);
+
+    @Modifying
+    @Query("delete from IdempotencyKey k where k.key = :key and k.resultId is null")
+    int release(@Param("key") String key);
+
+    // só assume a chave se ela ainda estiver vencida (concluída além do ttl ou reserva em andamento
+    // além do lease): entre nós concorrentes, apenas um altera a linha
+    @Transactional
+    @Modifying
+    @Query("update IdempotencyKey k set k.fingerprint = :fingerprint, k.resultId = null, k.createdAt = :now "
+            + "where k.key = :key and (k.createdAt < :cutoff or (k.resultId is null and k.createdAt < :leaseCutoff))")
+    int takeOver(@Param("key") String key, @Param("fingerprint") String fingerprint, @Param("now") Instant now,
+                 @Param("cutoff") Instant cutoff, @Param("leaseCutoff") Instant leaseCutoff);
+
+    @Modifying
+    @Query("delete from IdempotencyKey k where k.createdAt < :cutoff")
+    int deleteCreatedBefore(@Param("cutoff") Instant cutoff);
+}
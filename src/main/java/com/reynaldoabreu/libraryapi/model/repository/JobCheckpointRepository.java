@@ -0,0 +1,35 @@
+package com.reynaldoabreu.libraryapi.model.repository;
+
+import com.reynaldoabreu.libraryapi.model.entity.JobCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+public interface JobCheckpointRepository extends JpaRepository<JobCheckpoint, String> {
+
+    // só assume o job se ninguém o detém ou se o lease venceu: entre nós concorrentes, apenas um altera a linha
+    @Transactional
+    @Modifying
+    @Query("update JobCheckpoint c set c.lockedBy = :owner, c.lockedUntil = :until" +
+            " where c.name = :name and (c.lockedUntil is null or c.lockedUntil < :now)")
+    int acquire(@Param("name") String name, @Param("owner") String owner,
+                @Param("now") Instant now, @Param("until") Instant until);
+
+    // avança a marca d'água e renova o lease; zero quando outro nó assumiu o job
+    @Transactional
+    @Modifying
+    @Query("update JobCheckpoint c set c.lastDate = :lastDate, c.lastId = :lastId, c.lockedUntil = :until" +
+            " where c.name = :name and c.lockedBy = :owner")
+    int advance(@Param("name") String name, @Param("owner") String owner,
+                @Param("lastDate") LocalDate lastDate, @Param("lastId") Long lastId, @Param("until") Instant until);
+
+    @Transactional
+    @Modifying
+    @Query("update JobCheckpoint c set c.lockedBy = null, c.lockedUntil = null where c.name = :name and c.lockedBy = :owner")
+    int release(@Param("name") String name, @Param("owner") String owner);
+}
@@ -0,0 +1,89 @@
+package com.reynaldoabreu.libraryapi.model.repository;
+
+import com.reynaldoabreu.libraryapi.model.entity.Loan;
+import com.reynaldoabreu.libraryapi.model.projection.LoanView;
+import com.reynaldoabreu.libraryapi.model.projection.OverdueLoan;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+public interface LoanRepository extends JpaRepository<Loan, Long> {
+
+    String VIEW = "select new com.reynaldoabreu.libraryapi.model.projection.LoanView(" +
+            "l.id, l.costumer, l.loanDate, l.returned, b.id, b.isbn, b.title)" +
+            " from Loan l join l.book b";
+
+    @Query(VIEW + " where (:costumer is null or l.costumer = :costumer) and (:isbn is null or b.isbn = :isbn)" +
+            " order by l.loanDate desc, l.id desc")
+    Slice<LoanView> findViews(@Param("costumer") String costumer, @Param("isbn") String isbn, Pageable pageable);
+
+    @Query(VIEW + " where b.id = :bookId order by l.loanDate desc, l.id desc")
+    Slice<LoanView> findViewsByBook(@Param("bookId") Long bookId, Pageable pageable);
+
+    @Query("select l.activeBookId from Loan l where l.activeBookId in :bookIds")
+    Set<Long> findActiveBookIds(@Param("bookIds") Collection<Long> bookIds);
+
+    @Query("select l.activeBookId from Loan l where l.activeBookId is not null")
+    Stream<Long> streamActiveBookIds();
+
+    boolean existsByActiveBookId(Long bookId);
+
+    @Query("select l.book.id from Loan l where l.id = :id")
+    Optional<Long> findBookIdById(@Param("id") Long id);
+
+    // só conta como alterado quando o estado muda, para as estatísticas seguirem as transições;
+    // a reabertura marca o empréstimo para a varredura de atrasos
+    @Modifying(clearAutomatically = true)
+    @Query("update Loan l set l.returned = :returned," +
+            " l.activeBookId = case when :returned = true then null else l.book.id end," +
+            " l.reopened = case when :returned = true then null else true end" +
+            " where l.id = :id and l.returned <> :returned")
+    int updateReturned(@Param("id") Long id, @Param("returned") boolean returned);
+
+    /**
+     * Próximo bloco de empréstimos em aberto feitos antes de {@code before}, em ordem de
+     * (loanDate, id) a partir da chave informada. Percorre só a faixa nova do índice
+     * idx_loan_returned_loan_date.
+     */
+    @Query("select new com.reynaldoabreu.libraryapi.model.projection.OverdueLoan(" +
+            "l.id, l.costumer, l.loanDate, b.id, b.isbn, b.title)" +
+            " from Loan l join l.book b" +
+            " where l.returned = false and l.loanDate < :before" +
+            " and (l.loanDate > :afterDate or (l.loanDate = :afterDate and l.id > :afterId))" +
+            " order by l.loanDate, l.id")
+    List<OverdueLoan> findOverdueAfter(@Param("before") LocalDate before,
+                                       @Param("afterDate") LocalDate afterDate, @Param("afterId") Long afterId,
+                                       Pageable pageable);
+
+    /**
+     * Empréstimos reabertos, em aberto e atrasados cuja chave (loanDate, id) a varredura já
+     * passou, isto é, até a chave informada.
+     */
+    @Query("select new com.reynaldoabreu.libraryapi.model.projection.OverdueLoan(" +
+            "l.id, l.costumer, l.loanDate, b.id, b.isbn, b.title)" +
+            " from Loan l join l.book b" +
+            " where l.reopened = true and l.returned = false and l.loanDate < :before" +
+            " and (l.loanDate < :untilDate or (l.loanDate = :untilDate and l.id <= :untilId))" +
+            " order by l.loanDate, l.id")
+    List<OverdueLoan> findReopenedOverdue(@Param("before") LocalDate before,
+                                          @Param("untilDate") LocalDate untilDate, @Param("untilId") Long untilId,
+                                          Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("update Loan l set l.reopened = null where l.id in :ids and l.reopened = true")
+    int clearReopened(@Param("ids") Collection<Long> ids);
+
+    long countByReturnedFalse();
+}
@@ -0,0 +1,31 @@
+package com.reynaldoabreu.libraryapi.model.repository;
+
+import com.reynaldoabreu.libraryapi.model.entity.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long>, OutboxEventRepositoryCustom {
+
+    @Query("select e from OutboxEvent e where e.id > :after order by e.id")
+    List<OutboxEvent> findAfter(@Param("after") long after, Pageable pageable);
+
+    @Query("select e from OutboxEvent e where e.id > :after and e.id <= :upTo order by e.id")
+    List<OutboxEvent> findRange(@Param("after") long after, @Param("upTo") long upTo, Pageable pageable);
+
+    @Query("select e from OutboxEvent e where e.id in :ids order by e.id")
+    List<OutboxEvent> findByIds(@Param("ids") Collection<Long> ids);
+
+    @Query("select coalesce(max(e.id), 0) from OutboxEvent e")
+    long findMaxId();
+
+    @Modifying
+    @Query("delete from OutboxEvent e where e.createdAt < :before")
+    int deleteCreatedBefore(@Param("before") Instant before);
+}
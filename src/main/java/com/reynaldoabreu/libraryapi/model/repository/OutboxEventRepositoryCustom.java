@@ -0,0 +1,14 @@
+package com.reynaldoabreu.libraryapi.model.repository;
+
+import com.reynaldoabreu.libraryapi.model.entity.OutboxEvent;
+
+import java.util.Collection;
+
+public interface OutboxEventRepositoryCustom {
+
+    /**
+     * Grava os eventos num único lote JDBC, tirando o id da sequência dentro do próprio INSERT.
+     * Os ids atribuídos não voltam para as instâncias.
+     */
+    void insertAll(Collection<OutboxEvent> events);
+}
@@ -0,0 +1,45 @@
+package com.reynaldoabreu.libraryapi.model.repository;
+
+import com.reynaldoabreu.libraryapi.model.entity.OutboxEvent;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+
+import java.sql.PreparedStatement;
+import java.time.ZoneOffset;
+import java.util.Collection;
+
+/**
+ * Com {@code allocationSize = 1}, o persist de cada evento pediria um valor da sequência num
+ * comando próprio. Aqui o {@code NEXT VALUE FOR} vai no INSERT e os eventos de uma escrita em
+ * lote seguem num só executeBatch, sem abrir mão de ids sem blocos pré-alocados.
+ */
+public class OutboxEventRepositoryImpl implements OutboxEventRepositoryCustom {
+
+    private static final String INSERT = "INSERT INTO outbox_event (id, aggregate, aggregate_id, type, payload, created_at) "
+            + "VALUES (NEXT VALUE FOR outbox_event_seq, ?, ?, ?, ?, ?)";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public void insertAll(Collection<OutboxEvent> events) {
+
+        if (events.isEmpty()) {
+            return;
+        }
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+                for (OutboxEvent event : events) {
+                    statement.setString(1, event.getAggregate());
+                    statement.setLong(2, event.getAggregateId());
+                    statement.setString(3, event.getType());
+                    statement.setString(4, event.getPayload());
+                    statement.setObject(5, event.getCreatedAt().atOffset(ZoneOffset.UTC));
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        });
+    }
+}
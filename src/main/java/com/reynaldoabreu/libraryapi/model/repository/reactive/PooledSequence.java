@@ -0,0 +1,63 @@
+package com.reynaldoabreu.libraryapi.model.repository.reactive;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reserva ids de uma sequência do banco em blocos. Com o mesmo tamanho de bloco do
+ * allocationSize mapeado na entidade, cada valor da sequência reserva o bloco
+ * (valor - tamanho, valor], o mesmo que o otimizador pooled do Hibernate usa,
+ * então as duas pilhas podem gravar na mesma tabela sem colisão.
+ */
+final class PooledSequence {
+
+    private final DatabaseClient client;
+    private final String sequenceName;
+    private final int blockSize;
+    private final AtomicReference<IdBlock> idBlock = new AtomicReference<>(IdBlock.EXHAUSTED);
+
+    PooledSequence(DatabaseClient client, String sequenceName, int blockSize) {
+        this.client = client;
+        this.sequenceName = sequenceName;
+        this.blockSize = blockSize;
+    }
+
+    Mono<Long> nextId() {
+        return Mono.defer(() -> {
+            long id = idBlock.get().take();
+            if (id > 0) {
+                return Mono.just(id);
+            }
+            return client.sql("SELECT NEXT VALUE FOR " + sequenceName)
+                    .map(row -> row.get(0, Long.class))
+                    .one()
+                    .map(hi -> {
+                        long low = Math.max(1, hi - blockSize + 1);
+                        IdBlock block = new IdBlock(low + 1, hi);
+                        idBlock.set(block);
+                        return low;
+                    });
+        });
+    }
+
+    private static final class IdBlock {
+
+        static final IdBlock EXHAUSTED = new IdBlock(1, 0);
+
+        private final AtomicLong next;
+        private final long hi;
+
+        IdBlock(long next, long hi) {
+            this.next = new AtomicLong(next);
+            this.hi = hi;
+        }
+
+        long take() {
+            long id = next.getAndIncrement();
+            return id <= hi ? id : -1;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.reynaldoabreu.libraryapi.model.repository.reactive;
+
+import com.reynaldoabreu.libraryapi.model.entity.Book;
+import io.r2dbc.spi.Readable;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.jpa.repository.query.EscapeCharacter;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+
+
+@Repository
+@Profile("reactive")
+public class ReactiveBookRepository {
+
+    // mesmo allocationSize do book_seq mapeado em Book
+    private static final int ID_BLOCK_SIZE = 50;
+
+    private static final String COLUMNS = "id, title, author, isbn, version, created_at, updated_at";
+    // os valores chegam escapados por bindFilter, como o FILTER do BookRepository
+    private static final String FILTER =
+            "(CAST(:title AS VARCHAR) IS NULL OR LOWER(title) LIKE LOWER(CONCAT('%', :title, '%')) ESCAPE '\\')" +
+            " AND (CAST(:author AS VARCHAR) IS NULL OR LOWER(author) LIKE LOWER(CONCAT('%', :author, '%')) ESCAPE '\\')" +
+            " AND (CAST(:isbn AS VARCHAR) IS NULL OR LOWER(isbn) LIKE LOWER(CONCAT('%', :isbn, '%')) ESCAPE '\\')";
+
+    private final DatabaseClient client;
+    private final PooledSequence ids;
+
+    public ReactiveBookRepository(DatabaseClient client) {
+        this.client = client;
+        this.ids = new PooledSequence(client, "book_seq", ID_BLOCK_SIZE);
+    }
+
+    public Mono<Book> findById(Long id) {
+        return client.sql("SELECT " + COLUMNS + " FROM book WHERE id = :id")
+                .bind("id", id)
+                .map(ReactiveBookRepository::toBook)
+                .one();
+    }
+
+    public Mono<Book> findByIsbn(String isbn) {
+        return client.sql("SELECT " + COLUMNS + " FROM book WHERE isbn = :isbn")
+                .bind("isbn", isbn)
+                .map(ReactiveBookRepository::toBook)
+                .one();
+    }
+
+    public Flux<Book> find(String title, String author, String isbn, long offset, int limit) {
+        DatabaseClient.GenericExecuteSpec spec = client
+                .sql("SELECT " + COLUMNS + " FROM book WHERE " + FILTER + " ORDER BY id LIMIT :limit OFFSET :offset")
+                .bind("limit", limit)
+                .bind("offset", offset);
+        return bindFilter(spec, title, author, isbn)
+                .map(ReactiveBookRepository::toBook)
+                .all();
+    }
+
+    public Mono<Long> count(String title, String author, String isbn) {
+        DatabaseClient.GenericExecuteSpec spec = client.sql("SELECT COUNT(*) FROM book WHERE " + FILTER);
+        return bindFilter(spec, title, author, isbn)
+                .map(row -> row.get(0, Long.class))
+                .one();
+    }
+
+    public Mono<Book> insert(Book book) {
+        return ids.nextId().flatMap(id -> {
+            Instant now = Book.now();
+            DatabaseClient.GenericExecuteSpec spec = client
+                    .sql("INSERT INTO book (" + COLUMNS + ") VALUES (:id, :title, :author, :isbn, 0, :now, :now)")
+                    .bind("id", id)
+                    .bind("now", now);
+            return bindFields(spec, book.getTitle(), book.getAuthor(), book.getIsbn())
+                    .fetch()
+                    .rowsUpdated()
+                    .thenReturn(book.toBuilder().id(id).version(0L).createdAt(now).updatedAt(now).build());
+        });
+    }
+
+    /**
+     * Grava o livro só se a versão no banco ainda for a dele, como o {@code @Version} do JPA.
+     * Vazio quando nenhuma linha casou: o livro foi alterado ou removido nesse meio tempo.
+     */
+    public Mono<Book> update(Book book) {
+        Instant now = Book.now();
+        DatabaseClient.GenericExecuteSpec spec = client
+                .sql("UPDATE book SET title = :title, author = :author, isbn = :isbn, version = version + 1," +
+                        " updated_at = :now WHERE id = :id AND version = :version")
+                .bind("id", book.getId())
+                .bind("version", book.getVersion())
+                .bind("now", now);
+        return bindFields(spec, book.getTitle(), book.getAuthor(), book.getIsbn())
+                .fetch()
+                .rowsUpdated()
+                .filter(rows -> rows > 0)
+                .map(rows -> book.toBuilder().version(book.getVersion() + 1).updatedAt(now).build());
+    }
+
+    /**
+     * Grava a marca de remoção antes do DELETE (sem transação na pilha reativa): uma falha entre
+     * os dois deixa uma remoção a mais no sincronismo, nunca uma remoção perdida.
+     */
+    public Mono<Long> deleteById(Long id) {
+        return client.sql("INSERT INTO book_tombstone (book_id, deleted_at) SELECT id, :now FROM book WHERE id = :id" +
+                        " AND NOT EXISTS (SELECT 1 FROM book_tombstone WHERE book_id = :id)")
+                .bind("id", id)
+                .bind("now", Book.now())
+                .fetch()
+                .rowsUpdated()
+                .then(client.sql("DELETE FROM book WHERE id = :id")
+                        .bind("id", id)
+                        .fetch()
+                        .rowsUpdated());
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bindFilter(DatabaseClient.GenericExecuteSpec spec,
+                                                                String title, String author, String isbn) {
+        EscapeCharacter escape = EscapeCharacter.DEFAULT;
+        return bindFields(spec, escape.escape(title), escape.escape(author), escape.escape(isbn));
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bindFields(DatabaseClient.GenericExecuteSpec spec,
+                                                                String title, String author, String isbn) {
+        spec = bindNullable(spec, "title", title);
+        spec = bindNullable(spec, "author", author);
+        return bindNullable(spec, "isbn", isbn);
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bindNullable(DatabaseClient.GenericExecuteSpec spec,
+                                                                  String name, String value) {
+        return value == null ? spec.bindNull(name, String.class) : spec.bind(name, value);
+    }
+
+    private static Book toBook(Readable row) {
+        return Book.builder()
+                .id(row.get("id", Long.class))
+                .title(row.get("title", String.class))
+                .author(row.get("author", String.class))
+                .isbn(row.get("isbn", String.class))
+                .version(row.get("version", Long.class))
+                .createdAt(row.get("created_at", Instant.class))
+                .updatedAt(row.get("updated_at", Instant.class))
+                .build();
+    }
+}
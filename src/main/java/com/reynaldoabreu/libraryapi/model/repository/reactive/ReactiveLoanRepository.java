@@ -0,0 +1,42 @@
+package com.reynaldoabreu.libraryapi.model.repository.reactive;
+
+import com.reynaldoabreu.libraryapi.model.entity.Loan;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+@Repository
+@Profile("reactive")
+public class ReactiveLoanRepository {
+
+    // mesmo allocationSize do loan_seq mapeado em Loan
+    private static final int ID_BLOCK_SIZE = 50;
+
+    private final DatabaseClient client;
+    private final PooledSequence ids;
+
+    public ReactiveLoanRepository(DatabaseClient client) {
+        this.client = client;
+        this.ids = new PooledSequence(client, "loan_seq", ID_BLOCK_SIZE);
+    }
+
+    // active_book_id recebe o id do livro, como faz o callback de Loan no JPA,
+    // para que a constraint uk_loan_active_book valha também para esta pilha.
+    public Mono<Loan> insert(Loan loan) {
+        return ids.nextId().flatMap(id -> client.sql("INSERT INTO loan (id, costumer, book_id, loan_date, returned, active_book_id)" +
+                        " VALUES (:id, :costumer, :bookId, :loanDate, FALSE, :bookId)")
+                .bind("id", id)
+                .bind("costumer", loan.getCostumer())
+                .bind("bookId", loan.getBook().getId())
+                .bind("loanDate", loan.getLoanDate())
+                .fetch()
+                .rowsUpdated()
+                .map(rows -> {
+                    loan.setId(id);
+                    loan.setReturned(false);
+                    loan.setActiveBookId(loan.getBook().getId());
+                    return loan;
+                }));
+    }
+}
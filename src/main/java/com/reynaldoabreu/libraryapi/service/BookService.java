@@ -3,20 +3,54 @@ package com.reynaldoabreu.libraryapi.service;
 import com.reynaldoabreu.libraryapi.model.entity.Book;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface BookService {
 
     Book save(Book book);
 
+    List<Book> saveAll(List<Book> books);
+
     Optional<Book> getById(Long id);
 
     void delete(Book book);
 
+    /**
+     * Remove o livro com um único comando, sem carregá-lo antes. Com {@code expectedVersion}
+     * informado só remove se a versão ainda for essa.
+     *
+     * @return quantidade de linhas removidas (0 quando não existe ou a versão mudou)
+     */
+    int deleteById(Long id, Long expectedVersion);
+
     Book update(Book book);
 
+    /**
+     * Atualiza título e/ou autor com um único comando; campos nulos ficam como estão.
+     *
+     * @return quantidade de linhas atualizadas (0 quando não existe ou a versão mudou)
+     */
+    int updateFields(Long id, String title, String author, Long expectedVersion);
+
     Page<Book> find(Book filter, Pageable pageRequest);
 
+    Slice<Book> findAfter(Book filter, Long afterId, int size);
+
+    void export(Book filter, Consumer<Book> consumer);
+
+    List<Book> search(String query, int limit);
+
     Optional<Book> getBookByIsbn(String isbn);
+
+    /**
+     * Resolve vários isbns de uma vez: os que não estão em cache vêm de uma única consulta.
+     * Isbns sem livro ficam fora do mapa.
+     */
+    Map<String, Book> getBooksByIsbn(Collection<String> isbns);
 }
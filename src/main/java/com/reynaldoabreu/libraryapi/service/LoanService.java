@@ -1,7 +1,25 @@
 package com.reynaldoabreu.libraryapi.service;
 
 import com.reynaldoabreu.libraryapi.model.entity.Loan;
+import com.reynaldoabreu.libraryapi.model.projection.LoanView;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 public interface LoanService {
     Loan save(Loan loan);
+
+    /**
+     * Marca o empréstimo como devolvido (ou reaberto) com um único comando.
+     *
+     * @return quantidade de linhas atualizadas (0 quando o empréstimo não existe)
+     */
+    int updateReturned(Long id, boolean returned);
+
+    /**
+     * Histórico de empréstimos, do mais recente para o mais antigo, filtrado por cliente e/ou isbn.
+     * Cada página custa uma consulta; a ordenação do {@code pageable} é ignorada.
+     */
+    Slice<LoanView> find(String costumer, String isbn, Pageable pageable);
+
+    Slice<LoanView> findByBook(Long bookId, Pageable pageable);
 }
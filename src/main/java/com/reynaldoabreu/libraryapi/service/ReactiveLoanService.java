@@ -0,0 +1,9 @@
+package com.reynaldoabreu.libraryapi.service;
+
+import com.reynaldoabreu.libraryapi.model.entity.Loan;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveLoanService {
+
+    Mono<Loan> save(Loan loan);
+}
@@ -0,0 +1,148 @@
+package com.reynaldoabreu.libraryapi.service.availability;
+
+import com.reynaldoabreu.libraryapi.config.routing.PrimaryReads;
+import com.reynaldoabreu.libraryapi.model.repository.LoanRepository;
+import com.reynaldoabreu.libraryapi.service.AfterCommit;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.stream.Stream;
+
+/**
+ * Responde "este livro está emprestado?" da memória. O {@code LoanService} marca e desmarca
+ * os livros depois do commit de cada empréstimo e devolução; na subida o índice é
+ * reconstruído a partir dos empréstimos ativos. Mudanças que chegam durante a reconstrução
+ * vão para um diário e são reaplicadas sobre o índice novo antes da troca; aplicar uma mudança
+ * e trocar o índice são mutuamente exclusivos, então nenhuma fica para trás nem fora de ordem.
+ * <p>
+ * As chamadas depois do commit chegam na ordem em que as threads as executam, não na dos
+ * commits: a devolução de um empréstimo pode chegar depois do empréstimo seguinte do mesmo
+ * livro. Por isso a devolução não desmarca o livro direto: relê no primário se ele tem
+ * empréstimo ativo e aplica o que encontrar.
+ */
+@Component
+public class AvailabilityIndex implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(AvailabilityIndex.class);
+
+    private final LoanRepository loanRepository;
+    private final TransactionTemplate transactions;
+    private final TransactionTemplate recheck;
+
+    private final Object swapLock = new Object();
+
+    private volatile OnLoanBitmap onLoan = new OnLoanBitmap();
+    // guardado por swapLock
+    private Queue<Change> journal;
+
+    public AvailabilityIndex(LoanRepository loanRepository, PlatformTransactionManager transactionManager) {
+        this.loanRepository = loanRepository;
+        this.transactions = new TransactionTemplate(transactionManager);
+        this.transactions.setReadOnly(true);
+        // roda depois do commit, com a transação da escrita ainda associada à thread
+        this.recheck = new TransactionTemplate(transactionManager);
+        this.recheck.setReadOnly(true);
+        this.recheck.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public boolean isAvailable(long bookId) {
+        return !onLoan.contains(bookId);
+    }
+
+    public void lent(Long bookId) {
+        if (bookId != null) {
+            AfterCommit.run(() -> apply(new Change(bookId, true)));
+        }
+    }
+
+    public void returned(Long bookId) {
+        if (bookId != null) {
+            AfterCommit.run(() -> applyReturned(bookId));
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+
+        synchronized (swapLock) {
+            journal = new ArrayDeque<>();
+        }
+        OnLoanBitmap rebuilt = new OnLoanBitmap();
+        try {
+            transactions.executeWithoutResult(status -> {
+                try (Stream<Long> bookIds = loanRepository.streamActiveBookIds()) {
+                    bookIds.forEach(rebuilt::add);
+                }
+            });
+        } catch (RuntimeException ex) {
+            synchronized (swapLock) {
+                journal = null;
+            }
+            throw ex;
+        }
+
+        // o que chegou durante a leitura é mais novo que ela: entra no índice novo antes de ele ser publicado
+        synchronized (swapLock) {
+            for (Change change = journal.poll(); change != null; change = journal.poll()) {
+                change.applyTo(rebuilt);
+            }
+            onLoan = rebuilt;
+            journal = null;
+        }
+        log.info("Availability index rebuilt: {} books on loan", rebuilt.cardinality());
+    }
+
+    // lida sob a trava: um empréstimo confirmado depois da leitura é aplicado depois dela
+    private void applyReturned(long bookId) {
+        synchronized (swapLock) {
+            Boolean onLoan = PrimaryReads.call(() -> recheck.execute(status -> loanRepository.existsByActiveBookId(bookId)));
+            apply(new Change(bookId, Boolean.TRUE.equals(onLoan)));
+        }
+    }
+
+    private void apply(Change change) {
+        synchronized (swapLock) {
+            if (journal != null) {
+                journal.add(change);
+            }
+            change.applyTo(onLoan);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("library.availability.on_loan", this, index -> index.onLoan.cardinality())
+                .description("Livros emprestados segundo o índice de disponibilidade")
+                .register(registry);
+    }
+
+    private static final class Change {
+
+        final long bookId;
+        final boolean onLoan;
+
+        Change(long bookId, boolean onLoan) {
+            this.bookId = bookId;
+            this.onLoan = onLoan;
+        }
+
+        void applyTo(OnLoanBitmap bitmap) {
+            if (onLoan) {
+                bitmap.add(bookId);
+            } else {
+                bitmap.remove(bookId);
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.reynaldoabreu.libraryapi.service.availability;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Conjunto de ids de livros emprestados em dois níveis, no espírito de um roaring bitmap:
+ * os 16 bits baixos do id endereçam um bit numa página de 8 KB, os altos escolhem a página.
+ * Ids de sequência são densos, então poucas páginas cobrem o catálogo todo. Leitura e
+ * escrita são lock-free: cada palavra da página é alterada por CAS.
+ */
+final class OnLoanBitmap {
+
+    private static final int PAGE_BITS = 16;
+    private static final int PAGE_MASK = (1 << PAGE_BITS) - 1;
+    private static final int WORDS_PER_PAGE = 1 << (PAGE_BITS - 6);
+
+    private final Map<Long, AtomicLongArray> pages = new ConcurrentHashMap<>();
+
+    boolean contains(long id) {
+        AtomicLongArray page = pages.get(id >>> PAGE_BITS);
+        if (page == null) {
+            return false;
+        }
+        int bit = (int) (id & PAGE_MASK);
+        return (page.get(bit >>> 6) & (1L << bit)) != 0;
+    }
+
+    void add(long id) {
+        int bit = (int) (id & PAGE_MASK);
+        pages.computeIfAbsent(id >>> PAGE_BITS, ignored -> new AtomicLongArray(WORDS_PER_PAGE))
+                .getAndAccumulate(bit >>> 6, 1L << bit, (word, mask) -> word | mask);
+    }
+
+    void remove(long id) {
+        AtomicLongArray page = pages.get(id >>> PAGE_BITS);
+        if (page != null) {
+            int bit = (int) (id & PAGE_MASK);
+            page.getAndAccumulate(bit >>> 6, ~(1L << bit), (word, mask) -> word & mask);
+        }
+    }
+
+    long cardinality() {
+        long count = 0;
+        for (AtomicLongArray page : pages.values()) {
+            for (int i = 0; i < page.length(); i++) {
+                count += Long.bitCount(page.get(i));
+            }
+        }
+        return count;
+    }
+}
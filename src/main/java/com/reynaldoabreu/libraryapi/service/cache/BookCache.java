@@ -0,0 +1,76 @@
+package com.reynaldoabreu.libraryapi.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.reynaldoabreu.libraryapi.model.entity.Book;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Cache de livros por id (Caffeine, W-TinyLFU) com limite de tamanho e expiração.
+ * Guarda e devolve cópias, já que os chamadores alteram as entidades recebidas.
+ * Escritas (put/evict) devem ser feitas depois do commit, para que uma carga concorrente
+ * não leia a linha antiga depois delas.
+ * As estatísticas saem pelo actuator, nas métricas {@code cache.*} com {@code cache=books}.
+ */
+@Component
+public class BookCache implements MeterBinder {
+
+    private final boolean enabled;
+    private final Cache<Long, Book> books;
+
+    public BookCache(BookCacheProperties properties) {
+        this.enabled = properties.isEnabled();
+        this.books = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getExpireAfterWrite())
+                .recordStats()
+                .build();
+    }
+
+    public Optional<Book> get(Long id, Function<Long, Optional<Book>> loader) {
+
+        if (!enabled || id == null) {
+            return loader.apply(id);
+        }
+
+        // a carga roda dentro do cache: um put/evict concorrente da mesma chave espera ela terminar
+        // e prevalece, em vez de ser sobrescrito por uma leitura feita antes do commit
+        Book cached = books.get(id, key -> loader.apply(key).map(BookCache::copy).orElse(null));
+        return Optional.ofNullable(cached).map(BookCache::copy);
+    }
+
+    public void put(Book book) {
+        if (enabled && book != null && book.getId() != null) {
+            books.put(book.getId(), copy(book));
+        }
+    }
+
+    public void evict(Long id) {
+        if (id != null) {
+            books.invalidate(id);
+        }
+    }
+
+    public void clear() {
+        books.invalidateAll();
+    }
+
+    public long size() {
+        return books.estimatedSize();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, books, "books");
+    }
+
+    private static Book copy(Book book) {
+        return book.toBuilder().build();
+    }
+}
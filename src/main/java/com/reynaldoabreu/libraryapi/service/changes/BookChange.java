@@ -0,0 +1,45 @@
+package com.reynaldoabreu.libraryapi.service.changes;
+
+import com.reynaldoabreu.libraryapi.model.entity.Book;
+import com.reynaldoabreu.libraryapi.model.entity.BookTombstone;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+import java.time.Instant;
+
+/**
+ * Livro criado ou alterado, ou a remoção de um livro ({@code deleted}, só com id e instante).
+ */
+@Value
+@AllArgsConstructor
+public class BookChange {
+
+    Long id;
+
+    String title;
+
+    String author;
+
+    String isbn;
+
+    Long version;
+
+    Instant createdAt;
+
+    Instant changedAt;
+
+    boolean deleted;
+
+    static BookChange of(Book book) {
+        return new BookChange(book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn(), book.getVersion(),
+                book.getCreatedAt(), book.getUpdatedAt(), false);
+    }
+
+    static BookChange of(BookTombstone tombstone) {
+        return new BookChange(tombstone.getBookId(), null, null, null, null, null, tombstone.getDeletedAt(), true);
+    }
+
+    public Watermark watermark() {
+        return new Watermark(changedAt, id);
+    }
+}
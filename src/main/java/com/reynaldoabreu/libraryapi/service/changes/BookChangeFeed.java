@@ -0,0 +1,103 @@
+package com.reynaldoabreu.libraryapi.service.changes;
+
+import com.reynaldoabreu.libraryapi.model.entity.Book;
+import com.reynaldoabreu.libraryapi.model.repository.BookRepository;
+import com.reynaldoabreu.libraryapi.model.repository.BookTombstoneRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Sincronismo incremental do catálogo: livros criados, alterados e removidos depois de uma
+ * marca d'água, em ordem de (instante, id).
+ *
+ * <p>Livros e marcas de remoção são lidos por chave nos índices (updated_at, id) e
+ * (deleted_at, book_id) e intercalados; cada página custa o tamanho da página, não o do
+ * catálogo. Só entram mudanças anteriores a {@code agora - settle-lag}, para que uma transação
+ * ainda não confirmada não fique para trás da marca d'água devolvida. Isso supõe que toda escrita
+ * confirma dentro do settle-lag depois de marcar o instante: {@link ChangeStamps} remarca as
+ * transações longas e conta as que confirmam depois disso.
+ */
+@Component
+public class BookChangeFeed {
+
+    private static final Logger log = LoggerFactory.getLogger(BookChangeFeed.class);
+
+    private final BookRepository bookRepository;
+    private final BookTombstoneRepository tombstoneRepository;
+    private final BookChangesProperties properties;
+    private final Supplier<Instant> clock;
+
+    @Autowired
+    public BookChangeFeed(BookRepository bookRepository, BookTombstoneRepository tombstoneRepository,
+                          BookChangesProperties properties) {
+        this(bookRepository, tombstoneRepository, properties, Book::now);
+    }
+
+    BookChangeFeed(BookRepository bookRepository, BookTombstoneRepository tombstoneRepository,
+                   BookChangesProperties properties, Supplier<Instant> clock) {
+        this.bookRepository = bookRepository;
+        this.tombstoneRepository = tombstoneRepository;
+        this.properties = properties;
+        this.clock = clock;
+    }
+
+    /**
+     * Sem readOnly de propósito: no primário. Numa réplica atrasada a marca d'água poderia
+     * passar por linhas que ela ainda não recebeu.
+     */
+    @Transactional
+    public BookChangePage changesAfter(Watermark since, int size) {
+
+        Instant until = clock.get().minus(properties.getSettleLag());
+        PageRequest page = PageRequest.of(0, size + 1);
+        List<BookChange> books = bookRepository.findChangedAfter(since.getChangedAt(), since.getId(), until, page)
+                .stream().map(BookChange::of).collect(Collectors.toList());
+        List<BookChange> deletions = tombstoneRepository.findDeletedAfter(since.getChangedAt(), since.getId(),
+                until, page).stream().map(BookChange::of).collect(Collectors.toList());
+
+        List<BookChange> changes = new ArrayList<>(size + 1);
+        int b = 0;
+        int d = 0;
+        while (changes.size() <= size && (b < books.size() || d < deletions.size())) {
+            if (d == deletions.size()
+                    || (b < books.size() && books.get(b).watermark().compareTo(deletions.get(d).watermark()) < 0)) {
+                changes.add(books.get(b++));
+            } else {
+                changes.add(deletions.get(d++));
+            }
+        }
+
+        if (changes.size() > size) {
+            changes = changes.subList(0, size);
+            return new BookChangePage(changes, true, changes.get(size - 1).watermark());
+        }
+        // tudo até "until" já foi entregue: a próxima consulta começa depois dele
+        Watermark settled = new Watermark(until, Long.MAX_VALUE);
+        return new BookChangePage(changes, false, settled.compareTo(since) > 0 ? settled : since);
+    }
+
+    /** Marcas d'água anteriores a isso podem ter perdido remoções já expurgadas. */
+    public Instant horizon() {
+        return clock.get().minus(properties.getTombstoneRetention());
+    }
+
+    @Scheduled(fixedDelayString = "${library.books.changes.purge-interval:PT1H}")
+    @Transactional
+    public void purgeTombstones() {
+        int deleted = tombstoneRepository.deleteDeletedBefore(horizon());
+        if (deleted > 0) {
+            log.info("Purged {} book tombstones older than {}", deleted, properties.getTombstoneRetention());
+        }
+    }
+}
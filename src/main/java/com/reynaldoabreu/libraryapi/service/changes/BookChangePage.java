@@ -0,0 +1,18 @@
+package com.reynaldoabreu.libraryapi.service.changes;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+@AllArgsConstructor
+public class BookChangePage {
+
+    List<BookChange> changes;
+
+    boolean hasNext;
+
+    /** De onde a próxima consulta continua; avança mesmo sem mudanças, até o instante já assentado. */
+    Watermark next;
+}
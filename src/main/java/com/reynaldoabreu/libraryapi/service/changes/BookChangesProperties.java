@@ -0,0 +1,23 @@
+package com.reynaldoabreu.libraryapi.service.changes;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "library.books.changes")
+public class BookChangesProperties {
+
+    /**
+     * Mudanças mais novas que isso ainda não são entregues: o instante é marcado antes do commit,
+     * então uma transação em andamento pode confirmar uma linha com instante anterior ao de outra
+     * já visível. Transações que passam de metade disso são remarcadas antes do commit
+     * ({@link ChangeStamps}); deve cobrir ainda o próprio commit e a diferença de relógio entre as instâncias.
+     */
+    private Duration settleLag = Duration.ofSeconds(5);
+
+    /** Tempo que as marcas de remoção ficam guardadas; marcas d'água mais antigas exigem carga completa. */
+    private Duration tombstoneRetention = Duration.ofDays(30);
+
+}
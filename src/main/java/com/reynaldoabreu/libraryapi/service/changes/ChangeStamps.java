@@ -0,0 +1,146 @@
+package com.reynaldoabreu.libraryapi.service.changes;
+
+import com.reynaldoabreu.libraryapi.model.entity.Book;
+import com.reynaldoabreu.libraryapi.model.repository.BookRepository;
+import com.reynaldoabreu.libraryapi.model.repository.BookTombstoneRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Mantém o instante de {@code updated_at}/{@code deleted_at} perto do commit, como o
+ * {@link BookChangeFeed} pressupõe: o instante é marcado pelo relógio da aplicação antes do
+ * commit, e o fluxo só entrega mudanças anteriores a {@code agora - settle-lag}.
+ * <p>
+ * Uma transação que grava livros e dura mais que metade do settle-lag (lote grande, espera por
+ * trava) tem suas linhas remarcadas com o instante atual logo antes do commit. A que ainda
+ * confirmar depois do settle-lag (ou a feita sem transação) é registrada em log e contada em
+ * {@code library.books.changes.late}: o fluxo pode tê-la pulado, e o cliente precisa de uma carga
+ * completa. A diferença de relógio entre as instâncias não é corrigida aqui: o settle-lag deve cobri-la.
+ */
+@Component
+public class ChangeStamps implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeStamps.class);
+
+    private final BookRepository bookRepository;
+    private final BookTombstoneRepository tombstoneRepository;
+    private final BookChangesProperties properties;
+    private final Supplier<Instant> clock;
+    private final AtomicLong late = new AtomicLong();
+
+    @Autowired
+    public ChangeStamps(BookRepository bookRepository, BookTombstoneRepository tombstoneRepository,
+                        BookChangesProperties properties) {
+        this(bookRepository, tombstoneRepository, properties, Book::now);
+    }
+
+    ChangeStamps(BookRepository bookRepository, BookTombstoneRepository tombstoneRepository,
+                 BookChangesProperties properties, Supplier<Instant> clock) {
+        this.bookRepository = bookRepository;
+        this.tombstoneRepository = tombstoneRepository;
+        this.properties = properties;
+        this.clock = clock;
+    }
+
+    /** Livros gravados na transação atual com {@code updated_at = stampedAt}. */
+    public void booksStamped(Collection<Long> ids, Instant stampedAt) {
+        Stamps stamps = stamps(stampedAt);
+        if (stamps != null) {
+            stamps.books.addAll(ids);
+        }
+    }
+
+    /** Marca de remoção gravada na transação atual com {@code deleted_at = deletedAt}. */
+    public void bookDeleted(Long id, Instant deletedAt) {
+        Stamps stamps = stamps(deletedAt);
+        if (stamps != null) {
+            stamps.tombstones.add(id);
+        }
+    }
+
+    private Stamps stamps(Instant stampedAt) {
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            // cada comando confirma sozinho; só dá para conferir o atraso
+            checkLate(stampedAt);
+            return null;
+        }
+        Stamps stamps = (Stamps) TransactionSynchronizationManager.getResource(this);
+        if (stamps == null) {
+            stamps = new Stamps(stampedAt);
+            TransactionSynchronizationManager.bindResource(this, stamps);
+            TransactionSynchronizationManager.registerSynchronization(stamps);
+        } else if (stampedAt.isBefore(stamps.stampedAt)) {
+            stamps.stampedAt = stampedAt;
+        }
+        return stamps;
+    }
+
+    private void checkLate(Instant stampedAt) {
+        Duration lag = Duration.between(stampedAt, clock.get());
+        if (lag.compareTo(properties.getSettleLag()) > 0) {
+            late.incrementAndGet();
+            log.warn("Book changes committed {} after being stamped, past the settle lag of {};"
+                    + " incremental sync clients may have skipped them", lag, properties.getSettleLag());
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("library.books.changes.late", late, AtomicLong::get)
+                .description("Escritas de livros confirmadas depois do settle-lag do sincronismo incremental")
+                .register(registry);
+    }
+
+    private final class Stamps implements TransactionSynchronization {
+
+        final Set<Long> books = new HashSet<>();
+        final Set<Long> tombstones = new HashSet<>();
+        Instant stampedAt;
+
+        Stamps(Instant stampedAt) {
+            this.stampedAt = stampedAt;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+
+            Instant now = clock.get();
+            if (Duration.between(stampedAt, now).compareTo(properties.getSettleLag().dividedBy(2)) <= 0) {
+                return;
+            }
+            if (!books.isEmpty()) {
+                bookRepository.restamp(books, now);
+            }
+            if (!tombstones.isEmpty()) {
+                tombstoneRepository.restamp(tombstones, now);
+            }
+            stampedAt = now;
+        }
+
+        @Override
+        public void afterCommit() {
+            checkLate(stampedAt);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(ChangeStamps.this);
+        }
+    }
+}
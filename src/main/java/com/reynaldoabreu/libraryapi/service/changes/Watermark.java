@@ -0,0 +1,27 @@
+package com.reynaldoabreu.libraryapi.service.changes;
+
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.Comparator;
+
+/**
+ * Posição no sincronismo incremental: a última mudança entregue, pela chave (instante, id do livro).
+ */
+@Value
+public class Watermark implements Comparable<Watermark> {
+
+    public static final Watermark START = new Watermark(Instant.EPOCH, 0L);
+
+    private static final Comparator<Watermark> ORDER =
+            Comparator.comparing(Watermark::getChangedAt).thenComparingLong(Watermark::getId);
+
+    Instant changedAt;
+
+    long id;
+
+    @Override
+    public int compareTo(Watermark other) {
+        return ORDER.compare(this, other);
+    }
+}
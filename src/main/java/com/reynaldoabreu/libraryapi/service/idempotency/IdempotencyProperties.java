@@ -0,0 +1,27 @@
+package com.reynaldoabreu.libraryapi.service.idempotency;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "library.idempotency")
+public class IdempotencyProperties {
+
+    /** {@code memory} (um nó) ou {@code jpa} (tabela compartilhada entre nós). */
+    private String store = "memory";
+
+    /** Por quanto tempo uma chave é lembrada. */
+    private Duration ttl = Duration.ofHours(24);
+
+    /**
+     * Por quanto tempo uma reserva ainda em andamento bloqueia a chave no store JPA. Se o nó
+     * cair antes de concluir ou liberar, a próxima tentativa assume a chave depois disso.
+     */
+    private Duration lease = Duration.ofSeconds(30);
+
+    /** Máximo de chaves em memória (store em memória e cache local do store JPA). */
+    private long maximumSize = 100_000;
+
+}
@@ -0,0 +1,18 @@
+package com.reynaldoabreu.libraryapi.service.idempotency;
+
+import lombok.Value;
+
+/**
+ * Estado de uma chave de idempotência: a impressão digital do pedido que a reservou e o
+ * resultado, nulo enquanto a operação ainda está em andamento.
+ */
+@Value
+public class IdempotencyRecord {
+
+    String fingerprint;
+    Long resultId;
+
+    public boolean isCompleted() {
+        return resultId != null;
+    }
+}
@@ -0,0 +1,31 @@
+package com.reynaldoabreu.libraryapi.service.idempotency;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Armazena as chaves {@code Idempotency-Key} já usadas e o resultado de cada uma,
+ * por tempo limitado.
+ */
+public interface IdempotencyStore {
+
+    /**
+     * Reserva a chave para o pedido com a impressão digital informada.
+     *
+     * @return vazio quando a reserva foi feita e o chamador deve executar a operação;
+     * caso contrário o registro de quem já usou a chave (concluído ou em andamento)
+     */
+    Optional<IdempotencyRecord> reserve(String key, String fingerprint);
+
+    /** Registra o resultado da operação executada sob a chave reservada. */
+    void complete(String key, Long resultId);
+
+    /**
+     * Registra de uma vez os resultados de várias chaves reservadas, na transação atual:
+     * só valem se ela for confirmada.
+     */
+    void completeAll(Map<String, Long> results);
+
+    /** Libera a chave de uma operação que falhou, permitindo uma nova tentativa. */
+    void release(String key);
+}
@@ -0,0 +1,47 @@
+package com.reynaldoabreu.libraryapi.service.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.reynaldoabreu.libraryapi.service.AfterCommit;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Store de um único nó: Caffeine com limite de tamanho e expiração após a escrita.
+ */
+@Component
+@ConditionalOnProperty(prefix = "library.idempotency", name = "store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private final Cache<String, IdempotencyRecord> records;
+
+    public InMemoryIdempotencyStore(IdempotencyProperties properties) {
+        this.records = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTtl())
+                .build();
+    }
+
+    @Override
+    public Optional<IdempotencyRecord> reserve(String key, String fingerprint) {
+        return Optional.ofNullable(records.asMap().putIfAbsent(key, new IdempotencyRecord(fingerprint, null)));
+    }
+
+    @Override
+    public void complete(String key, Long resultId) {
+        records.asMap().computeIfPresent(key, (k, record) -> new IdempotencyRecord(record.getFingerprint(), resultId));
+    }
+
+    @Override
+    public void completeAll(Map<String, Long> results) {
+        AfterCommit.run(() -> results.forEach(this::complete));
+    }
+
+    @Override
+    public void release(String key) {
+        records.invalidate(key);
+    }
+}
@@ -0,0 +1,126 @@
+package com.reynaldoabreu.libraryapi.service.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.reynaldoabreu.libraryapi.model.entity.IdempotencyKey;
+import com.reynaldoabreu.libraryapi.model.repository.IdempotencyKeyRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Store compartilhado entre nós numa tabela. A chave primária serializa reservas concorrentes
+ * da mesma chave; as linhas vencidas são apagadas periodicamente. Registros concluídos não
+ * mudam mais, então ficam também num cache local e as repetições no mesmo nó não vão ao banco.
+ * Uma reserva em andamento só vale pelo {@code lease}: se o nó cair entre a reserva e a
+ * conclusão, a próxima tentativa com a mesma chave a assume em vez de receber 409 até o ttl.
+ */
+@Component
+@ConditionalOnProperty(prefix = "library.idempotency", name = "store", havingValue = "jpa")
+public class JpaIdempotencyStore implements IdempotencyStore {
+
+    private final IdempotencyKeyRepository repository;
+    private final Duration ttl;
+    private final Duration lease;
+    private final Cache<String, IdempotencyRecord> completed;
+
+    public JpaIdempotencyStore(IdempotencyKeyRepository repository, IdempotencyProperties properties) {
+        this.repository = repository;
+        this.ttl = properties.getTtl();
+        this.lease = properties.getLease();
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTtl())
+                .build();
+    }
+
+    @Override
+    public Optional<IdempotencyRecord> reserve(String key, String fingerprint) {
+
+        IdempotencyRecord cached = completed.getIfPresent(key);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        Optional<IdempotencyKey> existing = repository.findById(key);
+        if (existing.isPresent()) {
+            IdempotencyKey row = existing.get();
+            if (!isExpired(row)) {
+                return Optional.of(remember(key, row));
+            }
+            // vencida mas ainda não expurgada: reaproveita a linha, se nenhum outro nó chegou antes
+            Instant now = Instant.now();
+            if (repository.takeOver(key, fingerprint, now, now.minus(ttl), now.minus(lease)) == 1) {
+                return Optional.empty();
+            }
+            Optional<IdempotencyKey> winner = repository.findById(key);
+            if (winner.isPresent()) {
+                return Optional.of(remember(key, winner.get()));
+            }
+            // expurgada entre a leitura e a atualização: segue para a inserção
+        }
+
+        try {
+            repository.saveAndFlush(IdempotencyKey.builder()
+                    .key(key)
+                    .fingerprint(fingerprint)
+                    .createdAt(Instant.now())
+                    .build());
+            return Optional.empty();
+        } catch (DataIntegrityViolationException ex) {
+            // outro nó reservou a mesma chave entre a leitura e a inserção
+            return Optional.of(repository.findById(key)
+                    .map(row -> remember(key, row))
+                    .orElseGet(() -> new IdempotencyRecord(fingerprint, null)));
+        }
+    }
+
+    @Override
+    @Transactional
+    public void complete(String key, Long resultId) {
+        repository.complete(key, resultId);
+    }
+
+    // um SELECT e UPDATEs em lote pelo dirty checking, em vez de uma atualização por chave
+    @Override
+    @Transactional
+    public void completeAll(Map<String, Long> results) {
+        for (IdempotencyKey row : repository.findAllById(results.keySet())) {
+            row.setResultId(results.get(row.getKey()));
+        }
+    }
+
+    @Override
+    @Transactional
+    public void release(String key) {
+        completed.invalidate(key);
+        repository.release(key);
+    }
+
+    @Scheduled(fixedDelayString = "${library.idempotency.purge-interval:PT10M}")
+    @Transactional
+    public void purgeExpired() {
+        repository.deleteCreatedBefore(Instant.now().minus(ttl));
+    }
+
+    private boolean isExpired(IdempotencyKey row) {
+        Duration validity = row.getResultId() == null ? lease : ttl;
+        return row.getCreatedAt().plus(validity).isBefore(Instant.now());
+    }
+
+    private IdempotencyRecord remember(String key, IdempotencyKey row) {
+
+        IdempotencyRecord record = new IdempotencyRecord(row.getFingerprint(), row.getResultId());
+        if (record.isCompleted()) {
+            completed.put(key, record);
+        }
+        return record;
+    }
+}
@@ -1,62 +1,275 @@
 package com.reynaldoabreu.libraryapi.service.imp;
 
+import com.reynaldoabreu.libraryapi.config.routing.PrimaryReads;
 import com.reynaldoabreu.libraryapi.exception.BusinessException;
+import com.reynaldoabreu.libraryapi.exception.ConflictException;
 import com.reynaldoabreu.libraryapi.model.entity.Book;
+import com.reynaldoabreu.libraryapi.model.entity.BookTombstone;
 import com.reynaldoabreu.libraryapi.model.repository.BookRepository;
+import com.reynaldoabreu.libraryapi.model.repository.BookTombstoneRepository;
 import com.reynaldoabreu.libraryapi.service.BookService;
+import com.reynaldoabreu.libraryapi.service.AfterCommit;
+import com.reynaldoabreu.libraryapi.service.cache.BookCache;
+import com.reynaldoabreu.libraryapi.service.changes.ChangeStamps;
+import com.reynaldoabreu.libraryapi.service.outbox.EventOutbox;
+import com.reynaldoabreu.libraryapi.service.search.BookSearchIndex;
+import com.reynaldoabreu.libraryapi.service.stats.CatalogStatistics;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.ExampleMatcher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class BookServiceImp implements BookService {
+    private static final String ISBN_CONSTRAINT = "uk_book_isbn";
+    private static final String LOAN_BOOK_CONSTRAINT = "fk_loan_book";
+    private static final long ISBN_CACHE_MAXIMUM_SIZE = 100_000;
+
     private BookRepository repository;
+    private final BookTombstoneRepository tombstoneRepository;
+    private final BookSearchIndex searchIndex;
+    private final BookCache bookCache;
+    private final CatalogStatistics statistics;
+    private final EventOutbox outbox;
+    private final ChangeStamps changeStamps;
+    private final IsbnCache isbnCache = new IsbnCache(ISBN_CACHE_MAXIMUM_SIZE);
+
+    @PersistenceContext
+    private EntityManager entityManager;
 
-    public BookServiceImp(BookRepository repository) {
+    public BookServiceImp(BookRepository repository, BookTombstoneRepository tombstoneRepository,
+                          BookSearchIndex searchIndex, BookCache bookCache, CatalogStatistics statistics,
+                          EventOutbox outbox, ChangeStamps changeStamps) {
         this.repository = repository;
+        this.tombstoneRepository = tombstoneRepository;
+        this.searchIndex = searchIndex;
+        this.bookCache = bookCache;
+        this.statistics = statistics;
+        this.outbox = outbox;
+        this.changeStamps = changeStamps;
 }
 
     @Override
+    @Transactional
     public Book save(Book book) {
 
-        if (repository.existsByIsbn(book.getIsbn())){
-            throw new BusinessException("Isbn já cadastrado.");
+        // o cache é deste nó e não expira: um acerto pode ser um livro já apagado em outro nó,
+        // então só adianta a recusa depois de confirmada; sem acerto, quem decide é o uk_book_isbn
+        Long cachedId = isbnCache.get(book.getIsbn());
+        if (cachedId != null) {
+            if (repository.existsByIsbn(book.getIsbn())) {
+                throw new BusinessException("Isbn já cadastrado.");
+            }
+            isbnCache.evict(cachedId);
         }
-        return repository.save(book);
+
+        Book savedBook;
+        try {
+            savedBook = repository.saveAndFlush(book);
+        } catch (DataIntegrityViolationException ex) {
+            if (isIsbnViolation(ex)) {
+                throw new BusinessException("Isbn já cadastrado.");
+            }
+            throw ex;
+        }
+        outbox.bookCreated(savedBook);
+        changeStamps.booksStamped(List.of(savedBook.getId()), savedBook.getUpdatedAt());
+
+        indexAfterCommit(savedBook);
+        statistics.bookAdded();
+        return savedBook;
+    }
+
+    @Override
+    @Transactional
+    public List<Book> saveAll(List<Book> books) {
+
+        // a consulta abaixo decide sozinha: o cache de isbn deste nó pode ter livros apagados em outro
+        Map<String, Book> candidates = new LinkedHashMap<>();
+        for (Book book : books) {
+            candidates.putIfAbsent(book.getIsbn(), book);
+        }
+        if (candidates.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Set<String> existingIsbns = repository.findExistingIsbns(candidates.keySet());
+        candidates.keySet().removeAll(existingIsbns);
+
+        List<Book> savedBooks;
+        try {
+            savedBooks = repository.saveAllAndFlush(candidates.values());
+        } catch (DataIntegrityViolationException ex) {
+            if (isIsbnViolation(ex)) {
+                throw new BusinessException("Isbn já cadastrado.");
+            }
+            throw ex;
+        }
+        outbox.booksCreated(savedBooks);
+        if (!savedBooks.isEmpty()) {
+            // o primeiro do lote foi marcado antes dos outros
+            changeStamps.booksStamped(savedBooks.stream().map(Book::getId).collect(Collectors.toList()),
+                    savedBooks.get(0).getUpdatedAt());
+        }
+
+        savedBooks.forEach(book -> {
+            indexAfterCommit(book);
+            statistics.bookAdded();
+        });
+        return savedBooks;
     }
 
     @Override
     public Optional<Book> getById(Long id) {
-        return repository.findById(id);
+        // o que vai para o cache sai do primário: uma réplica atrasada ficaria servida até expirar
+        return bookCache.get(id, key -> PrimaryReads.call(() -> repository.findById(key)));
     }
 
     @Override
+    @Transactional
     public void delete(Book book) {
 
         if (book == null || book.getId() == null){
             throw new IllegalArgumentException(" Book Id can't be null");
         }
 
-        this.repository.delete(book);
+        try {
+            this.repository.delete(book);
+            this.repository.flush();
+        } catch (OptimisticLockingFailureException ex) {
+            bookCache.evict(book.getId());
+            throw ex;
+        } catch (DataIntegrityViolationException ex) {
+            throw loanedBookViolation(ex);
+        }
+        Instant deletedAt = Book.now();
+        tombstoneRepository.save(new BookTombstone(book.getId(), deletedAt));
+        outbox.bookDeleted(book.getId());
+        changeStamps.bookDeleted(book.getId(), deletedAt);
+
+        Long id = book.getId();
+        AfterCommit.run(() -> {
+            isbnCache.evict(id);
+            bookCache.evict(id);
+            searchIndex.remove(id);
+        });
+        statistics.bookRemoved();
 
     }
 
     @Override
+    @Transactional
+    public int deleteById(Long id, Long expectedVersion) {
+
+        if (id == null){
+            throw new IllegalArgumentException(" Book Id can't be null");
+        }
+
+        int deleted;
+        try {
+            deleted = repository.deleteBookById(id, expectedVersion);
+        } catch (DataIntegrityViolationException ex) {
+            throw loanedBookViolation(ex);
+        }
+        if (deleted > 0) {
+            Instant deletedAt = Book.now();
+            tombstoneRepository.save(new BookTombstone(id, deletedAt));
+            outbox.bookDeleted(id);
+            changeStamps.bookDeleted(id, deletedAt);
+            AfterCommit.run(() -> {
+                isbnCache.evict(id);
+                bookCache.evict(id);
+                searchIndex.remove(id);
+            });
+            statistics.bookRemoved();
+        }
+        return deleted;
+    }
+
+    @Override
+    @Transactional
     public Book update(Book book) {
 
         if (book == null || book.getId() == null){
             throw new IllegalArgumentException(" Book Id can't be null");
         }
 
-        return this.repository.save(book);
+        Book updatedBook;
+        try {
+            updatedBook = this.repository.saveAndFlush(book);
+        } catch (OptimisticLockingFailureException ex) {
+            // a cópia em cache ficou para trás: a próxima leitura busca a versão atual
+            bookCache.evict(book.getId());
+            throw ex;
+        }
+        outbox.bookUpdated(updatedBook);
+        changeStamps.booksStamped(List.of(updatedBook.getId()), updatedBook.getUpdatedAt());
+
+        indexAfterCommit(updatedBook);
+        statistics.authorsChanged();
+        return updatedBook;
+
+    }
+
+    // a escrita agora só vale com o commit, que também grava o evento na outbox
+    private void indexAfterCommit(Book book) {
+        AfterCommit.run(() -> {
+            isbnCache.put(book.getIsbn(), book.getId());
+            bookCache.put(book);
+            searchIndex.index(book);
+        });
+    }
+
+    @Override
+    @Transactional
+    public int updateFields(Long id, String title, String author, Long expectedVersion) {
+
+        if (id == null){
+            throw new IllegalArgumentException(" Book Id can't be null");
+        }
 
+        Instant now = Book.now();
+        int updated = repository.updateFields(id, title, author, expectedVersion, now);
+        if (updated > 0) {
+            outbox.bookPatched(id, title, author);
+            changeStamps.booksStamped(List.of(id), now);
+            AfterCommit.run(() -> {
+                bookCache.evict(id);
+                searchIndex.update(id, title, author);
+            });
+            if (author != null) {
+                statistics.authorsChanged();
+            }
+        }
+        return updated;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<Book> find(Book filter, Pageable pageRequest) {
 
 
@@ -71,8 +284,108 @@ public class BookServiceImp implements BookService {
     }
 
     @Override
-    public Optional<Book> getBookByIsbn(String s) {
-        return Optional.empty();
+    @Transactional(readOnly = true)
+    public Slice<Book> findAfter(Book filter, Long afterId, int size) {
+
+        return repository.findAfter(afterId == null ? 0L : afterId,
+                filter.getTitle(), filter.getAuthor(), filter.getIsbn(),
+                PageRequest.of(0, size));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void export(Book filter, Consumer<Book> consumer) {
+
+        try (Stream<Book> books = repository.streamAll(filter.getTitle(), filter.getAuthor(), filter.getIsbn())) {
+            books.forEach(book -> {
+                consumer.accept(book);
+                entityManager.detach(book);
+            });
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Book> search(String query, int limit) {
+
+        List<Long> ids = searchIndex.search(query, limit);
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<Long, Integer> ranks = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            ranks.put(ids.get(i), i);
+        }
+
+        List<Book> books = repository.findAllById(ids);
+        books.sort(Comparator.comparing(book -> ranks.get(book.getId())));
+        return books;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void buildSearchIndex() {
+        searchIndex.rebuild(() -> repository.streamAll(null, null, null).peek(entityManager::detach));
+    }
+
+    @Override
+    public Optional<Book> getBookByIsbn(String isbn) {
+
+        Long id = isbnCache.get(isbn);
+        if (id != null) {
+            Optional<Book> book = getById(id);
+            if (book.isPresent() && isbn.equals(book.get().getIsbn())) {
+                return book;
+            }
+            isbnCache.evict(id);
+        }
+
+        Optional<Book> book = PrimaryReads.call(() -> repository.findByIsbn(isbn));
+        book.ifPresent(found -> isbnCache.put(found.getIsbn(), found.getId()));
+        return book;
+    }
+
+    @Override
+    public Map<String, Book> getBooksByIsbn(Collection<String> isbns) {
+
+        Map<String, Book> books = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        for (String isbn : isbns) {
+            if (books.containsKey(isbn)) {
+                continue;
+            }
+            Long id = isbnCache.get(isbn);
+            Optional<Book> cached = id == null ? Optional.empty() : getById(id);
+            if (cached.isPresent() && isbn.equals(cached.get().getIsbn())) {
+                books.put(isbn, cached.get());
+            } else {
+                misses.add(isbn);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            for (Book book : PrimaryReads.call(() -> repository.findByIsbnIn(misses))) {
+                isbnCache.put(book.getIsbn(), book.getId());
+                books.put(book.getIsbn(), book);
+            }
+        }
+        return books;
+    }
+
+    static boolean isIsbnViolation(DataIntegrityViolationException ex) {
+        String message = ex.getMostSpecificCause().getMessage();
+        return message != null && message.toLowerCase().contains(ISBN_CONSTRAINT);
+    }
+
+    // empréstimos guardam o histórico do livro (fk_loan_book, sem ON DELETE): com algum, não se apaga
+    static boolean isLoanedBookViolation(DataIntegrityViolationException ex) {
+        String message = ex.getMostSpecificCause().getMessage();
+        return message != null && message.toLowerCase().contains(LOAN_BOOK_CONSTRAINT);
+    }
+
+    private static RuntimeException loanedBookViolation(DataIntegrityViolationException ex) {
+        return isLoanedBookViolation(ex) ? new ConflictException("Livro possui empréstimos.") : ex;
     }
 
 }
@@ -0,0 +1,67 @@
+package com.reynaldoabreu.libraryapi.service.imp;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+/**
+ * Mapa em memória isbn -> id usado para resolver o isbn sem consultar a base.
+ * Mantém também o índice inverso para que a remoção por id não precise varrer o mapa.
+ * Os dois lados são limitados (Caffeine); quando um descarta uma entrada por tamanho,
+ * o par correspondente sai do outro, para que nenhum isbn fique sem o caminho de remoção.
+ */
+class IsbnCache {
+
+    private final Cache<String, Long> idsByIsbn;
+    private final Cache<Long, String> isbnsById;
+
+    IsbnCache(long maximumSize) {
+        this.idsByIsbn = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .evictionListener((String isbn, Long id, RemovalCause cause) ->
+                        evictPair(id, isbn))
+                .build();
+        this.isbnsById = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .evictionListener((Long id, String isbn, RemovalCause cause) ->
+                        evictPair(isbn, id))
+                .build();
+    }
+
+    Long get(String isbn) {
+        return isbn == null ? null : idsByIsbn.getIfPresent(isbn);
+    }
+
+    void put(String isbn, Long id) {
+        if (isbn == null || id == null) {
+            return;
+        }
+        String previous = isbnsById.asMap().put(id, isbn);
+        if (previous != null && !previous.equals(isbn)) {
+            idsByIsbn.asMap().remove(previous, id);
+        }
+        idsByIsbn.put(isbn, id);
+    }
+
+    void evict(Long id) {
+        if (id == null) {
+            return;
+        }
+        String isbn = isbnsById.asMap().remove(id);
+        if (isbn != null) {
+            idsByIsbn.asMap().remove(isbn, id);
+        }
+    }
+
+    private void evictPair(Long id, String isbn) {
+        if (id != null && isbn != null) {
+            isbnsById.asMap().remove(id, isbn);
+        }
+    }
+
+    private void evictPair(String isbn, Long id) {
+        if (isbn != null && id != null) {
+            idsByIsbn.asMap().remove(isbn, id);
+        }
+    }
+}
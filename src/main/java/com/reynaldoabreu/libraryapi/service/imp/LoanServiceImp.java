@@ -0,0 +1,115 @@
+package com.reynaldoabreu.libraryapi.service.imp;
+
+import com.reynaldoabreu.libraryapi.exception.BusinessException;
+import com.reynaldoabreu.libraryapi.model.entity.Loan;
+import com.reynaldoabreu.libraryapi.model.projection.LoanView;
+import com.reynaldoabreu.libraryapi.model.repository.LoanRepository;
+import com.reynaldoabreu.libraryapi.service.LoanService;
+import com.reynaldoabreu.libraryapi.service.availability.AvailabilityIndex;
+import com.reynaldoabreu.libraryapi.service.outbox.EventOutbox;
+import com.reynaldoabreu.libraryapi.service.stats.CatalogStatistics;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+public class LoanServiceImp implements LoanService {
+    private static final String ACTIVE_LOAN_CONSTRAINT = "uk_loan_active_book";
+
+    private final LoanRepository repository;
+    private final CatalogStatistics statistics;
+    private final AvailabilityIndex availability;
+    private final EventOutbox outbox;
+
+    public LoanServiceImp(LoanRepository repository, CatalogStatistics statistics, AvailabilityIndex availability,
+                          EventOutbox outbox) {
+        this.repository = repository;
+        this.statistics = statistics;
+        this.availability = availability;
+        this.outbox = outbox;
+    }
+
+    @Override
+    @Transactional
+    public Loan save(Loan loan) {
+
+        if (loan == null || loan.getBook() == null || loan.getBook().getId() == null){
+            throw new IllegalArgumentException(" Book Id can't be null");
+        }
+
+        loan.setReturned(false);
+        Loan savedLoan;
+        try {
+            savedLoan = repository.saveAndFlush(loan);
+        } catch (DataIntegrityViolationException ex) {
+            if (isActiveLoanViolation(ex)) {
+                throw new BusinessException("Book already loaned");
+            }
+            throw ex;
+        }
+        outbox.loanCreated(savedLoan);
+        statistics.loanCreated();
+        availability.lent(savedLoan.getBook().getId());
+        return savedLoan;
+    }
+
+    @Override
+    @Transactional
+    public int updateReturned(Long id, boolean returned) {
+
+        if (id == null){
+            throw new IllegalArgumentException(" Loan Id can't be null");
+        }
+
+        int updated;
+        try {
+            updated = repository.updateReturned(id, returned);
+        } catch (DataIntegrityViolationException ex) {
+            // reabrir um empréstimo cujo livro já foi emprestado de novo
+            if (isActiveLoanViolation(ex)) {
+                throw new BusinessException("Book already loaned");
+            }
+            throw ex;
+        }
+
+        if (updated == 0) {
+            // já estava no estado pedido: não é 404, e não muda as estatísticas
+            return repository.existsById(id) ? 1 : 0;
+        }
+        Long bookId = repository.findBookIdById(id).orElse(null);
+        outbox.loanReturned(id, bookId, returned);
+        if (returned) {
+            statistics.loanReturned();
+            availability.returned(bookId);
+        } else {
+            statistics.loanReopened();
+            availability.lent(bookId);
+        }
+        return updated;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<LoanView> find(String costumer, String isbn, Pageable pageable) {
+        return repository.findViews(costumer, isbn, unsorted(pageable));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<LoanView> findByBook(Long bookId, Pageable pageable) {
+        return repository.findViewsByBook(bookId, unsorted(pageable));
+    }
+
+    // as consultas já ordenam pela chave do histórico; campos de ordenação do cliente não existem na projeção
+    private static Pageable unsorted(Pageable pageable) {
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+    }
+
+    static boolean isActiveLoanViolation(DataIntegrityViolationException ex) {
+        String message = ex.getMostSpecificCause().getMessage();
+        return message != null && message.toLowerCase().contains(ACTIVE_LOAN_CONSTRAINT);
+    }
+}
@@ -0,0 +1,86 @@
+package com.reynaldoabreu.libraryapi.service.imp;
+
+import com.reynaldoabreu.libraryapi.exception.BusinessException;
+import com.reynaldoabreu.libraryapi.exception.ConflictException;
+import com.reynaldoabreu.libraryapi.model.entity.Book;
+import com.reynaldoabreu.libraryapi.model.repository.reactive.ReactiveBookRepository;
+import com.reynaldoabreu.libraryapi.service.ReactiveBookService;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+/**
+ * Serviço de livros da pilha reativa. Só grava na tabela: outbox, estatísticas, cache, índice de
+ * busca e de disponibilidade são mantidos pelo {@code BookServiceImp}/{@code LoanServiceImp} e não
+ * existem no perfil {@code reactive}, então eventos, {@code /api/stats} e a busca não enxergam as
+ * escritas feitas por aqui.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveBookServiceImp implements ReactiveBookService {
+    private final ReactiveBookRepository repository;
+
+    public ReactiveBookServiceImp(ReactiveBookRepository repository) {
+        this.repository = repository;
+    }
+
+    @Override
+    public Mono<Book> save(Book book) {
+        return repository.insert(book)
+                .onErrorMap(ex -> ex instanceof DataIntegrityViolationException
+                                && BookServiceImp.isIsbnViolation((DataIntegrityViolationException) ex),
+                        ex -> new BusinessException("Isbn já cadastrado."));
+    }
+
+    @Override
+    public Mono<Book> getById(Long id) {
+        return repository.findById(id);
+    }
+
+    @Override
+    public Mono<Boolean> deleteById(Long id) {
+
+        if (id == null){
+            return Mono.error(new IllegalArgumentException(" Book Id can't be null"));
+        }
+
+        return repository.deleteById(id)
+                .map(rows -> rows > 0)
+                .onErrorMap(ex -> ex instanceof DataIntegrityViolationException
+                                && BookServiceImp.isLoanedBookViolation((DataIntegrityViolationException) ex),
+                        ex -> new ConflictException("Livro possui empréstimos."));
+    }
+
+    @Override
+    public Mono<Book> update(Book book) {
+
+        if (book == null || book.getId() == null){
+            return Mono.error(new IllegalArgumentException(" Book Id can't be null"));
+        }
+
+        // nenhuma linha com a versão lida: 412 se o livro ainda existe, 404 se foi removido
+        return repository.update(book)
+                .switchIfEmpty(Mono.defer(() -> repository.findById(book.getId())
+                        .flatMap(current -> Mono.error(new OptimisticLockingFailureException("Book was modified")))));
+    }
+
+    @Override
+    public Mono<Page<Book>> find(Book filter, Pageable pageRequest) {
+
+        return Mono.zip(
+                repository.find(filter.getTitle(), filter.getAuthor(), filter.getIsbn(),
+                        pageRequest.getOffset(), pageRequest.getPageSize()).collectList(),
+                repository.count(filter.getTitle(), filter.getAuthor(), filter.getIsbn()))
+                .map(result -> new PageImpl<>(result.getT1(), pageRequest, result.getT2()));
+    }
+
+    @Override
+    public Mono<Book> getBookByIsbn(String isbn) {
+        return repository.findByIsbn(isbn);
+    }
+}
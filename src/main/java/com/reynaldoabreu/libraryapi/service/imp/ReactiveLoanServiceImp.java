@@ -0,0 +1,33 @@
+package com.reynaldoabreu.libraryapi.service.imp;
+
+import com.reynaldoabreu.libraryapi.exception.BusinessException;
+import com.reynaldoabreu.libraryapi.model.entity.Loan;
+import com.reynaldoabreu.libraryapi.model.repository.reactive.ReactiveLoanRepository;
+import com.reynaldoabreu.libraryapi.service.ReactiveLoanService;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+@Service
+@Profile("reactive")
+public class ReactiveLoanServiceImp implements ReactiveLoanService {
+    private final ReactiveLoanRepository repository;
+
+    public ReactiveLoanServiceImp(ReactiveLoanRepository repository) {
+        this.repository = repository;
+    }
+
+    @Override
+    public Mono<Loan> save(Loan loan) {
+
+        if (loan == null || loan.getBook() == null || loan.getBook().getId() == null){
+            return Mono.error(new IllegalArgumentException(" Book Id can't be null"));
+        }
+
+        return repository.insert(loan)
+                .onErrorMap(ex -> ex instanceof DataIntegrityViolationException
+                                && LoanServiceImp.isActiveLoanViolation((DataIntegrityViolationException) ex),
+                        ex -> new BusinessException("Book already loaned"));
+    }
+}
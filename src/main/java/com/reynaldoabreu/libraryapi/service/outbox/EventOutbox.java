@@ -0,0 +1,122 @@
+package com.reynaldoabreu.libraryapi.service.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reynaldoabreu.libraryapi.model.entity.Book;
+import com.reynaldoabreu.libraryapi.model.entity.Loan;
+import com.reynaldoabreu.libraryapi.model.entity.OutboxEvent;
+import com.reynaldoabreu.libraryapi.model.repository.OutboxEventRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registra na tabela outbox os eventos das escritas de livros e empréstimos. Exige a
+ * transação de quem escreve: o evento é confirmado ou desfeito junto com a mudança,
+ * e o {@link OutboxRelay} só o enxerga depois do commit.
+ */
+@Component
+@Transactional(propagation = Propagation.MANDATORY)
+public class EventOutbox {
+
+    public static final String BOOK = "book";
+    public static final String LOAN = "loan";
+
+    private final OutboxEventRepository repository;
+    private final ObjectMapper objectMapper;
+
+    public EventOutbox(OutboxEventRepository repository, ObjectMapper objectMapper) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+    }
+
+    public void bookCreated(Book book) {
+        repository.save(event(BOOK, book.getId(), "created", book(book)));
+    }
+
+    public void booksCreated(Collection<Book> books) {
+        List<OutboxEvent> events = new ArrayList<>(books.size());
+        books.forEach(book -> events.add(event(BOOK, book.getId(), "created", book(book))));
+        repository.insertAll(events);
+    }
+
+    public void bookUpdated(Book book) {
+        repository.save(event(BOOK, book.getId(), "updated", book(book)));
+    }
+
+    /** Atualização parcial: o payload leva só os campos alterados. */
+    public void bookPatched(Long id, String title, String author) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("id", id);
+        if (title != null) {
+            payload.put("title", title);
+        }
+        if (author != null) {
+            payload.put("author", author);
+        }
+        repository.save(event(BOOK, id, "updated", payload));
+    }
+
+    public void bookDeleted(Long id) {
+        repository.save(event(BOOK, id, "deleted", Map.of("id", id)));
+    }
+
+    public void loanCreated(Loan loan) {
+        repository.save(event(LOAN, loan.getId(), "created", loan(loan)));
+    }
+
+    public void loansCreated(Collection<Loan> loans) {
+        List<OutboxEvent> events = new ArrayList<>(loans.size());
+        loans.forEach(loan -> events.add(event(LOAN, loan.getId(), "created", loan(loan))));
+        repository.insertAll(events);
+    }
+
+    public void loanReturned(Long id, Long bookId, boolean returned) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("id", id);
+        payload.put("bookId", bookId);
+        payload.put("returned", returned);
+        repository.save(event(LOAN, id, returned ? "returned" : "reopened", payload));
+    }
+
+    private OutboxEvent event(String aggregate, Long aggregateId, String type, Map<String, Object> payload) {
+        try {
+            return OutboxEvent.builder()
+                    .aggregate(aggregate)
+                    .aggregateId(aggregateId)
+                    .type(type)
+                    .payload(objectMapper.writeValueAsString(payload))
+                    .createdAt(Instant.now())
+                    .build();
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Could not serialize " + aggregate + " event", ex);
+        }
+    }
+
+    private static Map<String, Object> book(Book book) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("id", book.getId());
+        payload.put("title", book.getTitle());
+        payload.put("author", book.getAuthor());
+        payload.put("isbn", book.getIsbn());
+        payload.put("version", book.getVersion());
+        return payload;
+    }
+
+    private static Map<String, Object> loan(Loan loan) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("id", loan.getId());
+        payload.put("bookId", loan.getBook().getId());
+        payload.put("costumer", loan.getCostumer());
+        payload.put("loanDate", loan.getLoanDate() == null ? null : loan.getLoanDate().toString());
+        payload.put("returned", loan.getReturned());
+        return payload;
+    }
+}
@@ -0,0 +1,21 @@
+package com.reynaldoabreu.libraryapi.service.outbox;
+
+import com.reynaldoabreu.libraryapi.model.entity.OutboxEvent;
+
+import java.util.List;
+
+/**
+ * Avisado pelo {@link OutboxRelay} a cada rodada, na thread do relay. Os eventos até a marca
+ * d'água estão liberados e são lidos com {@link OutboxRelay#eventsAfter(long, int)}.
+ */
+public interface OutboxListener {
+
+    void published(long watermark);
+
+    /**
+     * Eventos que confirmaram depois de o relay ter pulado os seus ids, chamados antes de
+     * {@link #published(long)} na mesma rodada. Podem ter id menor que eventos já entregues.
+     */
+    default void late(List<OutboxEvent> events) {
+    }
+}
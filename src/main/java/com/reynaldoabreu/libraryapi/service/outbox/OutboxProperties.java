@@ -0,0 +1,41 @@
+package com.reynaldoabreu.libraryapi.service.outbox;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "library.events")
+public class OutboxProperties {
+
+    /** Eventos lidos da outbox por consulta do relay e entregues por lote a cada assinante. */
+    private int batchSize = 500;
+
+    /**
+     * Quanto o relay espera por um id que ainda não apareceu (transação em andamento) antes de
+     * seguir sem ele. Deve ser maior que a duração de uma transação de escrita.
+     */
+    private Duration gapTimeout = Duration.ofSeconds(5);
+
+    /**
+     * Por quanto tempo um id pulado continua sendo procurado para ser liberado atrasado. Deve
+     * passar com folga do tempo máximo de uma transação de escrita.
+     */
+    private Duration lateArrivalWindow = Duration.ofMinutes(10);
+
+    /** Eventos recentes mantidos em memória; assinantes mais atrasados são atendidos pela tabela. */
+    private int recentEvents = 10000;
+
+    /** Tempo que os eventos ficam na tabela, e portanto até onde um cliente consegue retomar. */
+    private Duration retention = Duration.ofDays(7);
+
+    private int maxSubscribers = 1000;
+
+    /** Duração de uma conexão SSE; o cliente reconecta com Last-Event-ID. */
+    private Duration emitterTimeout = Duration.ofMinutes(30);
+
+    /** Intervalo sem eventos após o qual o assinante recebe um comentário para manter a conexão. */
+    private Duration heartbeat = Duration.ofSeconds(15);
+
+}
@@ -0,0 +1,296 @@
+package com.reynaldoabreu.libraryapi.service.outbox;
+
+import com.reynaldoabreu.libraryapi.model.entity.OutboxEvent;
+import com.reynaldoabreu.libraryapi.model.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Libera os eventos da outbox em ordem de id, em lotes, e avisa os {@link OutboxListener}s.
+ *
+ * <p>Transações concorrentes podem confirmar fora da ordem dos ids. A marca d'água só avança
+ * por ids contíguos: diante de um buraco o relay espera o id que falta até
+ * {@code library.events.gap-timeout} e então segue sem ele (transação desfeita). Assim um
+ * cliente que retoma a partir de um id não perde eventos confirmados depois dele.
+ *
+ * <p>Um id pulado continua sendo procurado por {@code library.events.late-arrival-window}: se a
+ * transação só confirmar depois, o evento é liberado atrasado e entregue fora de ordem aos
+ * {@link OutboxListener}s. Pulados, atrasados e perdidos são contados em {@code library.events.gaps}.
+ *
+ * <p>A outbox é lida sempre do primário (consultas sem readOnly), nunca de uma réplica atrasada.
+ */
+@Component
+public class OutboxRelay implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    // ids pulados procurados por rodada; além disso os mais antigos são dados como perdidos
+    static final int MAX_SKIPPED = 1000;
+
+    private final OutboxEventRepository repository;
+    private final OutboxProperties properties;
+    private final ObjectProvider<OutboxListener> listeners;
+    private final LongSupplier clock;
+
+    // eventos liberados com id em (recentFloor, watermark], em ordem
+    private final List<OutboxEvent> recent = new ArrayList<>();
+    private long recentFloor;
+    private volatile long watermark = -1;
+    // separado da marca d'água: uma rodada em andamento no fechamento não pode religar o relay
+    private volatile boolean stopped = true;
+
+    private long gapAt = -1;
+    private long gapSince;
+
+    // id pulado -> quando foi pulado (clock); guardado pelo monitor do relay
+    private final NavigableMap<Long, Long> skipped = new TreeMap<>();
+    private final AtomicLong skippedIds = new AtomicLong();
+    private final AtomicLong lateIds = new AtomicLong();
+    private final AtomicLong lostIds = new AtomicLong();
+
+    @Autowired
+    public OutboxRelay(OutboxEventRepository repository, OutboxProperties properties,
+                       ObjectProvider<OutboxListener> listeners) {
+        this(repository, properties, listeners, System::nanoTime);
+    }
+
+    OutboxRelay(OutboxEventRepository repository, OutboxProperties properties,
+                ObjectProvider<OutboxListener> listeners, LongSupplier clock) {
+        this.repository = repository;
+        this.properties = properties;
+        this.listeners = listeners;
+        this.clock = clock;
+    }
+
+    /**
+     * Começa depois do último evento gravado: o que já estava na tabela é servido a quem
+     * retoma de um id anterior.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        long last = repository.findMaxId();
+        synchronized (recent) {
+            recent.clear();
+            recentFloor = last;
+        }
+        watermark = last;
+        stopped = false;
+        log.info("Outbox relay started after event {}", last);
+    }
+
+    // antes do banco fechar: a rodada agendada não deve mais consultar a outbox
+    @EventListener(ContextClosedEvent.class)
+    public void stop() {
+        stopped = true;
+    }
+
+    public long watermark() {
+        return Math.max(watermark, 0);
+    }
+
+    @Scheduled(fixedDelayString = "${library.events.relay-interval:PT0.5S}")
+    public void relay() {
+        if (stopped) {
+            return;
+        }
+        poll();
+        List<OutboxEvent> late = pollLate();
+        if (stopped) {
+            return;
+        }
+        long published = watermark;
+        listeners.orderedStream().forEach(listener -> {
+            try {
+                if (!late.isEmpty()) {
+                    listener.late(late);
+                }
+                listener.published(published);
+            } catch (RuntimeException ex) {
+                log.warn("Outbox listener {} failed", listener.getClass().getSimpleName(), ex);
+            }
+        });
+    }
+
+    /**
+     * Lê um lote depois da marca d'água e libera o trecho contíguo.
+     *
+     * @return eventos liberados nesta rodada
+     */
+    synchronized List<OutboxEvent> poll() {
+
+        if (stopped) {
+            return List.of();
+        }
+        List<OutboxEvent> events = repository.findAfter(watermark, PageRequest.of(0, properties.getBatchSize()));
+        List<OutboxEvent> released = new ArrayList<>(events.size());
+        long next = watermark;
+        for (OutboxEvent event : events) {
+            if (event.getId() != next + 1 && !gapExpired(next, event.getId())) {
+                break;
+            }
+            released.add(event);
+            next = event.getId();
+        }
+        if (released.isEmpty() || stopped) {
+            return List.of();
+        }
+
+        synchronized (recent) {
+            recent.addAll(released);
+            int excess = recent.size() - properties.getRecentEvents();
+            if (excess > 0) {
+                recentFloor = recent.get(excess - 1).getId();
+                recent.subList(0, excess).clear();
+            }
+        }
+        watermark = next;
+        return released;
+    }
+
+    private boolean gapExpired(long after, long found) {
+
+        long now = clock.getAsLong();
+        if (gapAt != after) {
+            gapAt = after;
+            gapSince = now;
+        }
+        if (now - gapSince < properties.getGapTimeout().toNanos()) {
+            return false;
+        }
+        log.warn("Outbox events {} to {} not committed after {}; skipping them for now", after + 1, found - 1,
+                properties.getGapTimeout());
+        gapAt = -1;
+        for (long id = after + 1; id < found; id++) {
+            skipped.put(id, now);
+            skippedIds.incrementAndGet();
+        }
+        while (skipped.size() > MAX_SKIPPED) {
+            lost(skipped.pollFirstEntry().getKey());
+        }
+        return true;
+    }
+
+    /**
+     * Procura os ids pulados que confirmaram depois do tempo limite e os libera fora de ordem;
+     * os que passaram de {@code library.events.late-arrival-window} são dados como perdidos.
+     *
+     * @return eventos atrasados liberados nesta rodada, em ordem de id
+     */
+    synchronized List<OutboxEvent> pollLate() {
+
+        if (stopped || skipped.isEmpty()) {
+            return List.of();
+        }
+        long now = clock.getAsLong();
+        long window = properties.getLateArrivalWindow().toNanos();
+        skipped.entrySet().removeIf(entry -> {
+            if (now - entry.getValue() < window) {
+                return false;
+            }
+            lost(entry.getKey());
+            return true;
+        });
+        if (skipped.isEmpty()) {
+            return List.of();
+        }
+
+        List<OutboxEvent> late = repository.findByIds(new ArrayList<>(skipped.keySet()));
+        if (late.isEmpty() || stopped) {
+            return List.of();
+        }
+        synchronized (recent) {
+            for (OutboxEvent event : late) {
+                skipped.remove(event.getId());
+                lateIds.incrementAndGet();
+                if (event.getId() > recentFloor) {
+                    recent.add(firstAfter(event.getId()), event);
+                }
+            }
+        }
+        log.warn("Outbox events {} committed after their gap was skipped; releasing them out of order",
+                late.stream().map(OutboxEvent::getId).collect(Collectors.toList()));
+        return late;
+    }
+
+    private void lost(long id) {
+        lostIds.incrementAndGet();
+        log.error("Outbox event {} never showed up within {}; giving up on it", id, properties.getLateArrivalWindow());
+    }
+
+    /**
+     * Eventos liberados depois de {@code after}, em ordem, até {@code limit}. Vêm da memória
+     * quando o trecho ainda está lá, senão da tabela (limitados à marca d'água).
+     */
+    public List<OutboxEvent> eventsAfter(long after, int limit) {
+
+        long upTo = watermark;
+        if (after >= upTo) {
+            return List.of();
+        }
+        synchronized (recent) {
+            if (after >= recentFloor) {
+                int from = firstAfter(after);
+                return new ArrayList<>(recent.subList(from, Math.min(from + limit, recent.size())));
+            }
+        }
+        return repository.findRange(after, upTo, PageRequest.of(0, limit));
+    }
+
+    private int firstAfter(long after) {
+        int low = 0;
+        int high = recent.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (recent.get(middle).getId() <= after) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        gapCounter(registry, "skipped", skippedIds, "Ids da outbox pulados após o tempo limite de buraco");
+        gapCounter(registry, "late", lateIds, "Ids pulados que confirmaram depois e foram liberados fora de ordem");
+        gapCounter(registry, "lost", lostIds, "Ids pulados que não apareceram dentro da janela de atraso");
+    }
+
+    private static void gapCounter(MeterRegistry registry, String outcome, AtomicLong count, String description) {
+        FunctionCounter.builder("library.events.gaps", count, AtomicLong::get)
+                .tag("outcome", outcome)
+                .description(description)
+                .register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${library.events.purge-interval:PT1H}")
+    @Transactional
+    public void purge() {
+        int deleted = repository.deleteCreatedBefore(Instant.now().minus(properties.getRetention()));
+        if (deleted > 0) {
+            log.info("Purged {} outbox events older than {}", deleted, properties.getRetention());
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.reynaldoabreu.libraryapi.service.overdue;
+
+import com.reynaldoabreu.libraryapi.model.projection.OverdueLoan;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+public class LoggingOverdueLoanNotifier implements OverdueLoanNotifier {
+
+    private static final Logger log = LoggerFactory.getLogger(LoggingOverdueLoanNotifier.class);
+
+    @Override
+    public void notify(List<OverdueLoan> loans) {
+        loans.forEach(loan -> log.info("Overdue loan {}: book {} ({}) loaned to {} on {}",
+                loan.getId(), loan.getIsbn(), loan.getTitle(), loan.getCostumer(), loan.getLoanDate()));
+    }
+}
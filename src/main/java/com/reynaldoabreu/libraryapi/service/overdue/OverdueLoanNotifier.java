@@ -0,0 +1,14 @@
+package com.reynaldoabreu.libraryapi.service.overdue;
+
+import com.reynaldoabreu.libraryapi.model.projection.OverdueLoan;
+
+import java.util.List;
+
+/**
+ * Destino das notificações de atraso. Recebe os empréstimos em lotes; a entrega é
+ * "ao menos uma vez", já que a marca d'água só avança depois do lote ser entregue.
+ */
+public interface OverdueLoanNotifier {
+
+    void notify(List<OverdueLoan> loans);
+}
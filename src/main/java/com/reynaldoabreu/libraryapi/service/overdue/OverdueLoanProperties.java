@@ -0,0 +1,26 @@
+package com.reynaldoabreu.libraryapi.service.overdue;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "library.loans.overdue")
+public class OverdueLoanProperties {
+
+    private boolean enabled = true;
+
+    /** Dias de empréstimo antes de o livro ser considerado atrasado. */
+    private int loanDays = 3;
+
+    /** Empréstimos lidos por consulta. */
+    private int chunkSize = 1000;
+
+    /** Empréstimos entregues por chamada ao notificador. */
+    private int notificationBatchSize = 100;
+
+    /** Por quanto tempo um nó detém a varredura sem renovar; renovado a cada bloco. */
+    private Duration lease = Duration.ofMinutes(10);
+
+}
@@ -0,0 +1,156 @@
+package com.reynaldoabreu.libraryapi.service.overdue;
+
+import com.reynaldoabreu.libraryapi.model.entity.JobCheckpoint;
+import com.reynaldoabreu.libraryapi.model.projection.OverdueLoan;
+import com.reynaldoabreu.libraryapi.model.repository.JobCheckpointRepository;
+import com.reynaldoabreu.libraryapi.model.repository.LoanRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Job incremental que notifica os empréstimos que ficaram atrasados desde a última execução.
+ *
+ * <p>Um empréstimo atrasa uma única vez, quando sua data passa do limite, então a varredura
+ * guarda a última chave (loanDate, id) notificada e cada execução lê só a faixa nova do índice
+ * (returned, loan_date, id), em blocos ordenados pela chave. O custo é proporcional aos empréstimos
+ * que atrasaram no período, não ao tamanho da tabela. Empréstimos devolvidos antes de atrasar
+ * nunca são lidos. A exceção são os empréstimos reabertos depois que a marca d'água passou por
+ * eles: ficam marcados e cada execução os notifica à parte antes de seguir a faixa nova.
+ *
+ * <p>Com vários nós, a linha do {@link JobCheckpoint} funciona como lease: só o nó que a
+ * assumiu executa, renovando-a a cada bloco; se ele cair, outro assume quando o lease vencer.
+ */
+@Component
+@ConditionalOnProperty(prefix = "library.loans.overdue", name = "enabled", matchIfMissing = true)
+public class OverdueLoanScanner {
+
+    static final String JOB_NAME = "overdue-loans";
+    static final LocalDate START = LocalDate.of(1, 1, 1);
+
+    private static final Logger log = LoggerFactory.getLogger(OverdueLoanScanner.class);
+
+    private final LoanRepository loanRepository;
+    private final JobCheckpointRepository checkpointRepository;
+    private final OverdueLoanNotifier notifier;
+    private final OverdueLoanProperties properties;
+    private final String owner = UUID.randomUUID().toString();
+
+    public OverdueLoanScanner(LoanRepository loanRepository, JobCheckpointRepository checkpointRepository,
+                              OverdueLoanNotifier notifier, OverdueLoanProperties properties) {
+        this.loanRepository = loanRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.notifier = notifier;
+        this.properties = properties;
+    }
+
+    @Scheduled(cron = "${library.loans.overdue.cron:0 0 1 * * *}")
+    public void scheduledScan() {
+        scan(LocalDate.now());
+    }
+
+    /**
+     * Notifica os empréstimos em aberto feitos antes de {@code today - loanDays} que ainda não
+     * foram notificados. A marca d'água avança a cada bloco entregue, então uma execução
+     * interrompida recomeça do último bloco completo. Não faz nada se outro nó detém o job.
+     *
+     * @return quantidade de empréstimos notificados
+     */
+    public synchronized int scan(LocalDate today) {
+
+        if (!acquire()) {
+            log.debug("Overdue loan scan is running on another node");
+            return 0;
+        }
+        try {
+            JobCheckpoint checkpoint = checkpointRepository.findById(JOB_NAME)
+                    .orElseThrow(() -> new IllegalStateException("Job checkpoint " + JOB_NAME + " not found"));
+            LocalDate before = today.minusDays(properties.getLoanDays());
+
+            int notified = notifyReopened(before, checkpoint);
+            notified += notifyNew(before, checkpoint);
+            if (notified > 0) {
+                log.info("Overdue loan scan notified {} loans up to {}", notified, before);
+            }
+            return notified;
+        } finally {
+            checkpointRepository.release(JOB_NAME, owner);
+        }
+    }
+
+    private boolean acquire() {
+
+        if (!checkpointRepository.existsById(JOB_NAME)) {
+            try {
+                checkpointRepository.saveAndFlush(new JobCheckpoint(JOB_NAME, START, 0L));
+            } catch (DataIntegrityViolationException ex) {
+                // outro nó criou a linha primeiro: segue para a disputa do lease
+            }
+        }
+        Instant now = Instant.now();
+        return checkpointRepository.acquire(JOB_NAME, owner, now, now.plus(properties.getLease())) == 1;
+    }
+
+    // a marcação é limpa a cada bloco notificado, então a consulta sempre recomeça do início
+    private int notifyReopened(LocalDate before, JobCheckpoint checkpoint) {
+
+        int notified = 0;
+        List<OverdueLoan> chunk;
+        do {
+            chunk = loanRepository.findReopenedOverdue(before, checkpoint.getLastDate(), checkpoint.getLastId(),
+                    PageRequest.of(0, properties.getChunkSize()));
+            if (chunk.isEmpty()) {
+                break;
+            }
+            deliver(chunk);
+            loanRepository.clearReopened(chunk.stream().map(OverdueLoan::getId).toList());
+            notified += chunk.size();
+        } while (chunk.size() == properties.getChunkSize());
+        return notified;
+    }
+
+    private int notifyNew(LocalDate before, JobCheckpoint checkpoint) {
+
+        int chunkSize = properties.getChunkSize();
+        int notified = 0;
+        List<OverdueLoan> chunk;
+        do {
+            chunk = loanRepository.findOverdueAfter(before, checkpoint.getLastDate(), checkpoint.getLastId(),
+                    PageRequest.of(0, chunkSize));
+            if (chunk.isEmpty()) {
+                break;
+            }
+
+            deliver(chunk);
+            // reabertos que a faixa nova já cobriu não precisam ser reavaliados depois
+            loanRepository.clearReopened(chunk.stream().map(OverdueLoan::getId).toList());
+
+            OverdueLoan last = chunk.get(chunk.size() - 1);
+            checkpoint.setLastDate(last.getLoanDate());
+            checkpoint.setLastId(last.getId());
+            notified += chunk.size();
+            if (checkpointRepository.advance(JOB_NAME, owner, last.getLoanDate(), last.getId(),
+                    Instant.now().plus(properties.getLease())) == 0) {
+                log.warn("Overdue loan scan lost its lease after {} loans", notified);
+                break;
+            }
+        } while (chunk.size() == chunkSize);
+        return notified;
+    }
+
+    private void deliver(List<OverdueLoan> chunk) {
+        int batchSize = properties.getNotificationBatchSize();
+        for (int from = 0; from < chunk.size(); from += batchSize) {
+            notifier.notify(chunk.subList(from, Math.min(from + batchSize, chunk.size())));
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.reynaldoabreu.libraryapi.service.search;
+
+import com.reynaldoabreu.libraryapi.model.entity.Book;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Índice invertido em memória sobre título e autor dos livros.
+ * Os termos são normalizados (sem acento, minúsculos) e guardados em ordem,
+ * o que permite buscar por prefixo com uma varredura de faixa no dicionário.
+ * Termos de consulta curtos demais só casam por igualdade: um prefixo de uma letra
+ * varreria quase o dicionário inteiro.
+ * <p>
+ * A reconstrução monta um índice novo enquanto o atual continua servindo; as escritas que
+ * chegam nesse meio-tempo vão também para um diário, reaplicado sobre o índice novo antes da
+ * troca, como no {@code AvailabilityIndex}.
+ */
+@Component
+public class BookSearchIndex {
+
+    static final int TITLE = 1;
+    static final int AUTHOR = 2;
+    static final int MIN_PREFIX_LENGTH = 3;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile Segment current = new Segment();
+    // guardado por writeLock
+    private Queue<Consumer<Segment>> journal;
+
+    public void index(Book book) {
+
+        if (book == null || book.getId() == null) {
+            return;
+        }
+
+        Long id = book.getId();
+        Map<String, Integer> fields = fields(book);
+        apply(segment -> segment.replace(id, fields));
+    }
+
+    /**
+     * Reindexa só os campos informados; campos nulos mantêm os termos já indexados.
+     * Usado pelas atualizações parciais, que não carregam o livro inteiro.
+     */
+    public void update(Long id, String title, String author) {
+
+        if (id == null) {
+            return;
+        }
+        apply(segment -> segment.update(id, title, author));
+    }
+
+    public void remove(Long id) {
+
+        if (id == null) {
+            return;
+        }
+        apply(segment -> segment.remove(id));
+    }
+
+    /**
+     * Substitui o índice pelo conteúdo de {@code books}. O fluxo é aberto depois que o diário
+     * começa a registrar, então uma escrita confirmada durante a leitura não se perde.
+     */
+    public void rebuild(Supplier<Stream<Book>> books) {
+
+        writeLock.lock();
+        try {
+            if (journal != null) {
+                throw new IllegalStateException("Search index rebuild already running");
+            }
+            journal = new ArrayDeque<>();
+        } finally {
+            writeLock.unlock();
+        }
+
+        Segment rebuilt = new Segment();
+        try (Stream<Book> stream = books.get()) {
+            stream.forEach(book -> {
+                if (book.getId() != null) {
+                    rebuilt.replace(book.getId(), fields(book));
+                }
+            });
+        } catch (RuntimeException ex) {
+            writeLock.lock();
+            try {
+                journal = null;
+            } finally {
+                writeLock.unlock();
+            }
+            throw ex;
+        }
+
+        // o que chegou durante a leitura é mais novo que ela: entra no índice novo antes de ele ser publicado
+        writeLock.lock();
+        try {
+            for (Consumer<Segment> change = journal.poll(); change != null; change = journal.poll()) {
+                change.accept(rebuilt);
+            }
+            current = rebuilt;
+            journal = null;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public int size() {
+        return current.termsById.size();
+    }
+
+    /**
+     * Retorna os ids dos livros que contêm todos os termos da consulta, do mais
+     * para o menos relevante. Cada termo casa por igualdade ou, a partir de
+     * {@value #MIN_PREFIX_LENGTH} caracteres, por prefixo; igualdade e ocorrência
+     * no título pesam mais.
+     */
+    public List<Long> search(String query, int limit) {
+
+        Set<String> tokens = tokenize(query);
+        if (tokens.isEmpty() || limit < 1) {
+            return Collections.emptyList();
+        }
+
+        Segment segment = current;
+        Map<Long, Integer> scores = null;
+        for (String token : tokens) {
+            Map<Long, Integer> tokenScores = segment.score(token);
+            if (scores == null) {
+                scores = tokenScores;
+            } else {
+                scores.keySet().retainAll(tokenScores.keySet());
+                scores.replaceAll((id, score) -> score + tokenScores.get(id));
+            }
+            if (scores.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+
+        PriorityQueue<Map.Entry<Long, Integer>> top = new PriorityQueue<>(limit + 1, BookSearchIndex::compareHits);
+        for (Map.Entry<Long, Integer> entry : scores.entrySet()) {
+            top.offer(entry);
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+
+        List<Long> ids = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            ids.add(top.poll().getKey());
+        }
+        Collections.reverse(ids);
+        return ids;
+    }
+
+    private void apply(Consumer<Segment> change) {
+
+        writeLock.lock();
+        try {
+            if (journal != null) {
+                journal.add(change);
+            }
+            change.accept(current);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static Map<String, Integer> fields(Book book) {
+
+        Map<String, Integer> fields = new HashMap<>();
+        tokenize(book.getTitle()).forEach(term -> fields.merge(term, TITLE, (a, b) -> a | b));
+        tokenize(book.getAuthor()).forEach(term -> fields.merge(term, AUTHOR, (a, b) -> a | b));
+        return fields;
+    }
+
+    private static int fieldWeight(int mask) {
+        return (mask & TITLE) != 0 ? 3 : 1;
+    }
+
+    // ordena do pior para o melhor resultado para que o heap descarte o pior
+    private static int compareHits(Map.Entry<Long, Integer> a, Map.Entry<Long, Integer> b) {
+        int byScore = Integer.compare(a.getValue(), b.getValue());
+        return byScore != 0 ? byScore : Long.compare(b.getKey(), a.getKey());
+    }
+
+    static Set<String> tokenize(String text) {
+
+        if (text == null || text.isBlank()) {
+            return Collections.emptySet();
+        }
+
+        String normalized = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String token : SEPARATORS.split(normalized.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /** Dicionário e índice inverso; escritas só sob o writeLock (ou antes de publicado). */
+    private static final class Segment {
+
+        final NavigableMap<String, Map<Long, Integer>> postings = new ConcurrentSkipListMap<>();
+        final Map<Long, Set<String>> termsById = new ConcurrentHashMap<>();
+
+        void replace(Long id, Map<String, Integer> fields) {
+            remove(id);
+            add(id, fields);
+        }
+
+        void update(Long id, String title, String author) {
+
+            int keep = (title == null ? TITLE : 0) | (author == null ? AUTHOR : 0);
+
+            Map<String, Integer> fields = new HashMap<>();
+            for (String term : termsById.getOrDefault(id, Collections.emptySet())) {
+                Map<Long, Integer> ids = postings.get(term);
+                Integer mask = ids == null ? null : ids.get(id);
+                if (mask != null && (mask & keep) != 0) {
+                    fields.put(term, mask & keep);
+                }
+            }
+            tokenize(title).forEach(term -> fields.merge(term, TITLE, (a, b) -> a | b));
+            tokenize(author).forEach(term -> fields.merge(term, AUTHOR, (a, b) -> a | b));
+
+            replace(id, fields);
+        }
+
+        void remove(Long id) {
+
+            Set<String> terms = termsById.remove(id);
+            if (terms == null) {
+                return;
+            }
+            for (String term : terms) {
+                Map<Long, Integer> ids = postings.get(term);
+                if (ids != null) {
+                    ids.remove(id);
+                    if (ids.isEmpty()) {
+                        postings.remove(term, ids);
+                    }
+                }
+            }
+        }
+
+        Map<Long, Integer> score(String token) {
+
+            Map<Long, Integer> scores = new HashMap<>();
+            if (token.length() < MIN_PREFIX_LENGTH) {
+                Map<Long, Integer> exact = postings.get(token);
+                if (exact != null) {
+                    exact.forEach((id, mask) -> scores.put(id, 2 * fieldWeight(mask)));
+                }
+                return scores;
+            }
+            for (Map.Entry<String, Map<Long, Integer>> posting : postings.subMap(token, true, token + Character.MAX_VALUE, false).entrySet()) {
+                int matchWeight = posting.getKey().length() == token.length() ? 2 : 1;
+                posting.getValue().forEach((id, mask) ->
+                        scores.merge(id, matchWeight * fieldWeight(mask), Math::max));
+            }
+            return scores;
+        }
+
+        private void add(Long id, Map<String, Integer> fields) {
+
+            fields.forEach((term, mask) ->
+                    postings.computeIfAbsent(term, key -> new ConcurrentHashMap<>()).put(id, mask));
+            termsById.put(id, fields.keySet());
+        }
+    }
+}
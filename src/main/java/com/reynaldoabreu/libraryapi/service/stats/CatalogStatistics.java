@@ -0,0 +1,345 @@
+package com.reynaldoabreu.libraryapi.service.stats;
+
+import com.reynaldoabreu.libraryapi.model.entity.CatalogStat;
+import com.reynaldoabreu.libraryapi.model.projection.AuthorCount;
+import com.reynaldoabreu.libraryapi.model.repository.BookRepository;
+import com.reynaldoabreu.libraryapi.model.repository.CatalogStatRepository;
+import com.reynaldoabreu.libraryapi.model.repository.LoanRepository;
+import com.reynaldoabreu.libraryapi.service.AfterCommit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Estatísticas do catálogo mantidas em memória pelos caminhos de escrita, para que os
+ * dashboards não precisem de COUNT/GROUP BY nas tabelas de livros e empréstimos.
+ * <p>
+ * Cada contador é o valor lido da tabela {@code catalog_stat} mais os incrementos locais
+ * ainda não gravados ({@link LongAdder}). O flush periódico soma esses incrementos na tabela
+ * ({@code total = total + delta}), então vários nós podem compartilhá-la, e relê os totais.
+ * Os incrementos só são aplicados depois do commit da escrita que os originou.
+ * <p>
+ * O recálculo ({@link #rebuild()}) lê as tabelas num snapshot que já inclui as escritas cujos
+ * incrementos ainda estão pendentes em outros nós. Por isso ele avança a {@code generation} de
+ * {@code catalog_stat}, e o flush só soma na geração que o nó leu por último: incrementos de uma
+ * geração anterior são descartados em vez de contados duas vezes. Os de escritas confirmadas em
+ * outro nó depois do início do snapshot vão junto, e ficam fora das contagens até o próximo
+ * recálculo; com um único nó nada se perde.
+ * <p>
+ * As contagens por autor ({@link #authorBooks(String)}, {@link #topAuthors(int)},
+ * {@link #authors()}) não são incrementadas pelas escritas, que nem sempre conhecem o autor
+ * anterior sem ler a linha: o flush as relê do banco (GROUP BY) quando algum nó gravou livros
+ * desde a última leitura ({@code books.writes}). Os dashboards as veem com até um intervalo de
+ * flush de atraso. Empréstimos ativos por livro não ficam aqui: cada livro tem no máximo um,
+ * e o {@code AvailabilityIndex} já os mantém.
+ */
+@Component
+public class CatalogStatistics {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogStatistics.class);
+
+    static final String BOOKS = "books";
+    static final String LOANS = "loans";
+    static final String ACTIVE_LOANS = "loans.active";
+    static final String BOOK_WRITES = "books.writes";
+
+    /** Tamanho máximo das listas de ranking. */
+    public static final int MAX_TOP = 100;
+
+    private final CatalogStatRepository repository;
+    private final BookRepository bookRepository;
+    private final LoanRepository loanRepository;
+    private final TransactionTemplate transactions;
+    private final TransactionTemplate snapshot;
+    private volatile Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private volatile Authors authors = new Authors(0, Map.of(), List.of());
+    // geração de catalog_stat lida por último; os incrementos pendentes pertencem a ela
+    private volatile long generation;
+
+    // incrementos que chegam durante o recálculo; guardado por holdLock
+    private final Object holdLock = new Object();
+    private volatile Map<String, Long> heldBack;
+
+    public CatalogStatistics(CatalogStatRepository repository, BookRepository bookRepository,
+                             LoanRepository loanRepository, PlatformTransactionManager transactionManager) {
+        this.repository = repository;
+        this.bookRepository = bookRepository;
+        this.loanRepository = loanRepository;
+        this.transactions = new TransactionTemplate(transactionManager);
+        this.snapshot = new TransactionTemplate(transactionManager);
+        this.snapshot.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    public void bookAdded() {
+        AfterCommit.run(() -> {
+            add(BOOKS, 1);
+            add(BOOK_WRITES, 1);
+        });
+    }
+
+    public void bookRemoved() {
+        AfterCommit.run(() -> {
+            add(BOOKS, -1);
+            add(BOOK_WRITES, 1);
+        });
+    }
+
+    /** Uma escrita que pode ter trocado o autor de um livro: as contagens por autor são relidas no flush. */
+    public void authorsChanged() {
+        AfterCommit.run(() -> add(BOOK_WRITES, 1));
+    }
+
+    public void loanCreated() {
+        AfterCommit.run(() -> {
+            add(LOANS, 1);
+            add(ACTIVE_LOANS, 1);
+        });
+    }
+
+    public void loanReturned() {
+        AfterCommit.run(() -> add(ACTIVE_LOANS, -1));
+    }
+
+    public void loanReopened() {
+        AfterCommit.run(() -> add(ACTIVE_LOANS, 1));
+    }
+
+    public long books() {
+        return get(BOOKS);
+    }
+
+    public long loans() {
+        return get(LOANS);
+    }
+
+    public long activeLoans() {
+        return get(ACTIVE_LOANS);
+    }
+
+    public long authorBooks(String author) {
+        return authors.books.getOrDefault(author, 0L);
+    }
+
+    public long authors() {
+        return authors.books.size();
+    }
+
+    public List<AuthorCount> topAuthors(int limit) {
+        List<AuthorCount> top = authors.topAuthors;
+        return top.subList(0, Math.min(limit, top.size()));
+    }
+
+    /**
+     * Soma na tabela os incrementos acumulados desde o último flush e relê os totais,
+     * trazendo também o que outros nós gravaram, e as contagens por autor se houve escrita
+     * de livros desde a última leitura. Se a gravação falhar, os incrementos voltam
+     * para a memória e entram no próximo flush; se outro nó recalculou a tabela nesse meio
+     * tempo, são descartados.
+     */
+    @Scheduled(fixedDelayString = "${library.stats.flush-interval:PT30S}")
+    public synchronized void flush() {
+
+        Map<String, Long> deltas = new HashMap<>();
+        counters.forEach((name, counter) -> {
+            long delta = counter.pending.sumThenReset();
+            if (delta != 0) {
+                deltas.put(name, delta);
+            }
+        });
+
+        if (!deltas.isEmpty()) {
+            long flushed = generation;
+            try {
+                transactions.executeWithoutResult(status -> deltas.forEach((name, delta) -> write(name, delta, flushed)));
+                deltas.forEach((name, delta) -> counter(name).base += delta);
+            } catch (StaleGenerationException ex) {
+                log.info("Catalog statistics rebuilt elsewhere, {} counters of generation {} discarded", deltas.size(), flushed);
+            } catch (RuntimeException ex) {
+                deltas.forEach(this::add);
+                log.warn("Catalog statistics flush failed, {} counters kept in memory: {}", deltas.size(), ex.getMessage());
+                return;
+            }
+        }
+        reload();
+        long writes = counter(BOOK_WRITES).base;
+        if (writes != authors.writes) {
+            rank(bookRepository.countByAuthor(), writes);
+        }
+    }
+
+    /**
+     * Recalcula todas as estatísticas a partir das tabelas de livros e empréstimos e
+     * substitui o conteúdo de {@code catalog_stat}. As contagens saem de um único snapshot
+     * (REPEATABLE READ): os incrementos pendentes quando ele começa já estão nele e são
+     * descartados; os que chegam depois ficam retidos e entram nos contadores novos, que
+     * substituem os atuais de uma vez. As contagens por autor saem do mesmo snapshot.
+     * A tabela é regravada numa geração nova, que faz os outros nós descartarem os
+     * incrementos que contaram antes dela.
+     */
+    public synchronized void rebuild() {
+
+        Map<String, Long> totals;
+        List<AuthorCount> authorCounts = new ArrayList<>();
+        AtomicLong rebuiltGeneration = new AtomicLong();
+        try {
+            totals = snapshot.execute(status -> {
+                synchronized (holdLock) {
+                    heldBack = new HashMap<>();
+                }
+                Map<String, Long> computed = new HashMap<>();
+                computed.put(BOOKS, bookRepository.count());
+                computed.put(LOANS, loanRepository.count());
+                computed.put(ACTIVE_LOANS, loanRepository.countByReturnedFalse());
+                // avança books.writes para que os outros nós releiam os autores no próximo flush
+                computed.put(BOOK_WRITES, repository.findTotal(BOOK_WRITES).orElse(0L) + 1);
+                authorCounts.addAll(bookRepository.countByAuthor());
+                rebuiltGeneration.set(repository.findGeneration().orElse(0L) + 1);
+
+                repository.deleteAllInBatch();
+                List<CatalogStat> stats = new ArrayList<>(computed.size());
+                computed.forEach((name, total) -> stats.add(CatalogStat.builder()
+                        .name(name).total(total).generation(rebuiltGeneration.get()).build()));
+                repository.saveAll(stats);
+                return computed;
+            });
+        } catch (RuntimeException ex) {
+            // sem troca: o que ficou retido volta para os contadores atuais
+            synchronized (holdLock) {
+                Map<String, Long> held = heldBack;
+                heldBack = null;
+                if (held != null) {
+                    held.forEach((name, delta) -> counter(name).pending.add(delta));
+                }
+            }
+            throw ex;
+        }
+
+        Map<String, Counter> rebuilt = new ConcurrentHashMap<>();
+        totals.forEach((name, total) -> rebuilt.computeIfAbsent(name, ignored -> new Counter()).base = total);
+        synchronized (holdLock) {
+            heldBack.forEach((name, delta) -> rebuilt.computeIfAbsent(name, ignored -> new Counter()).pending.add(delta));
+            counters = rebuilt;
+            generation = rebuiltGeneration.get();
+            heldBack = null;
+        }
+        rank(authorCounts, totals.get(BOOK_WRITES));
+        log.info("Catalog statistics rebuilt: {} counters", totals.size());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void load() {
+
+        if (repository.count() == 0) {
+            rebuild();
+        } else {
+            reload();
+            rank(bookRepository.countByAuthor(), counter(BOOK_WRITES).base);
+        }
+    }
+
+    private void reload() {
+        for (CatalogStat stat : repository.findAll()) {
+            counter(stat.getName()).base = stat.getTotal();
+            generation = stat.getGeneration();
+        }
+    }
+
+    private void write(String name, long delta, long generation) {
+        if (repository.increment(name, delta, generation) > 0) {
+            return;
+        }
+        if (repository.findGeneration().orElse(generation) != generation) {
+            // desfaz os outros contadores deste flush: o recálculo já contou as escritas deles
+            throw new StaleGenerationException();
+        }
+        repository.save(CatalogStat.builder().name(name).total(delta).generation(generation).build());
+    }
+
+    private long get(String name) {
+        Counter counter = counters.get(name);
+        return counter == null ? 0 : counter.value();
+    }
+
+    private void add(String name, long delta) {
+        if (heldBack != null) {
+            synchronized (holdLock) {
+                Map<String, Long> held = heldBack;
+                if (held != null) {
+                    held.merge(name, delta, Long::sum);
+                    return;
+                }
+            }
+        }
+        counter(name).pending.add(delta);
+    }
+
+    // uma leitura das contagens por autor por flush com escritas, em vez de uma por requisição
+    private void rank(List<AuthorCount> counts, long writes) {
+        Map<String, Long> books = new HashMap<>(counts.size() * 2);
+        PriorityQueue<AuthorCount> top = new PriorityQueue<>(MAX_TOP + 1, RANKING.reversed());
+        for (AuthorCount count : counts) {
+            books.put(count.getAuthor(), count.getBooks());
+            top.add(count);
+            if (top.size() > MAX_TOP) {
+                top.poll();
+            }
+        }
+        List<AuthorCount> sorted = new ArrayList<>(top);
+        sorted.sort(RANKING);
+        authors = new Authors(writes, books, List.copyOf(sorted));
+    }
+
+    private Counter counter(String name) {
+        return counters.computeIfAbsent(name, ignored -> new Counter());
+    }
+
+    private static final Comparator<AuthorCount> RANKING =
+            Comparator.comparingLong(AuthorCount::getBooks).reversed().thenComparing(AuthorCount::getAuthor);
+
+    private static final class StaleGenerationException extends RuntimeException {
+
+        StaleGenerationException() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final class Authors {
+
+        // books.writes da leitura: um valor diferente na tabela pede uma nova
+        final long writes;
+        final Map<String, Long> books;
+        final List<AuthorCount> topAuthors;
+
+        Authors(long writes, Map<String, Long> books, List<AuthorCount> topAuthors) {
+            this.writes = writes;
+            this.books = books;
+            this.topAuthors = topAuthors;
+        }
+    }
+
+    private static final class Counter {
+
+        volatile long base;
+        final LongAdder pending = new LongAdder();
+
+        long value() {
+            return base + pending.sum();
+        }
+    }
+}
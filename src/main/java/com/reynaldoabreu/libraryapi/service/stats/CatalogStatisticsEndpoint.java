@@ -0,0 +1,24 @@
+package com.reynaldoabreu.libraryapi.service.stats;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Recálculo das estatísticas pelo actuator ({@code POST /actuator/catalogstats}). Fica fora
+ * da API pública: só é exposto por HTTP se incluído em
+ * {@code management.endpoints.web.exposure.include}, atrás da porta/segurança do management.
+ */
+@Component
+@Endpoint(id = "catalogstats")
+@RequiredArgsConstructor
+public class CatalogStatisticsEndpoint {
+
+    private final CatalogStatistics statistics;
+
+    @WriteOperation
+    public void rebuild() {
+        statistics.rebuild();
+    }
+}
@@ -0,0 +1,152 @@
+package com.reynaldoabreu.libraryapi.service.writebehind;
+
+import com.reynaldoabreu.libraryapi.exception.BusinessException;
+import com.reynaldoabreu.libraryapi.model.entity.Book;
+import com.reynaldoabreu.libraryapi.model.entity.Loan;
+import com.reynaldoabreu.libraryapi.model.repository.LoanRepository;
+import com.reynaldoabreu.libraryapi.service.BookService;
+import com.reynaldoabreu.libraryapi.service.LoanService;
+import com.reynaldoabreu.libraryapi.service.availability.AvailabilityIndex;
+import com.reynaldoabreu.libraryapi.service.idempotency.IdempotencyStore;
+import com.reynaldoabreu.libraryapi.service.outbox.EventOutbox;
+import com.reynaldoabreu.libraryapi.service.stats.CatalogStatistics;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Grava um lote de empréstimos pendentes numa única transação (inserts em lote via JDBC),
+ * junto com os eventos da outbox e a conclusão das {@code Idempotency-Key}, e completa o
+ * futuro de cada um depois da confirmação.
+ */
+@Component
+public class LoanBatchWriter {
+
+    private final BookService bookService;
+    private final LoanService loanService;
+    private final LoanRepository loanRepository;
+    private final CatalogStatistics statistics;
+    private final AvailabilityIndex availability;
+    private final EventOutbox outbox;
+    private final IdempotencyStore idempotencyStore;
+    private final TransactionTemplate transactions;
+
+    public LoanBatchWriter(BookService bookService, LoanService loanService, LoanRepository loanRepository,
+                           CatalogStatistics statistics, AvailabilityIndex availability, EventOutbox outbox,
+                           IdempotencyStore idempotencyStore, PlatformTransactionManager transactionManager) {
+        this.bookService = bookService;
+        this.loanService = loanService;
+        this.loanRepository = loanRepository;
+        this.statistics = statistics;
+        this.availability = availability;
+        this.outbox = outbox;
+        this.idempotencyStore = idempotencyStore;
+        this.transactions = new TransactionTemplate(transactionManager);
+    }
+
+    public void write(List<PendingLoan> batch) {
+
+        Map<String, Book> books = bookService.getBooksByIsbn(
+                batch.stream().map(PendingLoan::getIsbn).collect(Collectors.toSet()));
+
+        // os erros de negócio são resolvidos antes da transação para que um pedido inválido
+        // não derrube o lote inteiro
+        List<PendingLoan> accepted = new ArrayList<>(batch.size());
+        Set<Long> bookIds = new HashSet<>();
+        for (PendingLoan pending : batch) {
+            Book book = books.get(pending.getIsbn());
+            if (book == null) {
+                pending.getResult().completeExceptionally(new BusinessException("Book not found for passed isbn"));
+            } else if (!bookIds.add(book.getId())) {
+                pending.getResult().completeExceptionally(new BusinessException("Book already loaned"));
+            } else {
+                accepted.add(pending);
+            }
+        }
+        if (accepted.isEmpty()) {
+            return;
+        }
+
+        Set<Long> activeBookIds = loanRepository.findActiveBookIds(bookIds);
+        List<PendingLoan> writable = new ArrayList<>(accepted.size());
+        List<Loan> loans = new ArrayList<>(accepted.size());
+        for (PendingLoan pending : accepted) {
+            Book book = books.get(pending.getIsbn());
+            if (activeBookIds.contains(book.getId())) {
+                pending.getResult().completeExceptionally(new BusinessException("Book already loaned"));
+            } else {
+                writable.add(pending);
+                loans.add(toLoan(pending, book));
+            }
+        }
+        if (loans.isEmpty()) {
+            return;
+        }
+
+        List<Loan> saved;
+        try {
+            saved = transactions.execute(status -> {
+                List<Loan> inserted = loanRepository.saveAllAndFlush(loans);
+                outbox.loansCreated(inserted);
+                completeKeys(writable, inserted);
+                return inserted;
+            });
+        } catch (DataIntegrityViolationException ex) {
+            // outro escritor emprestou um dos livros depois da verificação: grava um a um
+            writable.forEach(pending -> writeOne(pending, books.get(pending.getIsbn())));
+            return;
+        }
+
+        for (int i = 0; i < writable.size(); i++) {
+            Loan loan = saved.get(i);
+            statistics.loanCreated();
+            availability.lent(loan.getBook().getId());
+            writable.get(i).getResult().complete(loan.getId());
+        }
+    }
+
+    private void writeOne(PendingLoan pending, Book book) {
+        try {
+            Loan saved = transactions.execute(status -> {
+                Loan loan = loanService.save(toLoan(pending, book));
+                completeKeys(List.of(pending), List.of(loan));
+                return loan;
+            });
+            pending.getResult().complete(saved.getId());
+        } catch (RuntimeException ex) {
+            pending.getResult().completeExceptionally(ex);
+        }
+    }
+
+    // as chaves do lote numa só chamada ao store: com o jpa, uma atualização em lote junto com os inserts
+    private void completeKeys(List<PendingLoan> pendings, List<Loan> loans) {
+        Map<String, Long> results = new HashMap<>();
+        for (int i = 0; i < pendings.size(); i++) {
+            String key = pendings.get(i).getIdempotencyKey();
+            if (key != null) {
+                results.put(key, loans.get(i).getId());
+            }
+        }
+        if (!results.isEmpty()) {
+            idempotencyStore.completeAll(results);
+        }
+    }
+
+    private static Loan toLoan(PendingLoan pending, Book book) {
+        return Loan.builder()
+                .book(book)
+                .costumer(pending.getCostumer())
+                .loanDate(pending.getLoanDate())
+                .returned(false)
+                .build();
+    }
+}
@@ -0,0 +1,137 @@
+package com.reynaldoabreu.libraryapi.service.writebehind;
+
+import com.reynaldoabreu.libraryapi.exception.QueueFullException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Modo write-behind da criação de empréstimos: as requisições enfileiram o pedido numa
+ * {@link MpscRingBuffer} e recebem um futuro; uma única thread esvazia a fila e grava tudo o
+ * que se acumulou desde o último commit num só lote (group commit). Sob carga os lotes crescem
+ * sozinhos, sem espera artificial; com a fila cheia o pedido é recusado na hora.
+ *
+ * <p>No desligamento, {@link #stop()} fecha a admissão e espera os produtores que já passaram
+ * pela checagem terminarem o {@code offer}; só então a thread de escrita pode sair, de modo que
+ * todo pedido aceito é gravado ou recusado, nunca esquecido na fila.
+ */
+@Component
+@ConditionalOnProperty(prefix = "library.loans.write-behind", name = "enabled", havingValue = "true")
+public class LoanWriteBehindQueue implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(LoanWriteBehindQueue.class);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final LoanBatchWriter writer;
+    private final MpscRingBuffer<PendingLoan> queue;
+    private final int batchSize;
+    private final Thread writerThread;
+    private final AtomicInteger admitting = new AtomicInteger();
+    private volatile boolean running;
+    private volatile boolean closed;
+    private volatile DistributionSummary batchSizes;
+
+    public LoanWriteBehindQueue(LoanBatchWriter writer, WriteBehindProperties properties) {
+        this.writer = writer;
+        this.queue = new MpscRingBuffer<>(properties.getCapacity());
+        this.batchSize = properties.getBatchSize();
+        this.writerThread = new Thread(this::drainLoop, "loan-write-behind");
+        this.writerThread.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        // quem incrementou antes de ler running=false ainda pode estar no offer
+        while (admitting.get() != 0) {
+            Thread.onSpinWait();
+        }
+        closed = true;
+        LockSupport.unpark(writerThread);
+        writerThread.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    /**
+     * @throws QueueFullException quando a fila está cheia
+     */
+    public CompletableFuture<Long> submit(String isbn, String costumer, LocalDate loanDate, String idempotencyKey) {
+
+        admitting.incrementAndGet();
+        try {
+            if (!running) {
+                throw new QueueFullException("Loan queue is shutting down");
+            }
+
+            PendingLoan pending = new PendingLoan(isbn, costumer, loanDate, idempotencyKey);
+            if (!queue.offer(pending)) {
+                throw new QueueFullException("Loan queue is full");
+            }
+            LockSupport.unpark(writerThread);
+            return pending.getResult();
+        } finally {
+            admitting.decrementAndGet();
+        }
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("library.loans.write_behind.queue.size", queue, MpscRingBuffer::size)
+                .description("Empréstimos aguardando gravação")
+                .register(registry);
+        batchSizes = DistributionSummary.builder("library.loans.write_behind.batch.size")
+                .description("Empréstimos gravados por transação")
+                .register(registry);
+    }
+
+    private void drainLoop() {
+
+        List<PendingLoan> batch = new ArrayList<>(batchSize);
+        // depois de closed nenhum produtor consegue mais enfileirar: a fila vazia é definitiva
+        while (!closed || !queue.isEmpty()) {
+            queue.drain(batch::add, batchSize);
+            if (batch.isEmpty()) {
+                // os produtores acordam a thread; o timeout só cobre o desligamento
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                continue;
+            }
+
+            try {
+                writer.write(batch);
+            } catch (RuntimeException ex) {
+                log.error("Loan batch of {} failed", batch.size(), ex);
+                batch.forEach(pending -> pending.getResult().completeExceptionally(ex));
+            }
+
+            DistributionSummary summary = batchSizes;
+            if (summary != null) {
+                summary.record(batch.size());
+            }
+            batch.clear();
+        }
+    }
+}
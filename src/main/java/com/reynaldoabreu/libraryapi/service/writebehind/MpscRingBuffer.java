@@ -0,0 +1,113 @@
+package com.reynaldoabreu.libraryapi.service.writebehind;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Fila circular limitada, sem locks, para vários produtores e um único consumidor.
+ *
+ * <p>Cada posição guarda um número de sequência (algoritmo de Vyukov): o produtor só escreve
+ * quando a sequência indica que a posição está livre na volta atual e publica o elemento
+ * avançando a sequência; o consumidor só lê quando ela indica elemento publicado e libera a
+ * posição para a próxima volta. Os produtores disputam apenas o CAS do índice de escrita.
+ * Quando a fila está cheia {@link #offer} devolve {@code false} em vez de bloquear.
+ */
+public final class MpscRingBuffer<E> {
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    public MpscRingBuffer(int requestedCapacity) {
+
+        if (requestedCapacity < 2) {
+            throw new IllegalArgumentException("Capacity must be at least 2");
+        }
+        this.capacity = Integer.highestOneBit(requestedCapacity - 1) << 1;
+        this.mask = capacity - 1;
+        this.elements = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.setPlain(i, i);
+        }
+    }
+
+    public boolean offer(E element) {
+
+        if (element == null) {
+            throw new NullPointerException();
+        }
+
+        long position = tail.get();
+        for (;;) {
+            int index = (int) (position & mask);
+            long difference = sequences.getAcquire(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.setPlain(index, element);
+                    sequences.setRelease(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // a posição ainda guarda um elemento da volta anterior: fila cheia
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Remove o próximo elemento publicado. Só pode ser chamado pela thread consumidora.
+     */
+    public E poll() {
+
+        long position = head.getPlain();
+        int index = (int) (position & mask);
+        if (sequences.getAcquire(index) != position + 1) {
+            return null;
+        }
+
+        E element = elements.getPlain(index);
+        elements.setPlain(index, null);
+        sequences.setRelease(index, position + capacity);
+        head.setRelease(position + 1);
+        return element;
+    }
+
+    /**
+     * Entrega ao consumidor até {@code limit} elementos. Só pode ser chamado pela thread consumidora.
+     *
+     * @return quantidade de elementos entregues
+     */
+    public int drain(Consumer<? super E> consumer, int limit) {
+
+        int drained = 0;
+        E element;
+        while (drained < limit && (element = poll()) != null) {
+            consumer.accept(element);
+            drained++;
+        }
+        return drained;
+    }
+
+    /** Tamanho aproximado, para métricas. */
+    public int size() {
+        long size = tail.get() - head.getAcquire();
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,20 @@
+package com.reynaldoabreu.libraryapi.service.writebehind;
+
+import lombok.Value;
+
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Empréstimo aguardando gravação e o futuro que recebe o id quando o lote for confirmado.
+ * A {@code Idempotency-Key} reservada pelo pedido, se houver, é concluída na transação do lote.
+ */
+@Value
+public class PendingLoan {
+
+    String isbn;
+    String costumer;
+    LocalDate loanDate;
+    String idempotencyKey;
+    CompletableFuture<Long> result = new CompletableFuture<>();
+}
@@ -0,0 +1,18 @@
+package com.reynaldoabreu.libraryapi.service.writebehind;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "library.loans.write-behind")
+public class WriteBehindProperties {
+
+    private boolean enabled = false;
+
+    /** Empréstimos aguardando gravação; acima disso as requisições recebem 429. Arredondado para potência de 2. */
+    private int capacity = 8192;
+
+    /** Máximo de empréstimos gravados por transação. */
+    private int batchSize = 500;
+
+}
@@ -0,0 +1,110 @@
+package com.reynaldoabreu.libraryapi.api.ratelimit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RateLimitFilterTest {
+
+    RateLimitProperties properties;
+    MeterRegistry registry;
+    AtomicLong clock;
+    RateLimitFilter filter;
+
+    @BeforeEach
+    public void setUp(){
+        properties = new RateLimitProperties();
+        properties.getLimits().put(EndpointClass.SEARCH, new RateLimitProperties.Limit(1, 2));
+        properties.getClients().put("parceiro",
+                Map.of(EndpointClass.SEARCH, new RateLimitProperties.Limit(1, 5)));
+        registry = new SimpleMeterRegistry();
+        clock = new AtomicLong();
+        filter = new RateLimitFilter(properties, new ObjectMapper(), registry, clock::get);
+    }
+
+    @Test
+    @DisplayName("Deve responder 429 com Retry-After quando o cliente esgotar o limite")
+    public void rejectWhenExhaustedTest() throws Exception {
+
+        assertThat(perform("GET", "/api/books", "10.0.0.1", null).getStatus()).isEqualTo(200);
+        assertThat(perform("GET", "/api/books/search", "10.0.0.1", null).getStatus()).isEqualTo(200);
+
+        MockHttpServletResponse response = perform("GET", "/api/books", "10.0.0.1", null);
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+        assertThat(response.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(response.getContentAsString()).contains("Too many requests");
+        assertThat(perform("GET", "/api/books", "10.0.0.2", null).getStatus()).isEqualTo(200);
+        assertThat(registry.get(RateLimitFilter.METRIC).tags("endpoint", "search", "outcome", "rejected")
+                .counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve usar o limite da chave conhecida e o do IP para chaves desconhecidas")
+    public void apiKeyLimitTest() throws Exception {
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(perform("GET", "/api/books", "10.0.0.1", "parceiro").getStatus()).isEqualTo(200);
+        }
+        assertThat(perform("GET", "/api/books", "10.0.0.1", "parceiro").getStatus()).isEqualTo(429);
+
+        assertThat(perform("GET", "/api/books", "10.0.0.1", "inventada").getStatus()).isEqualTo(200);
+        assertThat(perform("GET", "/api/books", "10.0.0.1", "outra").getStatus()).isEqualTo(200);
+        assertThat(perform("GET", "/api/books", "10.0.0.1", "mais-uma").getStatus()).isEqualTo(429);
+    }
+
+    @Test
+    @DisplayName("Deve separar os limites por classe de endpoint e não limitar a leitura de um livro")
+    public void endpointClassTest() throws Exception {
+
+        perform("GET", "/api/books", "10.0.0.1", null);
+        perform("GET", "/api/books", "10.0.0.1", null);
+
+        assertThat(perform("GET", "/api/books", "10.0.0.1", null).getStatus()).isEqualTo(429);
+        assertThat(perform("GET", "/api/books/1", "10.0.0.1", null).getStatus()).isEqualTo(200);
+        assertThat(perform("POST", "/api/books", "10.0.0.1", null).getStatus()).isEqualTo(200);
+        assertThat(perform("POST", "/api/loans", "10.0.0.1", null).getStatus()).isEqualTo(200);
+        // o histórico de empréstimos é uma leitura: divide o limite das buscas
+        assertThat(perform("GET", "/api/loans", "10.0.0.1", null).getStatus()).isEqualTo(429);
+
+        clock.addAndGet(1_000_000_000L);
+        assertThat(perform("GET", "/api/books", "10.0.0.1", null).getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    @DisplayName("Deve limitar o histórico de empréstimos de um livro como busca")
+    public void bookLoanHistoryTest() throws Exception {
+
+        assertThat(perform("GET", "/api/books/1/loans", "10.0.0.1", null).getStatus()).isEqualTo(200);
+        assertThat(perform("GET", "/api/books/2/loans", "10.0.0.1", null).getStatus()).isEqualTo(200);
+
+        assertThat(perform("GET", "/api/books/1/loans", "10.0.0.1", null).getStatus()).isEqualTo(429);
+        assertThat(perform("GET", "/api/books", "10.0.0.1", null).getStatus()).isEqualTo(429);
+        assertThat(perform("GET", "/api/books/1", "10.0.0.1", null).getStatus()).isEqualTo(200);
+    }
+
+    private MockHttpServletResponse perform(String method, String uri, String ip, String apiKey) throws Exception {
+
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.setRemoteAddr(ip);
+        if (apiKey != null) {
+            request.addHeader(properties.getApiKeyHeader(), apiKey);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
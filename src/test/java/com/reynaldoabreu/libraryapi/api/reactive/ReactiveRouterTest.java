@@ -0,0 +1,188 @@
+package com.reynaldoabreu.libraryapi.api.reactive;
+
+import com.reynaldoabreu.libraryapi.api.dto.BookDTO;
+import com.reynaldoabreu.libraryapi.api.dto.LoanDto;
+import com.reynaldoabreu.libraryapi.model.entity.Book;
+import com.reynaldoabreu.libraryapi.service.ReactiveBookService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@ActiveProfiles("reactive")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "spring.datasource.url=jdbc:h2:mem:reactive-test;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                "library.r2dbc.url=r2dbc:h2:mem:///reactive-test?options=DB_CLOSE_DELAY=-1"
+        })
+public class ReactiveRouterTest {
+
+    static final String BOOK_API = "/api/books";
+    static final String LOAN_API = "/api/loans";
+
+    @Autowired
+    WebTestClient client;
+
+    @Autowired
+    ReactiveBookService service;
+
+    @Test
+    @DisplayName("Deve criar, obter, atualizar, filtrar e deletar um livro pela pilha reativa")
+    public void bookLifecycleTest() {
+
+        BookDTO created = client.post().uri(BOOK_API)
+                .bodyValue(BookDTO.builder().title("As aventuras").author("Arthur").isbn("r-001").build())
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(BookDTO.class)
+                .returnResult().getResponseBody();
+
+        client.get().uri(BOOK_API + "/" + created.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("isbn").isEqualTo("r-001");
+
+        client.put().uri(BOOK_API + "/" + created.getId())
+                .bodyValue(BookDTO.builder().title("Outro titulo").author("Fulano").isbn("ignorado").build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("title").isEqualTo("Outro titulo")
+                .jsonPath("isbn").isEqualTo("r-001");
+
+        client.get().uri(BOOK_API + "?title=outro&page=0&size=10")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("content.length()").isEqualTo(1)
+                .jsonPath("totalElements").isEqualTo(1);
+
+        client.delete().uri(BOOK_API + "/" + created.getId())
+                .exchange()
+                .expectStatus().isNoContent();
+
+        client.get().uri(BOOK_API + "/" + created.getId())
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    @DisplayName("Deve validar o livro e rejeitar isbn duplicado pela pilha reativa")
+    public void invalidBookTest() {
+
+        client.post().uri(BOOK_API)
+                .bodyValue(new BookDTO())
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("errors.length()").isEqualTo(3);
+
+        BookDTO dto = BookDTO.builder().title("As aventuras").author("Arthur").isbn("r-002").build();
+        client.post().uri(BOOK_API).bodyValue(dto).exchange().expectStatus().isCreated();
+        client.post().uri(BOOK_API).bodyValue(dto)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("errors[0]").isEqualTo("Isbn já cadastrado.");
+    }
+
+    @Test
+    @DisplayName("Deve responder 400 para id e paginação inválidos pela pilha reativa")
+    public void invalidParametersTest() {
+
+        client.get().uri(BOOK_API + "/abc")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("errors[0]").isEqualTo("Invalid book id");
+
+        client.delete().uri(BOOK_API + "/abc")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        client.put().uri(BOOK_API + "/abc")
+                .bodyValue(BookDTO.builder().title("As aventuras").author("Arthur").isbn("r-005").build())
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        client.get().uri(BOOK_API + "?page=x")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("errors[0]").isEqualTo("Invalid page request");
+
+        client.get().uri(BOOK_API + "?size=0")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    @DisplayName("Deve recusar com 412 a atualização de um livro alterado desde a leitura")
+    public void conditionalUpdateTest() {
+
+        BookDTO created = client.post().uri(BOOK_API)
+                .bodyValue(BookDTO.builder().title("As aventuras").author("Arthur").isbn("r-004").build())
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(BookDTO.class)
+                .returnResult().getResponseBody();
+        BookDTO update = BookDTO.builder().title("Segunda edicao").author("Fulano").isbn("r-004").build();
+
+        client.get().uri(BOOK_API + "/" + created.getId())
+                .exchange()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"0\"");
+
+        client.put().uri(BOOK_API + "/" + created.getId())
+                .header(HttpHeaders.IF_MATCH, "\"5\"")
+                .bodyValue(update)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        client.put().uri(BOOK_API + "/" + created.getId())
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .bodyValue(update)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"1\"");
+
+        // leitura anterior à última escrita: o UPDATE não casa com a versão e não sobrescreve
+        Book stale = Book.builder().id(created.getId()).title("Perdida").author("Ciclano").isbn("r-004").version(0L).build();
+        assertThatThrownBy(() -> service.update(stale).block()).isInstanceOf(OptimisticLockingFailureException.class);
+        client.get().uri(BOOK_API + "/" + created.getId())
+                .exchange()
+                .expectBody().jsonPath("title").isEqualTo("Segunda edicao");
+    }
+
+    @Test
+    @DisplayName("Deve emprestar um livro uma única vez pela pilha reativa")
+    public void loanTest() {
+
+        client.post().uri(BOOK_API)
+                .bodyValue(BookDTO.builder().title("As aventuras").author("Arthur").isbn("r-003").build())
+                .exchange()
+                .expectStatus().isCreated();
+
+        LoanDto loan = LoanDto.builder().isbn("r-003").costumer("Fulano").build();
+        client.post().uri(LOAN_API).bodyValue(loan)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Long.class);
+
+        client.post().uri(LOAN_API).bodyValue(loan)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("errors[0]").isEqualTo("Book already loaned");
+
+        client.post().uri(LOAN_API).bodyValue(LoanDto.builder().isbn("inexistente").costumer("Fulano").build())
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("errors[0]").isEqualTo("Book not found for passed isbn");
+
+        client.delete().uri(BOOK_API + "/" + service.getBookByIsbn("r-003").block().getId())
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT);
+    }
+}
@@ -1,10 +1,20 @@
 package com.reynaldoabreu.libraryapi.api.resource;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reynaldoabreu.libraryapi.api.Cursors;
+import com.reynaldoabreu.libraryapi.api.dto.AvailabilityRequestDTO;
 import com.reynaldoabreu.libraryapi.api.dto.BookDTO;
 import com.reynaldoabreu.libraryapi.exception.BusinessException;
+import com.reynaldoabreu.libraryapi.exception.ConflictException;
 import com.reynaldoabreu.libraryapi.model.entity.Book;
+import com.reynaldoabreu.libraryapi.model.projection.LoanView;
 import com.reynaldoabreu.libraryapi.service.BookService;
+import com.reynaldoabreu.libraryapi.service.LoanService;
+import com.reynaldoabreu.libraryapi.service.availability.AvailabilityIndex;
+import com.reynaldoabreu.libraryapi.service.changes.BookChange;
+import com.reynaldoabreu.libraryapi.service.changes.BookChangeFeed;
+import com.reynaldoabreu.libraryapi.service.changes.BookChangePage;
+import com.reynaldoabreu.libraryapi.service.changes.Watermark;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -18,17 +28,27 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.AdditionalAnswers.returnsFirstArg;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @ExtendWith(SpringExtension.class)
@@ -43,6 +63,15 @@ public class BookControllerTest {
     @MockBean
     BookService service;
 
+    @MockBean
+    LoanService loanService;
+
+    @MockBean
+    AvailabilityIndex availability;
+
+    @MockBean
+    BookChangeFeed changeFeed;
+
     static String BOOK_API = "/api/books";
 
     @Test
@@ -112,6 +141,109 @@ public class BookControllerTest {
 
     }
 
+    @Test
+    @DisplayName("Deve importar livros em lote a partir de um array json")
+    public void createBatchBookTest() throws Exception {
+
+        BookDTO first = BookDTO.builder().title("As aventuras").author("Arthur").isbn("001").build();
+        BookDTO duplicate = BookDTO.builder().title("Outro").author("Fulano").isbn("002").build();
+        BookDTO invalid = BookDTO.builder().title("Sem isbn").author("Fulano").build();
+        String json = new ObjectMapper().writeValueAsString(Arrays.asList(first, duplicate, invalid));
+
+        BDDMockito.given(service.saveAll(Mockito.anyList()))
+                .willReturn(Arrays.asList(Book.builder().id(1L).isbn("001").build()));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(BOOK_API.concat("/batch"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(json);
+
+        mvc.perform(request)
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("received").value(3))
+                .andExpect(jsonPath("created").value(1))
+                .andExpect(jsonPath("rejected").value(1))
+                .andExpect(jsonPath("duplicateIsbns", hasSize(1)))
+                .andExpect(jsonPath("duplicateIsbns[0]").value("002"));
+    }
+
+    @Test
+    @DisplayName("Deve importar livros em lote a partir de ndjson")
+    public void createBatchBookFromNdjsonTest() throws Exception {
+
+        ObjectMapper mapper = new ObjectMapper();
+        String ndjson = mapper.writeValueAsString(BookDTO.builder().title("A").author("B").isbn("001").build())
+                + "\n" + mapper.writeValueAsString(BookDTO.builder().title("C").author("D").isbn("002").build()) + "\n";
+
+        BDDMockito.given(service.saveAll(Mockito.anyList()))
+                .willReturn(Arrays.asList(Book.builder().id(1L).isbn("001").build(), Book.builder().id(2L).isbn("002").build()));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(BOOK_API.concat("/batch"))
+                .contentType("application/x-ndjson")
+                .accept(MediaType.APPLICATION_JSON)
+                .content(ndjson);
+
+        mvc.perform(request)
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("received").value(2))
+                .andExpect(jsonPath("created").value(2))
+                .andExpect(jsonPath("duplicateIsbns", hasSize(0)));
+    }
+
+    @Test
+    @DisplayName("Deve refazer livro a livro o lote desfeito por um isbn gravado no meio da importação")
+    public void createBatchBookRetryChunkTest() throws Exception {
+
+        ObjectMapper mapper = new ObjectMapper();
+        String ndjson = mapper.writeValueAsString(BookDTO.builder().title("A").author("B").isbn("001").build())
+                + "\n" + mapper.writeValueAsString(BookDTO.builder().title("C").author("D").isbn("002").build()) + "\n";
+
+        BDDMockito.given(service.saveAll(Mockito.anyList())).willThrow(new BusinessException("Isbn já cadastrado."));
+        BDDMockito.given(service.save(Mockito.argThat(book -> book != null && "001".equals(book.getIsbn()))))
+                .willReturn(Book.builder().id(1L).isbn("001").build());
+        BDDMockito.given(service.save(Mockito.argThat(book -> book != null && "002".equals(book.getIsbn()))))
+                .willThrow(new BusinessException("Isbn já cadastrado."));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(BOOK_API.concat("/batch"))
+                .contentType("application/x-ndjson")
+                .accept(MediaType.APPLICATION_JSON)
+                .content(ndjson);
+
+        mvc.perform(request)
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("received").value(2))
+                .andExpect(jsonPath("created").value(1))
+                .andExpect(jsonPath("duplicateIsbns", hasSize(1)))
+                .andExpect(jsonPath("duplicateIsbns[0]").value("002"));
+    }
+
+    @Test
+    @DisplayName("Deve retornar 400 com as contagens ao encontrar um registro malformado na importação")
+    public void createBatchBookMalformedRecordTest() throws Exception {
+
+        ObjectMapper mapper = new ObjectMapper();
+        String ndjson = mapper.writeValueAsString(BookDTO.builder().title("A").author("B").isbn("001").build())
+                + "\n{\"title\": \"C\", \"isbn\": \n";
+
+        BDDMockito.given(service.saveAll(Mockito.anyList()))
+                .willReturn(Arrays.asList(Book.builder().id(1L).isbn("001").build()));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(BOOK_API.concat("/batch"))
+                .contentType("application/x-ndjson")
+                .accept(MediaType.APPLICATION_JSON)
+                .content(ndjson);
+
+        mvc.perform(request)
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("received").value(1))
+                .andExpect(jsonPath("created").value(1))
+                .andExpect(jsonPath("error").exists());
+    }
+
     @Test
     @DisplayName("Deve obter informações de um livro")
     public void getBookDetailsTest() throws Exception {
@@ -162,7 +294,7 @@ public class BookControllerTest {
     @Test
     @DisplayName("Deve deletar um livro")
     public void deleteBookTest() throws Exception {
-        BDDMockito.given(service.getById(Mockito.anyLong())).willReturn(Optional.of(Book.builder().id(1L).build()));
+        BDDMockito.given(service.deleteById(1L, null)).willReturn(1);
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
                 .delete(BOOK_API.concat("/" + 1L));
@@ -172,6 +304,21 @@ public class BookControllerTest {
 
     }
 
+    @Test
+    @DisplayName("Deve retornar conflito ao deletar um livro com empréstimos")
+    public void deleteLoanedBookTest() throws Exception {
+        BDDMockito.given(service.deleteById(1L, null)).willThrow(new ConflictException("Livro possui empréstimos."));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .delete(BOOK_API.concat("/" + 1L));
+
+        mvc.perform(request)
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("errors", hasSize(1)))
+                .andExpect(jsonPath("errors[0]").value("Livro possui empréstimos."));
+
+    }
+
     @Test
     @DisplayName("Deve retornar resource not found quando não encontrar um livro para deletar")
     public void deleteNoExistentBookTest() throws Exception {
@@ -195,6 +342,7 @@ public class BookControllerTest {
 
         Book updatingBook = Book.builder().id(id).title("some title").author("some author").isbn("321").build();
         BDDMockito.given( service.getById(id) ).willReturn( Optional.of(updatingBook) );
+        BDDMockito.given( service.update(Mockito.any(Book.class)) ).will( returnsFirstArg() );
 
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
@@ -213,6 +361,123 @@ public class BookControllerTest {
 
     }
 
+    @Test
+    @DisplayName("Deve devolver o ETag da versão do livro e responder 304 quando não mudou")
+    public void getBookNotModifiedTest() throws Exception {
+
+        Book book = Book.builder().id(1L).title("As aventuras").author("Artur").isbn("001").version(3L).build();
+        BDDMockito.given(service.getById(1L)).willReturn(Optional.of(book));
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1")))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"3\""));
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1")).header("If-None-Match", "\"3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1")).header("If-None-Match", "\"2\""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("id").value(1L));
+    }
+
+    @Test
+    @DisplayName("Deve atualizar um livro quando o If-Match corresponde à versão atual")
+    public void updateBookIfMatchTest() throws Exception {
+
+        String json = new ObjectMapper().writeValueAsString(createNewBook());
+        Book book = Book.builder().id(1L).title("some title").author("some author").isbn("321").version(3L).build();
+        BDDMockito.given(service.getById(1L)).willReturn(Optional.of(book));
+        BDDMockito.given(service.update(Mockito.any(Book.class)))
+                .willAnswer(invocation -> invocation.getArgument(0, Book.class).toBuilder().version(4L).build());
+
+        mvc.perform(MockMvcRequestBuilders.put(BOOK_API.concat("/1"))
+                        .header("If-Match", "\"3\"")
+                        .content(json)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"4\""))
+                .andExpect(jsonPath("title").value(createNewBook().getTitle()));
+    }
+
+    @Test
+    @DisplayName("Deve retornar 412 ao atualizar ou deletar com If-Match de uma versão antiga")
+    public void staleIfMatchTest() throws Exception {
+
+        String json = new ObjectMapper().writeValueAsString(createNewBook());
+        Book book = Book.builder().id(1L).title("some title").author("some author").isbn("321").version(3L).build();
+        BDDMockito.given(service.getById(1L)).willReturn(Optional.of(book));
+
+        mvc.perform(MockMvcRequestBuilders.put(BOOK_API.concat("/1"))
+                        .header("If-Match", "\"2\"")
+                        .content(json)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isPreconditionFailed());
+
+        mvc.perform(MockMvcRequestBuilders.delete(BOOK_API.concat("/1")).header("If-Match", "W/\"3\""))
+                .andExpect(status().isPreconditionFailed());
+
+        Mockito.verify(service, Mockito.never()).update(Mockito.any(Book.class));
+        Mockito.verify(service, Mockito.never()).delete(Mockito.any(Book.class));
+    }
+
+    @Test
+    @DisplayName("Deve retornar 412 quando outra atualização concorrente venceu")
+    public void concurrentUpdateTest() throws Exception {
+
+        String json = new ObjectMapper().writeValueAsString(createNewBook());
+        Book book = Book.builder().id(1L).title("some title").author("some author").isbn("321").version(3L).build();
+        BDDMockito.given(service.getById(1L)).willReturn(Optional.of(book));
+        BDDMockito.given(service.update(Mockito.any(Book.class)))
+                .willThrow(new ObjectOptimisticLockingFailureException(Book.class, 1L));
+
+        mvc.perform(MockMvcRequestBuilders.put(BOOK_API.concat("/1"))
+                        .content(json)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("errors[0]").value("Book was modified"));
+    }
+
+    @Test
+    @DisplayName("Deve atualizar parcialmente um livro sem carregá-lo antes")
+    public void patchBookTest() throws Exception {
+
+        BDDMockito.given(service.updateFields(1L, "Novo título", null, 3L)).willReturn(1);
+
+        mvc.perform(MockMvcRequestBuilders.patch(BOOK_API.concat("/1"))
+                        .header("If-Match", "\"3\"")
+                        .content("{\"title\":\"Novo título\"}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string("ETag", "\"4\""));
+
+        Mockito.verify(service, Mockito.never()).getById(Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("Deve retornar 404 ou 412 quando a atualização parcial não afetar nenhum livro")
+    public void patchNoExistentOrStaleBookTest() throws Exception {
+
+        BDDMockito.given(service.getById(1L)).willReturn(Optional.empty());
+        BDDMockito.given(service.getById(2L)).willReturn(Optional.of(Book.builder().id(2L).version(5L).build()));
+
+        mvc.perform(MockMvcRequestBuilders.patch(BOOK_API.concat("/1"))
+                        .content("{\"author\":\"Outro\"}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+
+        mvc.perform(MockMvcRequestBuilders.patch(BOOK_API.concat("/2"))
+                        .header("If-Match", "\"4\"")
+                        .content("{\"author\":\"Outro\"}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isPreconditionFailed());
+
+        mvc.perform(MockMvcRequestBuilders.patch(BOOK_API.concat("/2"))
+                        .content("{}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     @DisplayName("Deve retornar 404 ao tentar atualizar um livro inexistente")
     public void updateNoExistentBookTest() throws Exception {
@@ -234,6 +499,26 @@ public class BookControllerTest {
 
     }
 
+    @Test
+    @DisplayName("Deve listar os empréstimos de um livro")
+    public void loansByBookTest() throws Exception {
+
+        BDDMockito.given(service.getById(1L)).willReturn(Optional.of(Book.builder().id(1L).build()));
+        LoanView view = new LoanView(5L, "Fulano", LocalDate.of(2024, 3, 1), true, 1L, "123", "As aventuras");
+        BDDMockito.given(loanService.findByBook(Mockito.eq(1L), Mockito.any()))
+                .willReturn(new SliceImpl<>(List.of(view), PageRequest.of(0, 20), false));
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1/loans")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(1)))
+                .andExpect(jsonPath("content[0].id").value(5))
+                .andExpect(jsonPath("content[0].returned").value(true));
+
+        BDDMockito.given(service.getById(2L)).willReturn(Optional.empty());
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/2/loans")))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     @DisplayName("Deve filtrar livros")
     public void findBookTest() throws Exception {
@@ -261,8 +546,191 @@ public class BookControllerTest {
                 .andExpect( status().isOk())
                 .andExpect( jsonPath( "content", Matchers.hasSize(1)))
                 .andExpect(jsonPath( "totalElements").value(1))
-                .andExpect(jsonPath( "pageable.pageSize").value(100))
-                .andExpect(jsonPath( "pageable.pageNumber").value(0));
+                .andExpect(jsonPath( "totalPages").value(1))
+                .andExpect(jsonPath( "size").value(100))
+                .andExpect(jsonPath( "page").value(0))
+                .andExpect(jsonPath( "content[0].id").value(id))
+                .andExpect(jsonPath( "content[0].isbn").value(book.getIsbn()))
+                .andExpect(jsonPath( "pageable").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("Deve incluir a disponibilidade de cada livro da página quando pedida")
+    public void findBookWithAvailabilityTest() throws Exception {
+
+        Book onLoan = Book.builder().id(1L).author("Artur").isbn("001").title("As aventuras").build();
+        Book free = Book.builder().id(2L).author("Artur").isbn("002").title("Outras aventuras").build();
+        BDDMockito.given(service.find(Mockito.any(Book.class), Mockito.any(Pageable.class)))
+                .willReturn(new PageImpl<>(Arrays.asList(onLoan, free), PageRequest.of(0, 20), 2));
+        BDDMockito.given(availability.isAvailable(1L)).willReturn(false);
+        BDDMockito.given(availability.isAvailable(2L)).willReturn(true);
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?availability=true")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content[0].available").value(false))
+                .andExpect(jsonPath("content[1].available").value(true));
+    }
+
+    @Test
+    @DisplayName("Deve informar a disponibilidade de livros por id e ISBN sem consultar empréstimos")
+    public void availabilityTest() throws Exception {
+
+        Book book = Book.builder().id(3L).isbn("003").build();
+        BDDMockito.given(service.getBooksByIsbn(List.of("003", "999"))).willReturn(Map.of("003", book));
+        BDDMockito.given(availability.isAvailable(1L)).willReturn(false);
+        BDDMockito.given(availability.isAvailable(3L)).willReturn(true);
+        String json = new ObjectMapper().writeValueAsString(
+                AvailabilityRequestDTO.builder().ids(List.of(1L)).isbns(List.of("003", "999")).build());
+
+        mvc.perform(MockMvcRequestBuilders.post(BOOK_API.concat("/availability"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("[0].id").value(1))
+                .andExpect(jsonPath("[0].available").value(false))
+                .andExpect(jsonPath("[1].id").value(3))
+                .andExpect(jsonPath("[1].available").value(true))
+                .andExpect(jsonPath("[2].isbn").value("999"))
+                .andExpect(jsonPath("[2].available").doesNotExist());
+        Mockito.verifyNoInteractions(loanService);
+    }
+
+    @Test
+    @DisplayName("Deve filtrar livros com paginação por cursor")
+    public void findBookAfterCursorTest() throws Exception {
+
+        Book book = Book.builder().id(7L).author("Artur").isbn("001").title("As aventuras").build();
+        BDDMockito.given(service.findAfter(Mockito.any(Book.class), Mockito.eq(5L), Mockito.eq(1)))
+                .willReturn(new SliceImpl<>(Arrays.asList(book), PageRequest.of(0, 1), true));
+
+        String queryString = String.format("?after=%s&size=1", Cursors.encode(5L));
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat(queryString)).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", Matchers.hasSize(1)))
+                .andExpect(jsonPath("hasNext").value(true))
+                .andExpect(jsonPath("next").value(Cursors.encode(7L)))
+                .andExpect(jsonPath("totalElements").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("Deve iniciar a paginação por cursor com cursor vazio")
+    public void findBookFirstCursorPageTest() throws Exception {
+
+        BDDMockito.given(service.findAfter(Mockito.any(Book.class), Mockito.isNull(), Mockito.eq(20)))
+                .willReturn(new SliceImpl<>(Arrays.asList(), PageRequest.of(0, 20), false));
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?after=")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", Matchers.hasSize(0)))
+                .andExpect(jsonPath("hasNext").value(false))
+                .andExpect(jsonPath("next").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Deve retornar bad request para um cursor inválido")
+    public void findBookInvalidCursorTest() throws Exception {
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?after=%%%")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("Deve buscar livros por texto")
+    public void searchBookTest() throws Exception {
+
+        Book book = Book.builder().id(1L).author("Artur").isbn("001").title("As aventuras").build();
+        BDDMockito.given(service.search("aventuras", 20)).willReturn(Arrays.asList(book));
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/search?q=aventuras")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("[0].id").value(1L));
+    }
+
+    @Test
+    @DisplayName("Deve exportar os livros filtrados em csv")
+    public void exportBooksCsvTest() throws Exception {
+
+        Book book = Book.builder().id(1L).title("Aventuras, volume 1").author("Artur").isbn("001").build();
+        BDDMockito.willAnswer(invocation -> {
+            Consumer<Book> consumer = invocation.getArgument(1);
+            consumer.accept(book);
+            return null;
+        }).given(service).export(Mockito.any(Book.class), Mockito.any());
+
+        MvcResult result = mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/export?format=csv&author=Artur")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andExpect(content().string("id,title,author,isbn\n1,\"Aventuras, volume 1\",Artur,001\n"));
+    }
+
+    @Test
+    @DisplayName("Deve exportar os livros filtrados em ndjson")
+    public void exportBooksNdjsonTest() throws Exception {
+
+        BDDMockito.willAnswer(invocation -> {
+            Consumer<Book> consumer = invocation.getArgument(1);
+            consumer.accept(Book.builder().id(1L).title("A").author("B").isbn("001").build());
+            consumer.accept(Book.builder().id(2L).title("C").author("D").isbn("002").build());
+            return null;
+        }).given(service).export(Mockito.any(Book.class), Mockito.any());
+
+        MvcResult result = mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/export")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andExpect(content().string(Matchers.containsString("\"isbn\":\"001\"}\n{\"id\":2")))
+                .andExpect(content().string(Matchers.endsWith("\"isbn\":\"002\"}\n")));
+    }
+
+    @Test
+    @DisplayName("Deve retornar as mudanças desde a marca d'água, com remoções e a próxima marca d'água")
+    public void changesTest() throws Exception {
+
+        Instant since = Instant.ofEpochSecond(1_700_000_000L, 123_000);
+        Instant changed = since.plusSeconds(10);
+        BDDMockito.given(changeFeed.horizon()).willReturn(Instant.EPOCH);
+        BDDMockito.given(changeFeed.changesAfter(new Watermark(since, 7L), 2)).willReturn(new BookChangePage(List.of(
+                new BookChange(8L, "A", "B", "001", 2L, since, changed, false),
+                new BookChange(3L, null, null, null, null, null, changed.plusSeconds(1), true)),
+                true, new Watermark(changed.plusSeconds(1), 3L)));
+
+        String watermark = Cursors.encode(since.getEpochSecond(), since.getNano(), 7L);
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/changes?size=2&since=" + watermark))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(2)))
+                .andExpect(jsonPath("content[0].isbn").value("001"))
+                .andExpect(jsonPath("content[0].deleted").value(false))
+                .andExpect(jsonPath("content[1].id").value(3L))
+                .andExpect(jsonPath("content[1].deleted").value(true))
+                .andExpect(jsonPath("content[1].isbn").doesNotExist())
+                .andExpect(jsonPath("hasNext").value(true))
+                .andExpect(jsonPath("watermark").value(Cursors.encode(changed.getEpochSecond() + 1, changed.getNano(), 3L)));
+    }
+
+    @Test
+    @DisplayName("Deve recusar com 410 uma marca d'água anterior à retenção das remoções")
+    public void expiredChangesWatermarkTest() throws Exception {
+
+        BDDMockito.given(changeFeed.horizon()).willReturn(Instant.ofEpochSecond(2_000_000_000L));
+        String watermark = Cursors.encode(1_700_000_000L, 0, 7L);
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/changes?since=" + watermark)))
+                .andExpect(status().isGone());
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/changes?since=invalid")))
+                .andExpect(status().isBadRequest());
+        Mockito.verify(changeFeed, Mockito.never()).changesAfter(Mockito.any(), Mockito.anyInt());
     }
 
     private static BookDTO createNewBook() {
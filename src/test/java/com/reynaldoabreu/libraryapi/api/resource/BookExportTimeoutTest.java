@@ -0,0 +1,58 @@
+package com.reynaldoabreu.libraryapi.api.resource;
+
+import com.reynaldoabreu.libraryapi.model.entity.Book;
+import com.reynaldoabreu.libraryapi.service.BookService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// servidor de verdade: o MockMvc não dispara o tempo limite das requisições assíncronas
+@ActiveProfiles("test")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "spring.datasource.url=jdbc:h2:mem:export-test;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                "spring.mvc.async.request-timeout=200ms",
+                "library.books.export.timeout=PT1M"
+        })
+public class BookExportTimeoutTest {
+
+    @Autowired
+    TestRestTemplate rest;
+
+    @MockBean
+    BookService service;
+
+    @Test
+    @DisplayName("Deve exportar até o fim mesmo passando do tempo limite padrão das requisições assíncronas")
+    public void exportPastDefaultTimeoutTest(){
+        //cenario
+        BDDMockito.willAnswer(invocation -> {
+            Consumer<Book> consumer = invocation.getArgument(1);
+            for (long id = 1; id <= 5; id++) {
+                consumer.accept(Book.builder().id(id).title("A").author("B").isbn("00" + id).build());
+                Thread.sleep(500);
+            }
+            return null;
+        }).given(service).export(Mockito.any(Book.class), Mockito.any());
+
+        //execução
+        ResponseEntity<String> response = rest.getForEntity("/api/books/export", String.class);
+
+        //verificação
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).endsWith("\"isbn\":\"005\"}\n");
+        assertThat(response.getBody().split("\n")).hasSize(5);
+    }
+}
@@ -3,30 +3,40 @@ package com.reynaldoabreu.libraryapi.api.resource;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.reynaldoabreu.libraryapi.api.dto.LoanDto;
 import com.reynaldoabreu.libraryapi.exception.BusinessException;
+import com.reynaldoabreu.libraryapi.exception.QueueFullException;
 import com.reynaldoabreu.libraryapi.model.entity.Book;
 import com.reynaldoabreu.libraryapi.model.entity.Loan;
+import com.reynaldoabreu.libraryapi.model.projection.LoanView;
 import com.reynaldoabreu.libraryapi.service.BookService;
 import com.reynaldoabreu.libraryapi.service.LoanService;
+import com.reynaldoabreu.libraryapi.service.idempotency.IdempotencyRecord;
+import com.reynaldoabreu.libraryapi.service.idempotency.IdempotencyStore;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.BDDMockito;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 
@@ -47,6 +57,9 @@ public class LoanControllerTest {
     @MockBean
     LoanService loanService;
 
+    @MockBean
+    IdempotencyStore idempotencyStore;
+
 
 
     @Test
@@ -76,7 +89,11 @@ public class LoanControllerTest {
                 .accept(MediaType.APPLICATION_JSON)
                 .content(jason);
 
-        mvc.perform(request)
+        MvcResult result = mvc.perform(request)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
                 .andExpect( status().isCreated() )
                 .andExpect(content().string("1"));
 
@@ -133,4 +150,120 @@ public class LoanControllerTest {
 
     }
 
+    @Test
+    @DisplayName("Deve retornar 429 quando a fila de empréstimos estiver cheia")
+    public void queueFullOnCreateLoanTest() throws Exception {
+
+        Book book = Book.builder().id(1L).isbn("123").build();
+        BDDMockito.given(bookService.getBookByIsbn("123")).willReturn(Optional.of(book));
+        BDDMockito.given(loanService.save(Mockito.any(Loan.class))).willThrow(new QueueFullException("Loan queue is full"));
+        String json = new ObjectMapper().writeValueAsString(LoanDto.builder().isbn("123").costumer("Fulano").build());
+
+        mvc.perform(MockMvcRequestBuilders.post(LOAN_API).contentType(MediaType.APPLICATION_JSON).content(json))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "1"))
+                .andExpect(jsonPath("errors[0]").value("Loan queue is full"));
+    }
+
+    @Test
+    @DisplayName("Deve devolver um livro")
+    public void returnBookTest() throws Exception {
+
+        BDDMockito.given(loanService.updateReturned(1L, true)).willReturn(1);
+
+        mvc.perform(MockMvcRequestBuilders.patch(LOAN_API.concat("/1"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"returned\": true}"))
+                .andExpect(status().isNoContent());
+
+        Mockito.verify(loanService).updateReturned(1L, true);
+    }
+
+    @Test
+    @DisplayName("Deve retornar 404 ao tentar devolver um livro inexistente")
+    public void returnInexistentBookTest() throws Exception {
+
+        BDDMockito.given(loanService.updateReturned(Mockito.anyLong(), Mockito.anyBoolean())).willReturn(0);
+
+        mvc.perform(MockMvcRequestBuilders.patch(LOAN_API.concat("/1"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"returned\": true}"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("Deve listar o histórico de empréstimos por cliente e isbn")
+    public void findLoansTest() throws Exception {
+
+        LoanView view = new LoanView(1L, "Fulano", LocalDate.of(2024, 3, 1), false, 2L, "123", "As aventuras");
+        BDDMockito.given(loanService.find(Mockito.eq("Fulano"), Mockito.eq("123"), Mockito.any()))
+                .willReturn(new SliceImpl<>(List.of(view), PageRequest.of(0, 10), true));
+
+        mvc.perform(MockMvcRequestBuilders.get(LOAN_API.concat("?customer=Fulano&isbn=123&page=0&size=10")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", Matchers.hasSize(1)))
+                .andExpect(jsonPath("content[0].id").value(1))
+                .andExpect(jsonPath("content[0].costumer").value("Fulano"))
+                .andExpect(jsonPath("content[0].loanDate").value("2024-03-01"))
+                .andExpect(jsonPath("content[0].isbn").value("123"))
+                .andExpect(jsonPath("content[0].title").value("As aventuras"))
+                .andExpect(jsonPath("last").value(false));
+    }
+
+    @Test
+    @DisplayName("Deve registrar o empréstimo criado sob a Idempotency-Key")
+    public void createLoanWithIdempotencyKeyTest() throws Exception {
+
+        Book book = Book.builder().id(1L).isbn("123").build();
+        BDDMockito.given(bookService.getBookByIsbn("123")).willReturn(Optional.of(book));
+        BDDMockito.given(loanService.save(Mockito.any(Loan.class))).willReturn(Loan.builder().id(7L).book(book).build());
+        BDDMockito.given(idempotencyStore.reserve(Mockito.eq("k1"), Mockito.anyString())).willReturn(Optional.empty());
+
+        MvcResult result = mvc.perform(idempotentLoanRequest("k1", "Fulano")).andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isCreated())
+                .andExpect(content().string("7"));
+
+        Mockito.verify(idempotencyStore).complete("k1", 7L);
+    }
+
+    @Test
+    @DisplayName("Deve devolver o empréstimo original ao repetir a Idempotency-Key sem acessar livro nem banco")
+    public void replayLoanTest() throws Exception {
+
+        // a primeira chamada só serve para descobrir a impressão digital do pedido
+        BDDMockito.given(idempotencyStore.reserve(Mockito.eq("k1"), Mockito.anyString())).willReturn(Optional.empty());
+        BDDMockito.given(bookService.getBookByIsbn("123")).willReturn(Optional.empty());
+        mvc.perform(idempotentLoanRequest("k1", "Fulano"));
+        ArgumentCaptor<String> fingerprint = ArgumentCaptor.forClass(String.class);
+        Mockito.verify(idempotencyStore).reserve(Mockito.eq("k1"), fingerprint.capture());
+        Mockito.verify(idempotencyStore).release("k1");
+        Mockito.reset(bookService, loanService);
+
+        BDDMockito.given(idempotencyStore.reserve(Mockito.eq("k1"), Mockito.anyString()))
+                .willReturn(Optional.of(new IdempotencyRecord(fingerprint.getValue(), 7L)));
+
+        MvcResult result = mvc.perform(idempotentLoanRequest("k1", "Fulano")).andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isCreated())
+                .andExpect(content().string("7"));
+        mvc.perform(idempotentLoanRequest("k1", "Ciclano"))
+                .andExpect(status().isUnprocessableEntity());
+
+        BDDMockito.given(idempotencyStore.reserve(Mockito.eq("k1"), Mockito.anyString()))
+                .willReturn(Optional.of(new IdempotencyRecord(fingerprint.getValue(), null)));
+        mvc.perform(idempotentLoanRequest("k1", "Fulano"))
+                .andExpect(status().isConflict());
+
+        Mockito.verifyNoInteractions(bookService, loanService);
+    }
+
+    private static MockHttpServletRequestBuilder idempotentLoanRequest(String key, String costumer) throws Exception {
+        String json = new ObjectMapper().writeValueAsString(LoanDto.builder().isbn("123").costumer(costumer).build());
+        return MockMvcRequestBuilders.post(LOAN_API)
+                .header("Idempotency-Key", key)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json);
+    }
+
 }
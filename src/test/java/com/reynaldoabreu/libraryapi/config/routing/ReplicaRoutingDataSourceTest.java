@@ -0,0 +1,160 @@
+package com.reynaldoabreu.libraryapi.config.routing;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Primário e réplica são dois bancos H2 em memória distintos, cada um com uma linha que
+ * identifica o nó; a consulta mostra para onde a conexão foi roteada.
+ */
+public class ReplicaRoutingDataSourceTest {
+
+    FlakyDataSource replica;
+    AtomicLong time;
+    ReplicaRoutingDataSource routing;
+    JdbcTemplate jdbc;
+    TransactionTemplate writes;
+    TransactionTemplate reads;
+
+    @BeforeEach
+    public void setUp(){
+        DataSource primary = h2("primary");
+        replica = new FlakyDataSource(h2("replica"));
+        time = new AtomicLong();
+        ReadYourWrites readYourWrites = new ReadYourWrites(Duration.ofSeconds(2), time::get);
+        routing = new ReplicaRoutingDataSource(primary, Map.of("replica-0", replica), readYourWrites);
+
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbc = new JdbcTemplate(dataSource);
+        writes = new TransactionTemplate(transactionManager);
+        reads = new TransactionTemplate(transactionManager);
+        reads.setReadOnly(true);
+    }
+
+    @AfterEach
+    public void tearDown(){
+        ReadYourWrites.clearClient();
+    }
+
+    @Test
+    @DisplayName("Deve enviar transações readOnly à réplica e o resto ao primário")
+    public void routeByReadOnlyTest(){
+
+        assertThat(in(reads)).isEqualTo("replica");
+        assertThat(in(writes)).isEqualTo("primary");
+        assertThat(node()).isEqualTo("primary");
+    }
+
+    @Test
+    @DisplayName("Deve ler do primário enquanto a réplica estiver fora e voltar a ela após a checagem")
+    public void failoverAndFailbackTest(){
+
+        replica.down = true;
+        assertThat(in(reads)).isEqualTo("primary");
+        assertThat(routing.healthyReplicas()).isZero();
+
+        replica.down = false;
+        assertThat(in(reads)).isEqualTo("primary");
+
+        routing.checkHealth(Duration.ofSeconds(1));
+        assertThat(routing.healthyReplicas()).isEqualTo(1);
+        assertThat(in(reads)).isEqualTo("replica");
+    }
+
+    @Test
+    @DisplayName("Deve ler do primário logo após uma escrita do mesmo cliente")
+    public void readYourWritesTest(){
+
+        ReadYourWrites.setClient("cliente-a");
+        writes.execute(status -> jdbc.update("update node set name = name"));
+        assertThat(in(reads)).isEqualTo("primary");
+
+        ReadYourWrites.setClient("cliente-b");
+        assertThat(in(reads)).isEqualTo("replica");
+
+        ReadYourWrites.setClient("cliente-a");
+        time.addAndGet(TimeUnit.SECONDS.toNanos(3));
+        assertThat(in(reads)).isEqualTo("replica");
+    }
+
+    @Test
+    @DisplayName("Não deve fixar o cliente no primário quando a escrita for desfeita")
+    public void rollbackDoesNotStickTest(){
+
+        ReadYourWrites.setClient("cliente-a");
+        writes.execute(status -> {
+            jdbc.update("update node set name = name");
+            status.setRollbackOnly();
+            return null;
+        });
+
+        assertThat(in(reads)).isEqualTo("replica");
+    }
+
+    @Test
+    @DisplayName("Deve ler do primário dentro de PrimaryReads mesmo em transação readOnly")
+    public void primaryReadsTest(){
+
+        assertThat(PrimaryReads.call(() -> in(reads))).isEqualTo("primary");
+        assertThat(in(reads)).isEqualTo("replica");
+
+        // a leitura forçada não conta como escrita do cliente
+        ReadYourWrites.setClient("cliente-a");
+        PrimaryReads.call(() -> in(reads));
+        assertThat(in(reads)).isEqualTo("replica");
+    }
+
+    private String in(TransactionTemplate transaction) {
+        return transaction.execute(status -> node());
+    }
+
+    private String node() {
+        return jdbc.queryForObject("select name from node", String.class);
+    }
+
+    private static DataSource h2(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:routing-" + name + "-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("create table node (name varchar(20))");
+        jdbc.update("insert into node values (?)", name);
+        return dataSource;
+    }
+
+    static class FlakyDataSource extends DelegatingDataSource {
+
+        volatile boolean down;
+
+        FlakyDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (down) {
+                throw new SQLException("Connection refused");
+            }
+            return super.getConnection();
+        }
+    }
+}
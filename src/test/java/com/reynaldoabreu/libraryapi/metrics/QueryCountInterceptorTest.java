@@ -0,0 +1,85 @@
+package com.reynaldoabreu.libraryapi.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.DispatcherType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class QueryCountInterceptorTest {
+
+    SimpleMeterRegistry registry;
+    QueryCountInterceptor interceptor;
+    QueryCountInspector inspector;
+
+    @BeforeEach
+    public void setUp(){
+        this.registry = new SimpleMeterRegistry();
+        this.interceptor = new QueryCountInterceptor(registry, 2);
+        this.inspector = new QueryCountInspector();
+    }
+
+    @Test
+    @DisplayName("Deve registrar a quantidade de comandos SQL da requisição")
+    public void recordQueriesTest(){
+
+        MockHttpServletRequest request = request();
+        interceptor.preHandle(request, new MockHttpServletResponse(), null);
+        inspector.inspect("select 1");
+        interceptor.afterCompletion(request, new MockHttpServletResponse(), null, null);
+
+        assertThat(registry.get("library.http.queries").tag("uri", "/api/books/{id}").summary().totalAmount()).isEqualTo(1);
+        assertThat(registry.find("library.http.queries.excessive").counter()).isNull();
+    }
+
+    @Test
+    @DisplayName("Deve contar requisições que passam do limite de comandos SQL")
+    public void countExcessiveQueriesTest(){
+
+        MockHttpServletRequest request = request();
+        interceptor.preHandle(request, new MockHttpServletResponse(), null);
+        for (int i = 0; i < 3; i++) {
+            inspector.inspect("select 1");
+        }
+        interceptor.afterCompletion(request, new MockHttpServletResponse(), null, null);
+
+        assertThat(registry.get("library.http.queries.excessive").counter().count()).isEqualTo(1);
+        assertThat(QueryCountInspector.count()).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve somar os comandos do primeiro dispatch aos do dispatch assíncrono")
+    public void recordQueriesAcrossAsyncDispatchTest() throws Exception {
+
+        MockHttpServletRequest request = request();
+        interceptor.preHandle(request, new MockHttpServletResponse(), null);
+        inspector.inspect("select 1");
+        inspector.inspect("insert 1");
+        interceptor.afterConcurrentHandlingStarted(request, new MockHttpServletResponse(), null);
+
+        // o dispatch ASYNC roda em outra thread, que começa o contador do zero
+        Thread asyncDispatch = new Thread(() -> {
+            request.setDispatcherType(DispatcherType.ASYNC);
+            interceptor.preHandle(request, new MockHttpServletResponse(), null);
+            inspector.inspect("select 2");
+            interceptor.afterCompletion(request, new MockHttpServletResponse(), null, null);
+        });
+        asyncDispatch.start();
+        asyncDispatch.join();
+
+        assertThat(registry.get("library.http.queries").tag("uri", "/api/books/{id}").summary().totalAmount()).isEqualTo(3);
+        assertThat(registry.get("library.http.queries.excessive").counter().count()).isEqualTo(1);
+        assertThat(QueryCountInspector.count()).isZero();
+    }
+
+    private MockHttpServletRequest request(){
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/books/1");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/books/{id}");
+        return request;
+    }
+}
@@ -1,6 +1,7 @@
 package com.reynaldoabreu.libraryapi.model.repository;
 
 import com.reynaldoabreu.libraryapi.model.entity.Book;
+import com.reynaldoabreu.libraryapi.model.entity.Loan;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -8,10 +9,19 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -75,6 +85,22 @@ public class BookRepositoryTest {
 
     }
 
+    @Test
+    @DisplayName("Deve obter um livro pelo isbn")
+    public void findByIsbnTest(){
+        //cenarrio
+        Book book = createNewBook("123");
+        entityManager.persist(book);
+
+        //execução
+        Optional<Book> foundBook = repository.findByIsbn("123");
+
+        //verificação
+        assertThat(foundBook.isPresent()).isTrue();
+        assertThat(foundBook.get().getId()).isEqualTo(book.getId());
+
+    }
+
     @Test
     @DisplayName("Deve salvar um livro")
     public void saveBookTest(){
@@ -107,6 +133,150 @@ public class BookRepositoryTest {
 
     }
 
+    @Test
+    @DisplayName("Deve percorrer os livros filtrados em ordem de id")
+    public void streamAllTest(){
+        //cenarrio
+        entityManager.persist(createNewBook("123"));
+        entityManager.persist(Book.builder().title("Outro livro").author("Fulano").isbn("456").build());
+        entityManager.persist(createNewBook("789"));
+
+        //execução
+        List<String> all;
+        try (Stream<Book> books = repository.streamAll(null, null, null)) {
+            all = books.map(Book::getIsbn).collect(Collectors.toList());
+        }
+        List<String> filtered;
+        try (Stream<Book> books = repository.streamAll("AVENTURA", null, null)) {
+            filtered = books.map(Book::getIsbn).collect(Collectors.toList());
+        }
+
+        //verificação
+        assertThat(all).containsExactly("123", "456", "789");
+        assertThat(filtered).containsExactly("123", "789");
+
+    }
+
+    @Test
+    @DisplayName("Deve obter a fatia de livros seguinte ao id informado sem contar o total")
+    public void findAfterTest(){
+        //cenarrio
+        Book first = entityManager.persist(createNewBook("123"));
+        Book second = entityManager.persist(createNewBook("456"));
+        Book third = entityManager.persist(createNewBook("789"));
+
+        //execução
+        Slice<Book> slice = repository.findAfter(first.getId(), null, null, null, PageRequest.of(0, 1));
+
+        //verificação
+        assertThat(slice.getContent()).containsExactly(second);
+        assertThat(slice.hasNext()).isTrue();
+        assertThat(repository.findAfter(second.getId(), null, null, null, PageRequest.of(0, 1)).hasNext()).isFalse();
+
+    }
+
+    @Test
+    @DisplayName("Deve tratar % e _ do filtro como texto, como a listagem paginada")
+    public void filterEscapesWildcardsTest(){
+
+        Book percent = entityManager.persist(createNewBook("123").toBuilder().title("100% Java").build());
+        entityManager.persist(createNewBook("456").toBuilder().title("1000 dias").build());
+        Book underscore = entityManager.persist(createNewBook("789").toBuilder().title("snake_case").build());
+        entityManager.persist(createNewBook("012").toBuilder().title("snakeXcase").build());
+        entityManager.flush();
+
+        try (Stream<Book> books = repository.streamAll("100%", null, null)) {
+            assertThat(books).extracting(Book::getId).containsExactly(percent.getId());
+        }
+        assertThat(repository.findAfter(0L, "e_c", null, null, PageRequest.of(0, 10)))
+                .extracting(Book::getId).containsExactly(underscore.getId());
+    }
+
+    @Test
+    @DisplayName("Deve incrementar a versão e rejeitar a gravação de uma cópia desatualizada")
+    public void rejectStaleVersionTest(){
+
+        Book book = entityManager.persistFlushFind(createNewBook("123"));
+        Book stale = book.toBuilder().build();
+        entityManager.detach(book);
+
+        Book current = repository.saveAndFlush(book.toBuilder().title("Novo título").build());
+        assertThat(current.getVersion()).isEqualTo(stale.getVersion() + 1);
+
+        stale.setTitle("Outro título");
+        Assertions.assertThatThrownBy(() -> repository.saveAndFlush(stale))
+                .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+    }
+
+    @Test
+    @DisplayName("Deve deletar um livro pelo id respeitando a versão esperada")
+    public void deleteBookByIdTest(){
+
+        Book book = entityManager.persistFlushFind(createNewBook("123"));
+
+        assertThat(repository.deleteBookById(book.getId(), book.getVersion() + 1)).isZero();
+        assertThat(repository.deleteBookById(book.getId(), book.getVersion())).isEqualTo(1);
+        assertThat(repository.deleteBookById(book.getId(), null)).isZero();
+        assertThat(repository.existsById(book.getId())).isFalse();
+    }
+
+    @Test
+    @DisplayName("Não deve deletar um livro com empréstimos")
+    public void deleteLoanedBookTest(){
+
+        Book book = entityManager.persistFlushFind(createNewBook("123"));
+        entityManager.persistAndFlush(Loan.builder().book(book).costumer("Fulano").loanDate(LocalDate.now()).returned(true).build());
+
+        Assertions.assertThatThrownBy(() -> repository.deleteBookById(book.getId(), null))
+                .isInstanceOf(DataIntegrityViolationException.class)
+                .satisfies(ex -> assertThat(ex.getMessage().toLowerCase()).contains("fk_loan_book"));
+    }
+
+    @Test
+    @DisplayName("Deve atualizar só os campos informados e incrementar a versão")
+    public void updateFieldsTest(){
+
+        Book book = entityManager.persistFlushFind(createNewBook("123"));
+
+        int updated = repository.updateFields(book.getId(), "Novo título", null, book.getVersion(), Book.now());
+        Book found = repository.findById(book.getId()).get();
+
+        assertThat(updated).isEqualTo(1);
+        assertThat(found.getTitle()).isEqualTo("Novo título");
+        assertThat(found.getAuthor()).isEqualTo(book.getAuthor());
+        assertThat(found.getVersion()).isEqualTo(book.getVersion() + 1);
+        assertThat(repository.updateFields(book.getId(), null, "Outro autor", book.getVersion(), Book.now())).isZero();
+        assertThat(repository.updateFields(book.getId(), null, "Outro autor", null, Book.now())).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve marcar criação e alteração e listar as mudanças pela chave (updated_at, id)")
+    public void findChangedAfterTest(){
+
+        Book first = entityManager.persistFlushFind(createNewBook("1"));
+        Book second = entityManager.persistFlushFind(createNewBook("2"));
+        Book third = entityManager.persistFlushFind(createNewBook("3"));
+        assertThat(first.getCreatedAt()).isNotNull().isEqualTo(first.getUpdatedAt());
+
+        Instant t1 = Instant.parse("2030-01-01T00:00:00.000001Z");
+        Instant t2 = t1.plusSeconds(1);
+        repository.updateFields(first.getId(), "A", null, null, t1);
+        repository.updateFields(second.getId(), "B", null, null, t1);
+        repository.updateFields(third.getId(), "C", null, null, t2);
+
+        assertThat(ids(repository.findChangedAfter(t1.minusNanos(1000), 0L, t2, PageRequest.of(0, 10))))
+                .containsExactly(first.getId(), second.getId(), third.getId());
+        assertThat(ids(repository.findChangedAfter(t1, first.getId(), t2, PageRequest.of(0, 10))))
+                .containsExactly(second.getId(), third.getId());
+        assertThat(ids(repository.findChangedAfter(t1.minusNanos(1000), 0L, t1, PageRequest.of(0, 1))))
+                .containsExactly(first.getId());
+        assertThat(repository.findById(first.getId()).get().getCreatedAt()).isEqualTo(first.getCreatedAt());
+    }
+
+    private static List<Long> ids(List<Book> books) {
+        return books.stream().map(Book::getId).collect(Collectors.toList());
+    }
+
     private static Book createNewBook(String isbn) {
         return Book.builder().title("As aventuras").author("arthur").isbn(isbn).build();
     }
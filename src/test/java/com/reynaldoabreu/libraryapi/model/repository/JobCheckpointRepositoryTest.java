@@ -0,0 +1,46 @@
+package com.reynaldoabreu.libraryapi.model.repository;
+
+import com.reynaldoabreu.libraryapi.model.entity.JobCheckpoint;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+public class JobCheckpointRepositoryTest {
+
+    @Autowired
+    JobCheckpointRepository repository;
+
+    @Test
+    @DisplayName("Deve deixar só um nó deter o job até o lease vencer ou ser liberado")
+    public void leaseTest(){
+
+        repository.saveAndFlush(new JobCheckpoint("job", LocalDate.of(1, 1, 1), 0L));
+        Instant now = Instant.now();
+        Instant until = now.plus(Duration.ofMinutes(10));
+
+        assertThat(repository.acquire("job", "a", now, until)).isEqualTo(1);
+        assertThat(repository.acquire("job", "b", now, until)).isZero();
+        assertThat(repository.advance("job", "b", LocalDate.now(), 1L, until)).isZero();
+        assertThat(repository.advance("job", "a", LocalDate.now(), 1L, until)).isEqualTo(1);
+
+        // lease vencido: outro nó assume, e o antigo dono não avança mais
+        assertThat(repository.acquire("job", "b", until.plusSeconds(1), until.plus(Duration.ofMinutes(10)))).isEqualTo(1);
+        assertThat(repository.advance("job", "a", LocalDate.now(), 2L, until)).isZero();
+
+        assertThat(repository.release("job", "b")).isEqualTo(1);
+        assertThat(repository.acquire("job", "a", now, until)).isEqualTo(1);
+    }
+}
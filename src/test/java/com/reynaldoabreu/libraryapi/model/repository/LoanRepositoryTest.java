@@ -0,0 +1,179 @@
+package com.reynaldoabreu.libraryapi.model.repository;
+
+import com.reynaldoabreu.libraryapi.model.entity.Book;
+import com.reynaldoabreu.libraryapi.model.entity.Loan;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import com.reynaldoabreu.libraryapi.model.projection.LoanView;
+import com.reynaldoabreu.libraryapi.model.projection.OverdueLoan;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+public class LoanRepositoryTest {
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    @Autowired
+    LoanRepository repository;
+
+    @Test
+    @DisplayName("Deve salvar um empréstimo")
+    public void saveLoanTest(){
+        //cenario
+        Book book = entityManager.persist(createNewBook("123"));
+
+        //execução
+        Loan savedLoan = repository.saveAndFlush(createNewLoan(book));
+
+        //verificação
+        assertThat(savedLoan.getId()).isNotNull();
+        assertThat(savedLoan.getReturned()).isFalse();
+        assertThat(savedLoan.getActiveBookId()).isEqualTo(book.getId());
+    }
+
+    @Test
+    @DisplayName("Não deve permitir dois empréstimos ativos para o mesmo livro")
+    public void shouldNotSaveTwoActiveLoansForSameBook(){
+        //cenario
+        Book book = entityManager.persist(createNewBook("123"));
+        repository.saveAndFlush(createNewLoan(book));
+
+        //execução
+        Throwable exception = catchThrowable(() -> repository.saveAndFlush(createNewLoan(book)));
+
+        //verificação
+        assertThat(exception).isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    @DisplayName("Deve permitir emprestar novamente um livro devolvido")
+    public void shouldLoanAgainAReturnedBook(){
+        //cenario
+        Book book = entityManager.persist(createNewBook("123"));
+        Loan loan = repository.saveAndFlush(createNewLoan(book));
+        loan.setReturned(true);
+        repository.saveAndFlush(loan);
+
+        //execução
+        Loan newLoan = repository.saveAndFlush(createNewLoan(book));
+
+        //verificação
+        assertThat(newLoan.getId()).isNotNull();
+        assertThat(repository.findById(loan.getId()).get().getActiveBookId()).isNull();
+    }
+
+    @Test
+    @DisplayName("Deve devolver um empréstimo com um único comando liberando o livro")
+    public void updateReturnedTest(){
+        //cenario
+        Book book = entityManager.persist(createNewBook("123"));
+        Loan loan = repository.saveAndFlush(createNewLoan(book));
+
+        //execução
+        int updated = repository.updateReturned(loan.getId(), true);
+
+        //verificação
+        Loan found = repository.findById(loan.getId()).get();
+        assertThat(updated).isEqualTo(1);
+        assertThat(found.getReturned()).isTrue();
+        assertThat(found.getActiveBookId()).isNull();
+        assertThat(repository.updateReturned(-1L, true)).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve listar empréstimos atrasados em aberto a partir da chave informada")
+    public void findOverdueAfterTest(){
+        //cenario
+        LocalDate today = LocalDate.now();
+        Loan first = persistLoan("1", today.minusDays(10), false);
+        Loan second = persistLoan("2", today.minusDays(10), false);
+        persistLoan("3", today.minusDays(9), true);
+        Loan third = persistLoan("4", today.minusDays(5), false);
+        persistLoan("5", today.minusDays(1), false);
+
+        //execução
+        List<OverdueLoan> page = repository.findOverdueAfter(today.minusDays(3), LocalDate.of(1, 1, 1), 0L, PageRequest.of(0, 2));
+        List<OverdueLoan> next = repository.findOverdueAfter(today.minusDays(3), page.get(1).getLoanDate(), page.get(1).getId(), PageRequest.of(0, 2));
+
+        //verificação
+        assertThat(page).extracting(OverdueLoan::getId).containsExactly(first.getId(), second.getId());
+        assertThat(next).extracting(OverdueLoan::getId).containsExactly(third.getId());
+        assertThat(next.get(0).getIsbn()).isEqualTo("4");
+    }
+
+    @Test
+    @DisplayName("Deve marcar o empréstimo reaberto até a varredura de atrasos o reavaliar")
+    public void findReopenedOverdueTest(){
+        //cenario
+        LocalDate today = LocalDate.now();
+        Loan old = persistLoan("1", today.minusDays(10), true);
+        Loan recent = persistLoan("2", today.minusDays(1), true);
+        repository.updateReturned(old.getId(), false);
+        repository.updateReturned(recent.getId(), false);
+
+        //execução
+        List<OverdueLoan> reopened = repository.findReopenedOverdue(today.minusDays(3), today.minusDays(5), Long.MAX_VALUE,
+                PageRequest.of(0, 10));
+        int cleared = repository.clearReopened(List.of(old.getId()));
+
+        //verificação
+        assertThat(reopened).extracting(OverdueLoan::getId).containsExactly(old.getId());
+        assertThat(cleared).isEqualTo(1);
+        assertThat(repository.findReopenedOverdue(today.minusDays(3), today, Long.MAX_VALUE, PageRequest.of(0, 10))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve listar o histórico de empréstimos por cliente, isbn ou livro, do mais recente ao mais antigo")
+    public void findViewsTest(){
+        //cenario
+        LocalDate today = LocalDate.now();
+        Loan old = persistLoan("1", today.minusDays(10), true);
+        Loan recent = entityManager.persist(Loan.builder().book(old.getBook()).costumer("Fulano").loanDate(today).build());
+        entityManager.persist(Loan.builder().book(entityManager.persist(createNewBook("2"))).costumer("Ciclano").loanDate(today).build());
+        entityManager.flush();
+        entityManager.clear();
+
+        //execução
+        Slice<LoanView> byCostumer = repository.findViews("Fulano", null, PageRequest.of(0, 1));
+        Slice<LoanView> byIsbn = repository.findViews(null, "1", PageRequest.of(0, 10));
+        Slice<LoanView> byBook = repository.findViewsByBook(old.getBook().getId(), PageRequest.of(1, 1));
+
+        //verificação
+        assertThat(byCostumer.getContent()).extracting(LoanView::getId).containsExactly(recent.getId());
+        assertThat(byCostumer.hasNext()).isTrue();
+        assertThat(byCostumer.getContent().get(0).getTitle()).isEqualTo("As aventuras");
+        assertThat(byIsbn.getContent()).extracting(LoanView::getId).containsExactly(recent.getId(), old.getId());
+        assertThat(byBook.getContent()).extracting(LoanView::getId).containsExactly(old.getId());
+        assertThat(byBook.hasNext()).isFalse();
+    }
+
+    private Loan persistLoan(String isbn, LocalDate loanDate, boolean returned) {
+        Book book = entityManager.persist(createNewBook(isbn));
+        return entityManager.persist(Loan.builder().book(book).costumer("Fulano").loanDate(loanDate).returned(returned).build());
+    }
+
+    private static Book createNewBook(String isbn) {
+        return Book.builder().title("As aventuras").author("arthur").isbn(isbn).build();
+    }
+
+    private static Loan createNewLoan(Book book) {
+        return Loan.builder().book(book).costumer("Fulano").loanDate(LocalDate.now()).build();
+    }
+}
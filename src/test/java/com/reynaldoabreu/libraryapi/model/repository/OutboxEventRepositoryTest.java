@@ -0,0 +1,54 @@
+package com.reynaldoabreu.libraryapi.model.repository;
+
+import com.reynaldoabreu.libraryapi.model.entity.OutboxEvent;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+public class OutboxEventRepositoryTest {
+
+    @Autowired
+    OutboxEventRepository repository;
+
+    @Test
+    @DisplayName("Deve gravar os eventos em lote com ids contíguos da sequência")
+    public void insertAllTest(){
+
+        //cenario
+        long last = repository.findMaxId();
+        Instant createdAt = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        List<OutboxEvent> events = LongStream.rangeClosed(1, 3)
+                .mapToObj(id -> OutboxEvent.builder().aggregate("book").aggregateId(id).type("created")
+                        .payload("{\"id\":" + id + "}").createdAt(createdAt).build())
+                .collect(Collectors.toList());
+
+        //execução
+        repository.insertAll(events);
+        OutboxEvent single = repository.saveAndFlush(OutboxEvent.builder().aggregate("book").aggregateId(4L)
+                .type("deleted").payload("{}").createdAt(createdAt).build());
+
+        //verificação
+        List<OutboxEvent> saved = repository.findAfter(last, PageRequest.of(0, 10));
+        long first = saved.get(0).getId();
+        assertThat(saved).extracting(OutboxEvent::getId).containsExactly(first, first + 1, first + 2, first + 3);
+        assertThat(saved).extracting(OutboxEvent::getAggregateId).containsExactly(1L, 2L, 3L, 4L);
+        assertThat(saved.get(0).getCreatedAt()).isEqualTo(createdAt);
+        assertThat(single.getId()).isEqualTo(first + 3);
+    }
+}
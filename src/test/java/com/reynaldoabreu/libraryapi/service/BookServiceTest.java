@@ -1,24 +1,41 @@
 package com.reynaldoabreu.libraryapi.service;
 
 import com.reynaldoabreu.libraryapi.exception.BusinessException;
+import com.reynaldoabreu.libraryapi.exception.ConflictException;
 import com.reynaldoabreu.libraryapi.model.entity.Book;
 
 import com.reynaldoabreu.libraryapi.model.repository.BookRepository;
+import com.reynaldoabreu.libraryapi.model.repository.BookTombstoneRepository;
+import com.reynaldoabreu.libraryapi.service.cache.BookCache;
+import com.reynaldoabreu.libraryapi.service.cache.BookCacheProperties;
+import com.reynaldoabreu.libraryapi.service.changes.ChangeStamps;
 import com.reynaldoabreu.libraryapi.service.imp.BookServiceImp;
+import com.reynaldoabreu.libraryapi.service.outbox.EventOutbox;
+import com.reynaldoabreu.libraryapi.service.search.BookSearchIndex;
+import com.reynaldoabreu.libraryapi.service.stats.CatalogStatistics;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.*;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
 
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.AssertionsForClassTypes.catchThrowable;
@@ -32,10 +49,25 @@ public class BookServiceTest {
     @MockBean
     BookRepository repository;
 
+    @MockBean
+    BookTombstoneRepository tombstoneRepository;
+
+    @MockBean
+    CatalogStatistics statistics;
+
+    @MockBean
+    EventOutbox outbox;
+
+    @MockBean
+    ChangeStamps changeStamps;
+
+    @Captor
+    ArgumentCaptor<Collection<Book>> booksCaptor;
+
     @BeforeEach
     public void setUp(){
 
-        this.service = new BookServiceImp(repository);
+        this.service = new BookServiceImp(repository, tombstoneRepository, new BookSearchIndex(), new BookCache(new BookCacheProperties()), statistics, outbox, changeStamps);
 
     }
 
@@ -45,7 +77,7 @@ public class BookServiceTest {
         //cenario
         Book book = createValidBook();
         Mockito.when(repository.existsByIsbn(Mockito.anyString())).thenReturn(false);
-        Mockito.when(repository.save(book)).thenReturn(Book.builder()
+        Mockito.when(repository.saveAndFlush(book)).thenReturn(Book.builder()
                 .id(1L).isbn("123")
                 .author("Fulano")
                 .title("As aventuras")
@@ -59,6 +91,7 @@ public class BookServiceTest {
         assertThat(savedBook.getIsbn()).isEqualTo("123");
         assertThat(savedBook.getTitle()).isEqualTo("As aventuras");
         assertThat(savedBook.getAuthor()).isEqualTo("Fulano");
+        Mockito.verify(outbox).bookCreated(savedBook);
 
     }
 
@@ -67,17 +100,96 @@ public class BookServiceTest {
     public void shouldNotSaveABookWithDuplicateISBN(){
         // cenario
         Book book = createValidBook();
-        Mockito.when(repository.existsByIsbn(Mockito.anyString())).thenReturn(true);
+        Mockito.when(repository.saveAndFlush(book)).thenThrow(new DataIntegrityViolationException("uk_book_isbn"));
+
+        //execução
+        Throwable exception = Assertions.catchThrowable(() -> service.save(book));
+
+        //verificação
+        assertThat(exception)
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("Isbn já cadastrado.");
+        Mockito.verify(outbox, Mockito.never()).bookCreated(Mockito.any(Book.class));
+
+        Mockito.verify(repository, Mockito.never()).existsByIsbn(Mockito.anyString());
+
+    }
+
+    @Test
+    @DisplayName("Deve propagar violações de integridade que não são do isbn")
+    public void shouldRethrowOtherIntegrityViolationsOnSave(){
+        // cenario
+        Book book = createValidBook();
+        DataIntegrityViolationException violation = new DataIntegrityViolationException("NULL not allowed for column \"TITLE\"");
+        Mockito.when(repository.saveAndFlush(book)).thenThrow(violation);
 
         //execução
         Throwable exception = Assertions.catchThrowable(() -> service.save(book));
 
+        //verificação
+        assertThat(exception).isSameAs(violation);
+        Mockito.verify(outbox, Mockito.never()).bookCreated(Mockito.any(Book.class));
+
+    }
+
+    @Test
+    @DisplayName("Deve confirmar na base o isbn já conhecido antes de recusar o livro")
+    public void cachedIsbnConfirmedTest(){
+        // cenario
+        Mockito.when(repository.saveAndFlush(Mockito.any(Book.class)))
+                .thenReturn(Book.builder().id(1L).isbn("123").build());
+        service.save(createValidBook());
+        Mockito.when(repository.existsByIsbn("123")).thenReturn(true);
+
+        //execução
+        Throwable exception = Assertions.catchThrowable(() -> service.save(createValidBook()));
+
         //verificação
         assertThat(exception)
                 .isInstanceOf(BusinessException.class)
                 .hasMessage("Isbn já cadastrado.");
 
-        Mockito.verify(repository, Mockito.never()).save(book);
+        Mockito.verify(repository, Mockito.times(1)).saveAndFlush(Mockito.any(Book.class));
+
+    }
+
+    @Test
+    @DisplayName("Deve salvar o livro cujo isbn ficou no cache depois de apagado em outro nó")
+    public void staleCachedIsbnTest(){
+        // cenario
+        Mockito.when(repository.saveAndFlush(Mockito.any(Book.class)))
+                .thenReturn(Book.builder().id(1L).isbn("123").build())
+                .thenReturn(Book.builder().id(2L).isbn("123").build());
+        service.save(createValidBook());
+        Mockito.when(repository.existsByIsbn("123")).thenReturn(false);
+
+        //execução
+        Book savedBook = service.save(createValidBook());
+
+        //verificação
+        assertThat(savedBook.getId()).isEqualTo(2L);
+        Mockito.verify(repository, Mockito.times(2)).saveAndFlush(Mockito.any(Book.class));
+
+    }
+
+    @Test
+    @DisplayName("Deve salvar em lote apenas os livros com isbn ainda não cadastrado")
+    public void saveAllBooksTest(){
+        //cenario
+        Book newBook = createValidBook();
+        Book existingBook = Book.builder().isbn("456").author("Fulano").title("Outro").build();
+        Book repeatedBook = createValidBook();
+        Mockito.when(repository.findExistingIsbns(Mockito.anyCollection())).thenReturn(Set.of("456"));
+        Mockito.when(repository.saveAllAndFlush(Mockito.anyCollection()))
+                .thenReturn(Arrays.asList(Book.builder().id(1L).isbn("123").build()));
+
+        //execução
+        List<Book> savedBooks = service.saveAll(Arrays.asList(newBook, existingBook, repeatedBook));
+
+        //verificação
+        assertThat(savedBooks).hasSize(1);
+        Mockito.verify(repository).saveAllAndFlush(booksCaptor.capture());
+        assertThat(booksCaptor.getValue()).containsExactly(newBook);
 
     }
 
@@ -103,6 +215,138 @@ public class BookServiceTest {
 
     }
 
+    @Test
+    @DisplayName("Deve obter um livro por Id a partir do cache após a primeira consulta")
+    public void getByIdCachedTest(){
+
+        //cenario
+        Book book = createValidBook();
+        book.setId(1L);
+        Mockito.when(repository.findById(1L)).thenReturn(Optional.of(book));
+
+        //execução
+        service.getById(1L).get().setTitle("alterado fora do cache");
+        Optional<Book> cachedBook = service.getById(1L);
+
+        //verificação
+        assertThat(cachedBook.get().getTitle()).isEqualTo("As aventuras");
+        Mockito.verify(repository, Mockito.times(1)).findById(1L);
+
+    }
+
+    @Test
+    @DisplayName("Deve invalidar o cache ao deletar um livro")
+    public void deleteEvictsCacheTest(){
+
+        //cenario
+        Book book = createValidBook();
+        book.setId(1L);
+        Mockito.when(repository.findById(1L)).thenReturn(Optional.of(book));
+        service.getById(1L);
+
+        //execução
+        service.delete(book);
+        service.getById(1L);
+
+        //verificação
+        Mockito.verify(repository, Mockito.times(2)).findById(1L);
+        Mockito.verify(statistics).bookRemoved();
+
+    }
+
+    @Test
+    @DisplayName("Deve deletar um livro pelo id com um único comando e invalidar o cache")
+    public void deleteByIdTest(){
+
+        //cenario
+        Book book = createValidBook();
+        book.setId(1L);
+        Mockito.when(repository.findById(1L)).thenReturn(Optional.of(book));
+        Mockito.when(repository.deleteBookById(1L, 3L)).thenReturn(1);
+        service.getById(1L);
+
+        //execução
+        int deleted = service.deleteById(1L, 3L);
+        service.getById(1L);
+
+        //verificação
+        Mockito.verify(tombstoneRepository).save(Mockito.argThat(tombstone -> tombstone.getBookId() == 1L));
+        assertThat(deleted).isEqualTo(1);
+        Mockito.verify(repository, Mockito.never()).delete(Mockito.any(Book.class));
+        Mockito.verify(repository, Mockito.times(2)).findById(1L);
+        Mockito.verify(statistics).bookRemoved();
+
+    }
+
+    @Test
+    @DisplayName("Deve lançar conflito ao deletar um livro com empréstimos")
+    public void deleteLoanedBookTest(){
+
+        //cenario
+        Mockito.when(repository.deleteBookById(1L, null)).thenThrow(new DataIntegrityViolationException(
+                "Referential integrity constraint violation: \"FK_LOAN_BOOK: PUBLIC.LOAN FOREIGN KEY(BOOK_ID)\""));
+
+        //execução
+        Throwable exception = Assertions.catchThrowable(() -> service.deleteById(1L, null));
+
+        //verificação
+        assertThat(exception)
+                .isInstanceOf(ConflictException.class)
+                .hasMessage("Livro possui empréstimos.");
+        Mockito.verify(tombstoneRepository, Mockito.never()).save(Mockito.any());
+        Mockito.verify(statistics, Mockito.never()).bookRemoved();
+
+    }
+
+    @Test
+    @DisplayName("Deve atualizar campos de um livro com um único comando e refletir no índice")
+    public void updateFieldsTest(){
+
+        //cenario
+        BookSearchIndex searchIndex = new BookSearchIndex();
+        searchIndex.index(Book.builder().id(1L).title("As aventuras").author("Fulano").build());
+        BookService service = new BookServiceImp(repository, tombstoneRepository, searchIndex, new BookCache(new BookCacheProperties()), statistics, outbox, changeStamps);
+        Mockito.when(repository.updateFields(Mockito.eq(1L), Mockito.eq("Outras histórias"), Mockito.isNull(), Mockito.isNull(),
+                Mockito.any(Instant.class))).thenReturn(1);
+
+        //execução
+        int updated = service.updateFields(1L, "Outras histórias", null, null);
+
+        //verificação
+        assertThat(updated).isEqualTo(1);
+        Mockito.verify(repository, Mockito.never()).findById(Mockito.anyLong());
+        assertThat(searchIndex.search("historias fulano", 10)).containsExactly(1L);
+        assertThat(searchIndex.search("aventuras", 10)).isEmpty();
+
+    }
+
+    @Test
+    @DisplayName("Deve refletir a atualização de campos no índice só depois do commit")
+    public void updateFieldsOnlyAfterCommitTest(){
+
+        //cenario
+        BookSearchIndex searchIndex = new BookSearchIndex();
+        searchIndex.index(Book.builder().id(1L).title("As aventuras").author("Fulano").build());
+        BookService service = new BookServiceImp(repository, tombstoneRepository, searchIndex, new BookCache(new BookCacheProperties()), statistics, outbox, changeStamps);
+        Mockito.when(repository.updateFields(Mockito.eq(1L), Mockito.eq("Outras histórias"), Mockito.isNull(), Mockito.isNull(),
+                Mockito.any(Instant.class))).thenReturn(1);
+
+        //execução
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.updateFields(1L, "Outras histórias", null, null);
+
+            //verificação
+            assertThat(searchIndex.search("aventuras", 10)).containsExactly(1L);
+            TransactionSynchronizationUtils.invokeAfterCommit(TransactionSynchronizationManager.getSynchronizations());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertThat(searchIndex.search("aventuras", 10)).isEmpty();
+        assertThat(searchIndex.search("historias fulano", 10)).containsExactly(1L);
+
+    }
+
     @Test
     @DisplayName("Deve retornar vazio ao obter um livro quando ele não existir na base")
     public void bookNotFoundById(){
@@ -151,7 +395,7 @@ public class BookServiceTest {
 
         org.junit.jupiter.api.Assertions.assertThrows( IllegalArgumentException.class, () -> service.update(book) );
 
-        Mockito.verify( repository, Mockito.never() ).save(book);
+        Mockito.verify( repository, Mockito.never() ).saveAndFlush(book);
 
     }
 
@@ -166,7 +410,7 @@ public class BookServiceTest {
         Book bookUpdate = createValidBook();
         bookUpdate.setId(id);
 
-        Mockito.when(repository.save(updatingBook)).thenReturn(bookUpdate);
+        Mockito.when(repository.saveAndFlush(updatingBook)).thenReturn(bookUpdate);
 
         //execução
         Book book = service.update(updatingBook);
@@ -175,6 +419,7 @@ public class BookServiceTest {
         assertThat(book.getTitle()).isEqualTo(bookUpdate.getTitle());
         assertThat(book.getIsbn()).isEqualTo(bookUpdate.getIsbn());
         assertThat(book.getAuthor()).isEqualTo(bookUpdate.getAuthor());
+        Mockito.verify(statistics).authorsChanged();
 
     }
 
@@ -188,7 +433,7 @@ public class BookServiceTest {
         List<Book> list = Arrays.asList(book);
         Page<Book> page = new PageImpl<Book>(list, pageRequest, 1);
 
-        Mockito.when(repository.findAll(Mockito.any(Example.class), Mockito.any( PageRequest.class)))
+        Mockito.when(repository.findAll(Mockito.<Example<Book>>any(), Mockito.any( PageRequest.class)))
                 .thenReturn(page);
 
         Page<Book> result = service.find(book, pageRequest);
@@ -202,6 +447,61 @@ public class BookServiceTest {
 
 
 
+    @Test
+    @DisplayName("Deve obter um livro pelo isbn")
+    public void getBookByIsbnTest(){
+
+        //cenario
+        String isbn = "123";
+        Book book = createValidBook();
+        book.setId(1L);
+        Mockito.when(repository.findByIsbn(isbn)).thenReturn(Optional.of(book));
+        Mockito.when(repository.findById(1L)).thenReturn(Optional.of(book));
+
+        //execução
+        Optional<Book> foundBook = service.getBookByIsbn(isbn);
+        Optional<Book> cachedBook = service.getBookByIsbn(isbn);
+
+        //verificação
+        assertThat(foundBook).contains(book);
+        assertThat(cachedBook).contains(book);
+        Mockito.verify(repository, Mockito.times(1)).findByIsbn(isbn);
+        Mockito.verify(repository, Mockito.times(1)).findById(1L);
+
+    }
+
+    @Test
+    @DisplayName("Deve retornar vazio ao obter um livro por isbn inexistente")
+    public void bookNotFoundByIsbnTest(){
+
+        Mockito.when(repository.findByIsbn("123")).thenReturn(Optional.empty());
+
+        Optional<Book> book = service.getBookByIsbn("123");
+
+        assertThat(book.isPresent()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve buscar livros pelo índice e retornar na ordem de relevância")
+    public void searchBookTest(){
+
+        //cenario
+        Book byAuthor = Book.builder().id(1L).isbn("1").author("Machado Aventureiro").title("Contos").build();
+        Book byTitle = Book.builder().id(2L).isbn("2").author("Fulano").title("As aventuras").build();
+        Mockito.when(repository.saveAndFlush(Mockito.any(Book.class))).thenReturn(byAuthor, byTitle);
+        service.save(byAuthor);
+        service.save(byTitle);
+        Mockito.when(repository.findAllById(Arrays.asList(2L, 1L)))
+                .thenReturn(new ArrayList<>(Arrays.asList(byAuthor, byTitle)));
+
+        //execução
+        List<Book> result = service.search("aventur", 10);
+
+        //verificação
+        assertThat(result).containsExactly(byTitle, byAuthor);
+
+    }
+
     private static Book createValidBook() {
         return Book.builder().isbn("123").author("Fulano").title("As aventuras").build();
     }
@@ -0,0 +1,144 @@
+package com.reynaldoabreu.libraryapi.service;
+
+import com.reynaldoabreu.libraryapi.exception.BusinessException;
+import com.reynaldoabreu.libraryapi.model.entity.Book;
+import com.reynaldoabreu.libraryapi.model.entity.Loan;
+import com.reynaldoabreu.libraryapi.model.repository.LoanRepository;
+import com.reynaldoabreu.libraryapi.service.imp.LoanServiceImp;
+import com.reynaldoabreu.libraryapi.service.availability.AvailabilityIndex;
+import com.reynaldoabreu.libraryapi.service.outbox.EventOutbox;
+import com.reynaldoabreu.libraryapi.service.stats.CatalogStatistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class LoanServiceTest {
+
+    LoanService service;
+
+    @MockBean
+    LoanRepository repository;
+
+    @MockBean
+    CatalogStatistics statistics;
+
+    @MockBean
+    AvailabilityIndex availability;
+
+    @MockBean
+    EventOutbox outbox;
+
+    @BeforeEach
+    public void setUp(){
+        this.service = new LoanServiceImp(repository, statistics, availability, outbox);
+    }
+
+    @Test
+    @DisplayName("Deve salvar um empréstimo")
+    public void saveLoanTest(){
+        //cenario
+        Loan loan = createLoan();
+        Loan savedLoan = createLoan();
+        savedLoan.setId(1L);
+        Mockito.when(repository.saveAndFlush(loan)).thenReturn(savedLoan);
+
+        //execução
+        Loan result = service.save(loan);
+
+        //verificação
+        assertThat(result.getId()).isEqualTo(1L);
+        assertThat(loan.getReturned()).isFalse();
+        Mockito.verify(outbox).loanCreated(savedLoan);
+    }
+
+    @Test
+    @DisplayName("Deve lançar erro de negócio ao emprestar um livro já emprestado")
+    public void loanedBookSaveTest(){
+        //cenario
+        Loan loan = createLoan();
+        Mockito.when(repository.saveAndFlush(loan))
+                .thenThrow(new DataIntegrityViolationException("Unique index or primary key violation: UK_LOAN_ACTIVE_BOOK"));
+
+        //execução
+        Throwable exception = catchThrowable(() -> service.save(loan));
+
+        //verificação
+        assertThat(exception)
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("Book already loaned");
+    }
+
+    @Test
+    @DisplayName("Deve ocorrer erro ao tentar emprestar um livro sem id")
+    public void saveLoanWithoutBookTest(){
+
+        Loan loan = Loan.builder().book(new Book()).build();
+
+        org.junit.jupiter.api.Assertions.assertThrows(IllegalArgumentException.class, () -> service.save(loan));
+
+        Mockito.verify(repository, Mockito.never()).saveAndFlush(loan);
+    }
+
+    @Test
+    @DisplayName("Deve lançar erro de negócio ao reabrir um empréstimo de livro emprestado novamente")
+    public void reopenLoanedBookTest(){
+        //cenario
+        Mockito.when(repository.updateReturned(1L, false))
+                .thenThrow(new DataIntegrityViolationException("Unique index or primary key violation: UK_LOAN_ACTIVE_BOOK"));
+
+        //execução
+        Throwable exception = catchThrowable(() -> service.updateReturned(1L, false));
+
+        //verificação
+        assertThat(exception).isInstanceOf(BusinessException.class).hasMessage("Book already loaned");
+    }
+
+    @Test
+    @DisplayName("Deve tratar como sucesso a devolução de um empréstimo já devolvido sem alterar as estatísticas")
+    public void returnAlreadyReturnedLoanTest(){
+        //cenario
+        Mockito.when(repository.updateReturned(1L, true)).thenReturn(0);
+        Mockito.when(repository.existsById(1L)).thenReturn(true);
+
+        //execução
+        int updated = service.updateReturned(1L, true);
+
+        //verificação
+        assertThat(updated).isEqualTo(1);
+        Mockito.verify(statistics, Mockito.never()).loanReturned();
+    }
+
+    @Test
+    @DisplayName("Deve descontar o empréstimo ativo das estatísticas e liberar o livro ao devolver")
+    public void returnLoanUpdatesStatisticsTest(){
+        //cenario
+        Mockito.when(repository.updateReturned(1L, true)).thenReturn(1);
+        Mockito.when(repository.findBookIdById(1L)).thenReturn(Optional.of(5L));
+
+        //execução
+        service.updateReturned(1L, true);
+
+        //verificação
+        Mockito.verify(statistics).loanReturned();
+        Mockito.verify(availability).returned(5L);
+    }
+
+    private static Loan createLoan() {
+        Book book = Book.builder().id(1L).isbn("123").build();
+        return Loan.builder().book(book).costumer("Fulano").loanDate(LocalDate.now()).build();
+    }
+}
@@ -0,0 +1,157 @@
+package com.reynaldoabreu.libraryapi.service.availability;
+
+import com.reynaldoabreu.libraryapi.model.repository.LoanRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class AvailabilityIndexTest {
+
+    @MockBean
+    LoanRepository loanRepository;
+
+    @MockBean
+    PlatformTransactionManager transactionManager;
+
+    AvailabilityIndex index;
+
+    @BeforeEach
+    public void setUp(){
+        this.index = new AvailabilityIndex(loanRepository, transactionManager);
+    }
+
+    @Test
+    @DisplayName("Deve reconstruir o índice a partir dos empréstimos ativos")
+    public void rebuildTest(){
+        //cenario
+        Mockito.when(loanRepository.streamActiveBookIds()).thenReturn(Stream.of(1L, 70_000L, 5_000_000_000L));
+
+        //execução
+        index.rebuild();
+
+        //verificação
+        assertThat(index.isAvailable(1L)).isFalse();
+        assertThat(index.isAvailable(70_000L)).isFalse();
+        assertThat(index.isAvailable(5_000_000_000L)).isFalse();
+        assertThat(index.isAvailable(2L)).isTrue();
+        assertThat(index.isAvailable(69_999L)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Deve marcar e liberar livros a cada empréstimo e devolução")
+    public void lendAndReturnTest(){
+
+        index.lent(42L);
+        assertThat(index.isAvailable(42L)).isFalse();
+        assertThat(index.isAvailable(43L)).isTrue();
+
+        index.returned(42L);
+        assertThat(index.isAvailable(42L)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Não deve liberar um livro por uma devolução que chega depois do empréstimo seguinte")
+    public void staleReturnTest(){
+        //cenario: o livro foi devolvido e emprestado de novo, mas a devolução chega por último
+        Mockito.when(loanRepository.existsByActiveBookId(42L)).thenReturn(true);
+        index.lent(42L);
+
+        //execução
+        index.returned(42L);
+
+        //verificação
+        assertThat(index.isAvailable(42L)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve manter as mudanças que chegam durante a reconstrução")
+    public void changesDuringRebuildTest(){
+        //cenario: uma devolução e um empréstimo confirmados enquanto a consulta é lida
+        Mockito.when(loanRepository.streamActiveBookIds()).thenReturn(Stream.of(1L, 2L).peek(id -> {
+            if (id == 2L) {
+                index.returned(1L);
+                index.lent(3L);
+            }
+        }));
+
+        //execução
+        index.rebuild();
+
+        //verificação
+        assertThat(index.isAvailable(1L)).isTrue();
+        assertThat(index.isAvailable(2L)).isFalse();
+        assertThat(index.isAvailable(3L)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Não deve reordenar mudanças que chegam enquanto o índice é trocado")
+    public void changesRacingTheSwapTest() throws Exception {
+        int books = 200_000;
+        // sem registrar as chamadas: cada devolução relê o empréstimo ativo
+        LoanRepository loanRepository = Mockito.mock(LoanRepository.class, Mockito.withSettings().stubOnly());
+        index = new AvailabilityIndex(loanRepository, new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                return new SimpleTransactionStatus();
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+            }
+        });
+
+        for (int round = 0; round < 5; round++) {
+            //cenario: empréstimos confirmados durante a leitura vão para o diário; as devoluções
+            //chegam de outra thread enquanto o diário é reaplicado e o índice é trocado
+            CountDownLatch journaled = new CountDownLatch(1);
+            Thread returns = new Thread(() -> {
+                try {
+                    journaled.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (long id = books; id >= 1; id--) {
+                    index.returned(id);
+                }
+            });
+            returns.start();
+            Mockito.when(loanRepository.streamActiveBookIds()).thenAnswer(invocation -> {
+                for (long id = 1; id <= books; id++) {
+                    index.lent(id);
+                }
+                journaled.countDown();
+                return Stream.<Long>empty();
+            });
+
+            //execução
+            index.rebuild();
+            returns.join();
+
+            //verificação
+            for (long id = 1; id <= books; id++) {
+                assertThat(index.isAvailable(id)).isTrue();
+            }
+        }
+    }
+}
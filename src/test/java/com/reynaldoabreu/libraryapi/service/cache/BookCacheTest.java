@@ -0,0 +1,88 @@
+package com.reynaldoabreu.libraryapi.service.cache;
+
+import com.reynaldoabreu.libraryapi.model.entity.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BookCacheTest {
+
+    BookCache cache;
+
+    @BeforeEach
+    public void setUp(){
+        this.cache = new BookCache(new BookCacheProperties());
+    }
+
+    @Test
+    @DisplayName("Deve carregar uma única vez e devolver cópias")
+    public void loadOnceAndReturnCopiesTest(){
+        AtomicInteger loads = new AtomicInteger();
+
+        Optional<Book> first = cache.get(1L, id -> {
+            loads.incrementAndGet();
+            return Optional.of(Book.builder().id(id).title("Dom Casmurro").build());
+        });
+        first.get().setTitle("alterado");
+        Optional<Book> second = cache.get(1L, id -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        });
+
+        assertThat(loads).hasValue(1);
+        assertThat(second).get().extracting(Book::getTitle).isEqualTo("Dom Casmurro");
+    }
+
+    @Test
+    @DisplayName("Não deve guardar livros inexistentes")
+    public void notCacheAbsentBooksTest(){
+
+        assertThat(cache.get(1L, id -> Optional.empty())).isEmpty();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Uma remoção concorrente com a carga deve prevalecer sobre o valor carregado")
+    public void evictDuringLoadWinsTest() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Thread reader = new Thread(() -> cache.get(1L, id -> {
+            loading.countDown();
+            await(release);
+            return Optional.of(Book.builder().id(id).title("versão antiga").build());
+        }));
+        reader.start();
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+
+        Thread writer = new Thread(() -> cache.evict(1L));
+        writer.start();
+        // espera o evict terminar ou ficar bloqueado pela carga em andamento
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (writer.getState() == Thread.State.NEW || writer.getState() == Thread.State.RUNNABLE) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+        release.countDown();
+        reader.join(5_000);
+        writer.join(5_000);
+
+        Optional<Book> reloaded = cache.get(1L, id -> Optional.of(Book.builder().id(id).title("versão nova").build()));
+        assertThat(reloaded).get().extracting(Book::getTitle).isEqualTo("versão nova");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
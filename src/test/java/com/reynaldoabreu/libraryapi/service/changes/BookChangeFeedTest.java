@@ -0,0 +1,101 @@
+package com.reynaldoabreu.libraryapi.service.changes;
+
+import com.reynaldoabreu.libraryapi.model.entity.Book;
+import com.reynaldoabreu.libraryapi.model.entity.BookTombstone;
+import com.reynaldoabreu.libraryapi.model.repository.BookRepository;
+import com.reynaldoabreu.libraryapi.model.repository.BookTombstoneRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class BookChangeFeedTest {
+
+    static final Instant NOW = Instant.parse("2030-01-01T00:01:00Z");
+    static final Instant UNTIL = NOW.minusSeconds(5);
+    static final Instant T1 = Instant.parse("2030-01-01T00:00:01Z");
+    static final Instant T2 = T1.plusSeconds(1);
+
+    @MockBean
+    BookRepository bookRepository;
+
+    @MockBean
+    BookTombstoneRepository tombstoneRepository;
+
+    BookChangeFeed feed;
+
+    @BeforeEach
+    public void setUp(){
+        BookChangesProperties properties = new BookChangesProperties();
+        properties.setSettleLag(Duration.ofSeconds(5));
+        this.feed = new BookChangeFeed(bookRepository, tombstoneRepository, properties, () -> NOW);
+    }
+
+    @Test
+    @DisplayName("Deve intercalar alterações e remoções em ordem e devolver a última como marca d'água")
+    public void mergeChangesTest(){
+        //cenario
+        Mockito.when(bookRepository.findChangedAfter(Mockito.eq(Instant.EPOCH), Mockito.eq(0L), Mockito.eq(UNTIL),
+                Mockito.any(Pageable.class))).thenReturn(List.of(book(5L, T1), book(2L, T2)));
+        Mockito.when(tombstoneRepository.findDeletedAfter(Mockito.eq(Instant.EPOCH), Mockito.eq(0L), Mockito.eq(UNTIL),
+                Mockito.any(Pageable.class))).thenReturn(List.of(new BookTombstone(9L, T1), new BookTombstone(1L, T2)));
+
+        //execução
+        BookChangePage page = feed.changesAfter(Watermark.START, 3);
+
+        //verificação
+        assertThat(page.getChanges().stream().map(BookChange::getId).collect(Collectors.toList()))
+                .containsExactly(5L, 9L, 1L);
+        assertThat(page.getChanges().get(1).isDeleted()).isTrue();
+        assertThat(page.isHasNext()).isTrue();
+        assertThat(page.getNext()).isEqualTo(new Watermark(T2, 1L));
+    }
+
+    @Test
+    @DisplayName("Deve avançar a marca d'água até o instante assentado quando não houver mais mudanças")
+    public void lastPageTest(){
+        //cenario
+        Watermark since = new Watermark(T1, 5L);
+        Mockito.when(bookRepository.findChangedAfter(Mockito.eq(T1), Mockito.eq(5L), Mockito.eq(UNTIL),
+                Mockito.any(Pageable.class))).thenReturn(List.of(book(2L, T2)));
+
+        //execução
+        BookChangePage page = feed.changesAfter(since, 10);
+
+        //verificação
+        assertThat(page.getChanges()).hasSize(1);
+        assertThat(page.isHasNext()).isFalse();
+        assertThat(page.getNext()).isEqualTo(new Watermark(UNTIL, Long.MAX_VALUE));
+    }
+
+    @Test
+    @DisplayName("Não deve recuar a marca d'água quando ela estiver à frente do instante assentado")
+    public void watermarkAheadTest(){
+
+        Watermark since = new Watermark(NOW, 3L);
+
+        BookChangePage page = feed.changesAfter(since, 10);
+
+        assertThat(page.getChanges()).isEmpty();
+        assertThat(page.getNext()).isEqualTo(since);
+    }
+
+    private static Book book(Long id, Instant updatedAt) {
+        return Book.builder().id(id).title("T").author("A").isbn(String.valueOf(id)).version(0L)
+                .createdAt(T1).updatedAt(updatedAt).build();
+    }
+}
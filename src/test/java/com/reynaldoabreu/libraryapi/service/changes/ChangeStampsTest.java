@@ -0,0 +1,98 @@
+package com.reynaldoabreu.libraryapi.service.changes;
+
+import com.reynaldoabreu.libraryapi.model.entity.Book;
+import com.reynaldoabreu.libraryapi.model.entity.BookTombstone;
+import com.reynaldoabreu.libraryapi.model.repository.BookRepository;
+import com.reynaldoabreu.libraryapi.model.repository.BookTombstoneRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// sem a transação do teste: a remarcação acontece no commit
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ChangeStampsTest {
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    BookTombstoneRepository tombstoneRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    AtomicReference<Instant> clock = new AtomicReference<>();
+    ChangeStamps stamps;
+    TransactionTemplate transaction;
+
+    @BeforeEach
+    public void setUp(){
+        BookChangesProperties properties = new BookChangesProperties();
+        properties.setSettleLag(Duration.ofSeconds(5));
+        this.stamps = new ChangeStamps(bookRepository, tombstoneRepository, properties, clock::get);
+        this.transaction = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    public void tearDown(){
+        tombstoneRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+    }
+
+    @Test
+    @DisplayName("Deve remarcar antes do commit as mudanças de uma transação que passou de metade do settle-lag")
+    public void restampLongTransactionTest(){
+        //cenario
+        Instant commitAt = Book.now().plusSeconds(10);
+
+        //execução
+        Book book = transaction.execute(status -> {
+            Book saved = bookRepository.saveAndFlush(Book.builder().title("As aventuras").author("Fulano").isbn("123").build());
+            stamps.booksStamped(List.of(saved.getId()), saved.getUpdatedAt());
+            tombstoneRepository.save(new BookTombstone(99L, saved.getUpdatedAt()));
+            stamps.bookDeleted(99L, saved.getUpdatedAt());
+            clock.set(commitAt);
+            return saved;
+        });
+
+        //verificação
+        assertThat(bookRepository.findById(book.getId()).get().getUpdatedAt()).isEqualTo(commitAt);
+        assertThat(bookRepository.findById(book.getId()).get().getVersion()).isEqualTo(book.getVersion());
+        assertThat(tombstoneRepository.findById(99L).get().getDeletedAt()).isEqualTo(commitAt);
+    }
+
+    @Test
+    @DisplayName("Não deve remarcar as mudanças de uma transação curta")
+    public void shortTransactionTest(){
+        //execução
+        Book book = transaction.execute(status -> {
+            Book saved = bookRepository.saveAndFlush(Book.builder().title("As aventuras").author("Fulano").isbn("123").build());
+            stamps.booksStamped(List.of(saved.getId()), saved.getUpdatedAt());
+            clock.set(saved.getUpdatedAt().plusSeconds(1));
+            return saved;
+        });
+
+        //verificação
+        assertThat(bookRepository.findById(book.getId()).get().getUpdatedAt()).isEqualTo(book.getUpdatedAt());
+    }
+}
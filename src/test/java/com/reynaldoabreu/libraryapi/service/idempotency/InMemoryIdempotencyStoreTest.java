@@ -0,0 +1,63 @@
+package com.reynaldoabreu.libraryapi.service.idempotency;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InMemoryIdempotencyStoreTest {
+
+    IdempotencyStore store;
+
+    @BeforeEach
+    public void setUp(){
+        this.store = new InMemoryIdempotencyStore(new IdempotencyProperties());
+    }
+
+    @Test
+    @DisplayName("Deve reservar uma chave nova e devolver o resultado nas repetições")
+    public void reserveAndCompleteTest(){
+
+        assertThat(store.reserve("k1", "fp")).isEmpty();
+        assertThat(store.reserve("k1", "fp")).get().extracting(IdempotencyRecord::isCompleted).isEqualTo(false);
+
+        store.complete("k1", 10L);
+
+        assertThat(store.reserve("k1", "fp")).get().extracting(IdempotencyRecord::getResultId).isEqualTo(10L);
+    }
+
+    @Test
+    @DisplayName("Deve concluir as chaves do lote só depois do commit")
+    public void completeAllTest(){
+
+        store.reserve("k1", "fp");
+        store.reserve("k2", "fp");
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            store.completeAll(Map.of("k1", 10L, "k2", 11L));
+            assertThat(store.reserve("k1", "fp")).get().extracting(IdempotencyRecord::isCompleted).isEqualTo(false);
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(store.reserve("k1", "fp")).get().extracting(IdempotencyRecord::getResultId).isEqualTo(10L);
+        assertThat(store.reserve("k2", "fp")).get().extracting(IdempotencyRecord::getResultId).isEqualTo(11L);
+    }
+
+    @Test
+    @DisplayName("Deve liberar a chave de uma operação que falhou")
+    public void releaseTest(){
+
+        store.reserve("k1", "fp");
+        store.release("k1");
+
+        assertThat(store.reserve("k1", "fp")).isEmpty();
+    }
+}
@@ -0,0 +1,141 @@
+package com.reynaldoabreu.libraryapi.service.idempotency;
+
+import com.reynaldoabreu.libraryapi.model.entity.IdempotencyKey;
+import com.reynaldoabreu.libraryapi.model.repository.IdempotencyKeyRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest(properties = "library.idempotency.store=jpa")
+@Import({JpaIdempotencyStore.class, IdempotencyProperties.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class JpaIdempotencyStoreTest {
+
+    @Autowired
+    JpaIdempotencyStore store;
+
+    @Autowired
+    IdempotencyKeyRepository repository;
+
+    @AfterEach
+    public void tearDown(){
+        repository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Deve reservar a chave na tabela e devolver o resultado concluído")
+    public void reserveAndCompleteTest(){
+
+        assertThat(store.reserve("k1", "fp")).isEmpty();
+        assertThat(store.reserve("k1", "fp")).get().extracting(IdempotencyRecord::isCompleted).isEqualTo(false);
+
+        store.complete("k1", 10L);
+
+        assertThat(store.reserve("k1", "fp")).get().extracting(IdempotencyRecord::getResultId).isEqualTo(10L);
+        assertThat(repository.findById("k1")).get().extracting(IdempotencyKey::getResultId).isEqualTo(10L);
+    }
+
+    @Test
+    @DisplayName("Deve concluir várias chaves de uma vez")
+    public void completeAllTest(){
+
+        store.reserve("k1", "fp");
+        store.reserve("k2", "fp");
+
+        store.completeAll(Map.of("k1", 10L, "k2", 11L));
+
+        assertThat(repository.findById("k1")).get().extracting(IdempotencyKey::getResultId).isEqualTo(10L);
+        assertThat(repository.findById("k2")).get().extracting(IdempotencyKey::getResultId).isEqualTo(11L);
+    }
+
+    @Test
+    @DisplayName("Deve liberar só chaves em andamento")
+    public void releaseTest(){
+
+        store.reserve("k1", "fp");
+        store.release("k1");
+        assertThat(repository.existsById("k1")).isFalse();
+
+        store.reserve("k2", "fp");
+        store.complete("k2", 1L);
+        store.release("k2");
+        assertThat(repository.existsById("k2")).isTrue();
+    }
+
+    @Test
+    @DisplayName("Deve tratar chaves vencidas como livres e expurgá-las")
+    public void expiredKeysTest(){
+
+        Instant expired = Instant.now().minus(Duration.ofDays(2));
+        repository.saveAndFlush(IdempotencyKey.builder().key("old").fingerprint("fp").resultId(1L).createdAt(expired).build());
+        repository.saveAndFlush(IdempotencyKey.builder().key("older").fingerprint("fp").resultId(2L).createdAt(expired).build());
+
+        assertThat(store.reserve("old", "other")).isEmpty();
+
+        store.purgeExpired();
+
+        assertThat(repository.existsById("old")).isTrue();
+        assertThat(repository.existsById("older")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve deixar só um nó assumir uma chave vencida")
+    public void takeOverExpiredKeyOnceTest(){
+
+        Instant expired = Instant.now().minus(Duration.ofDays(2));
+        repository.saveAndFlush(IdempotencyKey.builder().key("old").fingerprint("fp").resultId(1L).createdAt(expired).build());
+        Instant now = Instant.now();
+        Instant cutoff = now.minus(Duration.ofDays(1));
+        Instant leaseCutoff = now.minus(Duration.ofSeconds(30));
+
+        assertThat(repository.takeOver("old", "first", now, cutoff, leaseCutoff)).isEqualTo(1);
+        assertThat(repository.takeOver("old", "second", now, cutoff, leaseCutoff)).isZero();
+
+        // a reserva de quem perdeu enxerga a do vencedor, ainda em andamento
+        assertThat(store.reserve("old", "second")).get()
+                .extracting(IdempotencyRecord::getFingerprint, IdempotencyRecord::isCompleted)
+                .containsExactly("first", false);
+    }
+
+    @Test
+    @DisplayName("Deve assumir uma reserva em andamento cujo lease venceu")
+    public void takeOverExpiredLeaseTest(){
+
+        // o nó que reservou caiu há um minuto, sem concluir nem liberar
+        Instant abandoned = Instant.now().minus(Duration.ofMinutes(1));
+        repository.saveAndFlush(IdempotencyKey.builder().key("stuck").fingerprint("fp").createdAt(abandoned).build());
+        repository.saveAndFlush(IdempotencyKey.builder().key("done").fingerprint("fp").resultId(1L).createdAt(abandoned).build());
+
+        assertThat(store.reserve("stuck", "fp")).isEmpty();
+        assertThat(repository.findById("stuck")).get()
+                .extracting(IdempotencyKey::getCreatedAt).matches(createdAt -> createdAt.isAfter(abandoned));
+
+        // o lease não vale para registros concluídos, que duram o ttl inteiro
+        assertThat(store.reserve("done", "fp")).get().extracting(IdempotencyRecord::getResultId).isEqualTo(1L);
+    }
+
+    @Test
+    @DisplayName("Deve manter uma reserva em andamento dentro do lease")
+    public void activeLeaseTest(){
+
+        assertThat(store.reserve("k1", "fp")).isEmpty();
+
+        assertThat(store.reserve("k1", "fp")).get().extracting(IdempotencyRecord::isCompleted).isEqualTo(false);
+    }
+}
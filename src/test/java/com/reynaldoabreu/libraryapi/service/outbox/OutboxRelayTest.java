@@ -0,0 +1,201 @@
+package com.reynaldoabreu.libraryapi.service.outbox;
+
+import com.reynaldoabreu.libraryapi.model.entity.OutboxEvent;
+import com.reynaldoabreu.libraryapi.model.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class OutboxRelayTest {
+
+    @MockBean
+    OutboxEventRepository repository;
+
+    AtomicLong clock = new AtomicLong();
+
+    OutboxProperties properties = new OutboxProperties();
+
+    OutboxRelay relay;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp(){
+        properties.setGapTimeout(Duration.ofSeconds(5));
+        ObjectProvider<OutboxListener> listeners = Mockito.mock(ObjectProvider.class);
+        Mockito.when(listeners.orderedStream()).thenAnswer(invocation -> Stream.empty());
+        this.relay = new OutboxRelay(repository, properties, listeners, clock::get);
+        Mockito.when(repository.findMaxId()).thenReturn(10L);
+        relay.start();
+    }
+
+    @Test
+    @DisplayName("Deve liberar os eventos contíguos em ordem e avançar a marca d'água")
+    public void pollContiguousTest(){
+        //cenario
+        Mockito.when(repository.findAfter(Mockito.eq(10L), Mockito.any(Pageable.class))).thenReturn(events(11, 12, 13));
+
+        //execução
+        List<OutboxEvent> released = relay.poll();
+
+        //verificação
+        assertThat(ids(released)).containsExactly(11L, 12L, 13L);
+        assertThat(relay.watermark()).isEqualTo(13L);
+    }
+
+    @Test
+    @DisplayName("Deve esperar por um id ainda não confirmado e seguir sem ele após o tempo limite")
+    public void pollGapTest(){
+        //cenario
+        Mockito.when(repository.findAfter(Mockito.eq(10L), Mockito.any(Pageable.class))).thenReturn(events(11, 13));
+        Mockito.when(repository.findAfter(Mockito.eq(11L), Mockito.any(Pageable.class))).thenReturn(events(13, 14));
+
+        //execução e verificação
+        assertThat(ids(relay.poll())).containsExactly(11L);
+        clock.addAndGet(Duration.ofSeconds(4).toNanos());
+        assertThat(relay.poll()).isEmpty();
+        assertThat(relay.watermark()).isEqualTo(11L);
+
+        clock.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertThat(ids(relay.poll())).containsExactly(13L, 14L);
+        assertThat(relay.watermark()).isEqualTo(14L);
+    }
+
+    @Test
+    @DisplayName("Deve liberar fora de ordem um id pulado que confirma depois do tempo limite")
+    public void lateArrivalTest(){
+        //cenario: 12 é pulado e só confirma depois
+        Mockito.when(repository.findAfter(Mockito.eq(11L), Mockito.any(Pageable.class))).thenReturn(events(13));
+        Mockito.when(repository.findAfter(Mockito.eq(10L), Mockito.any(Pageable.class))).thenReturn(events(11));
+        Mockito.when(repository.findByIds(List.of(12L))).thenReturn(List.of()).thenReturn(events(12));
+        relay.poll();
+        relay.poll();
+        clock.addAndGet(Duration.ofSeconds(5).toNanos());
+        relay.poll();
+
+        //execução e verificação
+        assertThat(relay.pollLate()).isEmpty();
+        assertThat(ids(relay.pollLate())).containsExactly(12L);
+        assertThat(relay.pollLate()).isEmpty();
+        assertThat(ids(relay.eventsAfter(11L, 10))).containsExactly(12L, 13L);
+        Mockito.verify(repository, Mockito.times(2)).findByIds(Mockito.anyCollection());
+    }
+
+    @Test
+    @DisplayName("Deve desistir de um id pulado depois da janela de atraso")
+    public void lateArrivalWindowTest(){
+        //cenario
+        properties.setLateArrivalWindow(Duration.ofMinutes(1));
+        Mockito.when(repository.findAfter(Mockito.eq(10L), Mockito.any(Pageable.class))).thenReturn(events(12));
+        relay.poll();
+        clock.addAndGet(Duration.ofSeconds(5).toNanos());
+        relay.poll();
+
+        //execução
+        clock.addAndGet(Duration.ofMinutes(1).toNanos());
+        List<OutboxEvent> late = relay.pollLate();
+
+        //verificação
+        assertThat(late).isEmpty();
+        Mockito.verify(repository, Mockito.never()).findByIds(Mockito.anyCollection());
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        relay.bindTo(registry);
+        assertThat(registry.get("library.events.gaps").tag("outcome", "skipped").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("library.events.gaps").tag("outcome", "lost").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve liberar o id que faltava quando a transação confirma dentro do tempo limite")
+    public void pollGapFilledTest(){
+        //cenario
+        Mockito.when(repository.findAfter(Mockito.eq(10L), Mockito.any(Pageable.class)))
+                .thenReturn(events(12)).thenReturn(events(11, 12));
+
+        //execução e verificação
+        assertThat(relay.poll()).isEmpty();
+        assertThat(ids(relay.poll())).containsExactly(11L, 12L);
+    }
+
+    @Test
+    @DisplayName("Não deve voltar a consultar a outbox depois de parado, nem por uma rodada em andamento")
+    public void stopDuringPollTest(){
+        //cenario: o contexto fecha enquanto a consulta da rodada está no banco
+        Mockito.when(repository.findAfter(Mockito.eq(10L), Mockito.any(Pageable.class))).thenAnswer(invocation -> {
+            relay.stop();
+            return events(11, 12);
+        });
+
+        //execução
+        List<OutboxEvent> released = relay.poll();
+        relay.relay();
+
+        //verificação
+        assertThat(released).isEmpty();
+        assertThat(relay.watermark()).isEqualTo(10L);
+        Mockito.verify(repository, Mockito.times(1)).findAfter(Mockito.anyLong(), Mockito.any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Deve servir a retomada da memória e, antes dela, da tabela até a marca d'água")
+    public void eventsAfterTest(){
+        //cenario
+        Mockito.when(repository.findAfter(Mockito.eq(10L), Mockito.any(Pageable.class))).thenReturn(events(11, 12, 13));
+        Mockito.when(repository.findRange(Mockito.eq(5L), Mockito.eq(13L), Mockito.any(Pageable.class)))
+                .thenReturn(events(6, 7));
+        relay.poll();
+
+        //execução e verificação
+        assertThat(ids(relay.eventsAfter(11L, 10))).containsExactly(12L, 13L);
+        assertThat(ids(relay.eventsAfter(10L, 2))).containsExactly(11L, 12L);
+        assertThat(relay.eventsAfter(13L, 10)).isEmpty();
+        assertThat(ids(relay.eventsAfter(5L, 2))).containsExactly(6L, 7L);
+        Mockito.verify(repository, Mockito.times(1)).findRange(Mockito.anyLong(), Mockito.anyLong(), Mockito.any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Deve ir à tabela para o trecho que saiu da memória")
+    public void eventsAfterTrimmedTest(){
+        //cenario
+        properties.setRecentEvents(2);
+        Mockito.when(repository.findAfter(Mockito.eq(10L), Mockito.any(Pageable.class))).thenReturn(events(11, 12, 13));
+        relay.poll();
+
+        //execução
+        relay.eventsAfter(10L, 10);
+        List<OutboxEvent> recent = relay.eventsAfter(11L, 10);
+
+        //verificação
+        assertThat(ids(recent)).containsExactly(12L, 13L);
+        Mockito.verify(repository).findRange(Mockito.eq(10L), Mockito.eq(13L), Mockito.any(Pageable.class));
+    }
+
+    private static List<OutboxEvent> events(long... ids) {
+        return Arrays.stream(ids)
+                .mapToObj(id -> OutboxEvent.builder().id(id).aggregate("book").aggregateId(id).type("created")
+                        .payload("{}").createdAt(Instant.now()).build())
+                .collect(Collectors.toList());
+    }
+
+    private static List<Long> ids(List<OutboxEvent> events) {
+        return events.stream().map(OutboxEvent::getId).collect(Collectors.toList());
+    }
+}
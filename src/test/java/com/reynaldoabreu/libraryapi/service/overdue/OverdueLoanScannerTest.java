@@ -0,0 +1,150 @@
+package com.reynaldoabreu.libraryapi.service.overdue;
+
+import com.reynaldoabreu.libraryapi.model.entity.JobCheckpoint;
+import com.reynaldoabreu.libraryapi.model.projection.OverdueLoan;
+import com.reynaldoabreu.libraryapi.model.repository.JobCheckpointRepository;
+import com.reynaldoabreu.libraryapi.model.repository.LoanRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class OverdueLoanScannerTest {
+
+    static final LocalDate TODAY = LocalDate.of(2024, 3, 10);
+
+    @MockBean
+    LoanRepository loanRepository;
+
+    @MockBean
+    JobCheckpointRepository checkpointRepository;
+
+    @MockBean
+    OverdueLoanNotifier notifier;
+
+    @Captor
+    ArgumentCaptor<List<OverdueLoan>> batches;
+
+    OverdueLoanScanner scanner;
+
+    @BeforeEach
+    public void setUp(){
+        OverdueLoanProperties properties = new OverdueLoanProperties();
+        properties.setChunkSize(3);
+        properties.setNotificationBatchSize(2);
+        this.scanner = new OverdueLoanScanner(loanRepository, checkpointRepository, notifier, properties);
+        Mockito.when(checkpointRepository.existsById(OverdueLoanScanner.JOB_NAME)).thenReturn(true);
+        Mockito.when(checkpointRepository.acquire(Mockito.eq(OverdueLoanScanner.JOB_NAME), Mockito.anyString(),
+                Mockito.any(Instant.class), Mockito.any(Instant.class))).thenReturn(1);
+        Mockito.when(checkpointRepository.advance(Mockito.eq(OverdueLoanScanner.JOB_NAME), Mockito.anyString(),
+                Mockito.any(LocalDate.class), Mockito.anyLong(), Mockito.any(Instant.class))).thenReturn(1);
+    }
+
+    @Test
+    @DisplayName("Deve notificar em lotes e avançar a marca d'água a cada bloco lido")
+    public void scanInChunksTest(){
+        //cenario
+        LocalDate loanDate = TODAY.minusDays(5);
+        List<OverdueLoan> firstChunk = List.of(loan(1L, loanDate), loan(2L, loanDate), loan(3L, loanDate));
+        List<OverdueLoan> secondChunk = List.of(loan(4L, loanDate.plusDays(1)));
+        Mockito.when(checkpointRepository.existsById(OverdueLoanScanner.JOB_NAME)).thenReturn(false);
+        Mockito.when(checkpointRepository.findById(OverdueLoanScanner.JOB_NAME))
+                .thenReturn(Optional.of(new JobCheckpoint(OverdueLoanScanner.JOB_NAME, OverdueLoanScanner.START, 0L)));
+        Mockito.when(loanRepository.findOverdueAfter(TODAY.minusDays(3), OverdueLoanScanner.START, 0L, PageRequest.of(0, 3)))
+                .thenReturn(firstChunk);
+        Mockito.when(loanRepository.findOverdueAfter(TODAY.minusDays(3), loanDate, 3L, PageRequest.of(0, 3)))
+                .thenReturn(secondChunk);
+
+        //execução
+        int notified = scanner.scan(TODAY);
+
+        //verificação
+        assertThat(notified).isEqualTo(4);
+        Mockito.verify(notifier, Mockito.times(3)).notify(batches.capture());
+        assertThat(batches.getAllValues()).extracting(List::size).containsExactly(2, 1, 1);
+
+        Mockito.verify(checkpointRepository).saveAndFlush(Mockito.any(JobCheckpoint.class));
+        Mockito.verify(checkpointRepository).advance(Mockito.eq(OverdueLoanScanner.JOB_NAME), Mockito.anyString(),
+                Mockito.eq(loanDate), Mockito.eq(3L), Mockito.any(Instant.class));
+        Mockito.verify(checkpointRepository).advance(Mockito.eq(OverdueLoanScanner.JOB_NAME), Mockito.anyString(),
+                Mockito.eq(loanDate.plusDays(1)), Mockito.eq(4L), Mockito.any(Instant.class));
+        Mockito.verify(checkpointRepository).release(Mockito.eq(OverdueLoanScanner.JOB_NAME), Mockito.anyString());
+    }
+
+    @Test
+    @DisplayName("Deve continuar a partir da marca d'água salva sem notificar nada quando não houver novos atrasos")
+    public void resumeFromCheckpointTest(){
+        //cenario
+        LocalDate lastDate = TODAY.minusDays(4);
+        Mockito.when(checkpointRepository.findById(OverdueLoanScanner.JOB_NAME))
+                .thenReturn(Optional.of(new JobCheckpoint(OverdueLoanScanner.JOB_NAME, lastDate, 42L)));
+        Mockito.when(loanRepository.findOverdueAfter(TODAY.minusDays(3), lastDate, 42L, PageRequest.of(0, 3)))
+                .thenReturn(Collections.emptyList());
+
+        //execução
+        int notified = scanner.scan(TODAY);
+
+        //verificação
+        assertThat(notified).isZero();
+        Mockito.verifyNoInteractions(notifier);
+        Mockito.verify(checkpointRepository, Mockito.never()).advance(Mockito.anyString(), Mockito.anyString(),
+                Mockito.any(), Mockito.anyLong(), Mockito.any());
+    }
+
+    @Test
+    @DisplayName("Deve notificar empréstimos reabertos que ficaram para trás da marca d'água")
+    public void reopenedLoansTest(){
+        //cenario
+        LocalDate lastDate = TODAY.minusDays(4);
+        OverdueLoan reopened = loan(7L, TODAY.minusDays(20));
+        Mockito.when(checkpointRepository.findById(OverdueLoanScanner.JOB_NAME))
+                .thenReturn(Optional.of(new JobCheckpoint(OverdueLoanScanner.JOB_NAME, lastDate, 42L)));
+        Mockito.when(loanRepository.findReopenedOverdue(TODAY.minusDays(3), lastDate, 42L, PageRequest.of(0, 3)))
+                .thenReturn(List.of(reopened));
+
+        //execução
+        int notified = scanner.scan(TODAY);
+
+        //verificação
+        assertThat(notified).isEqualTo(1);
+        Mockito.verify(notifier).notify(List.of(reopened));
+        Mockito.verify(loanRepository).clearReopened(List.of(7L));
+    }
+
+    @Test
+    @DisplayName("Não deve varrer quando outro nó detém o job")
+    public void leaseHeldByAnotherNodeTest(){
+        //cenario
+        Mockito.when(checkpointRepository.acquire(Mockito.eq(OverdueLoanScanner.JOB_NAME), Mockito.anyString(),
+                Mockito.any(Instant.class), Mockito.any(Instant.class))).thenReturn(0);
+
+        //execução
+        int notified = scanner.scan(TODAY);
+
+        //verificação
+        assertThat(notified).isZero();
+        Mockito.verifyNoInteractions(loanRepository, notifier);
+        Mockito.verify(checkpointRepository, Mockito.never()).release(Mockito.anyString(), Mockito.anyString());
+    }
+
+    private static OverdueLoan loan(Long id, LocalDate loanDate) {
+        return new OverdueLoan(id, "Fulano", loanDate, id, "isbn-" + id, "As aventuras");
+    }
+}
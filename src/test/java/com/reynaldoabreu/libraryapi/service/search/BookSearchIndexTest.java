@@ -0,0 +1,114 @@
+package com.reynaldoabreu.libraryapi.service.search;
+
+import com.reynaldoabreu.libraryapi.model.entity.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BookSearchIndexTest {
+
+    BookSearchIndex index;
+
+    @BeforeEach
+    public void setUp(){
+        this.index = new BookSearchIndex();
+        index.index(Book.builder().id(1L).title("As Aventuras de Tom Sawyer").author("Mark Twain").build());
+        index.index(Book.builder().id(2L).title("Memórias Póstumas").author("Machado de Assis").build());
+        index.index(Book.builder().id(3L).title("Dom Casmurro").author("Machado de Assis").build());
+    }
+
+    @Test
+    @DisplayName("Deve encontrar livros ignorando caixa e acentos")
+    public void searchIgnoringCaseAndAccentsTest(){
+
+        List<Long> ids = index.search("MEMORIAS postumas", 10);
+
+        assertThat(ids).containsExactly(2L);
+    }
+
+    @Test
+    @DisplayName("Deve encontrar livros por prefixo exigindo todos os termos")
+    public void searchByPrefixTest(){
+
+        assertThat(index.search("mach", 10)).containsExactlyInAnyOrder(2L, 3L);
+        assertThat(index.search("mach dom", 10)).containsExactly(3L);
+        assertThat(index.search("twain dom", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve priorizar termos exatos e ocorrências no título")
+    public void rankingTest(){
+
+        index.index(Book.builder().id(4L).title("Casa de Machado").author("Fulano").build());
+
+        List<Long> ids = index.search("machado", 10);
+
+        assertThat(ids).containsExactly(4L, 2L, 3L);
+        assertThat(index.search("machado", 1)).containsExactly(4L);
+    }
+
+    @Test
+    @DisplayName("Deve refletir atualizações e remoções no índice")
+    public void updateAndRemoveTest(){
+
+        index.index(Book.builder().id(3L).title("Quincas Borba").author("Machado de Assis").build());
+        index.remove(1L);
+
+        assertThat(index.search("casmurro", 10)).isEmpty();
+        assertThat(index.search("quincas", 10)).containsExactly(3L);
+        assertThat(index.search("sawyer", 10)).isEmpty();
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve reindexar só os campos alterados numa atualização parcial")
+    public void partialUpdateTest(){
+
+        index.update(3L, "Quincas Borba", null);
+
+        assertThat(index.search("casmurro", 10)).isEmpty();
+        assertThat(index.search("quincas machado", 10)).containsExactly(3L);
+
+        index.update(3L, null, "Joaquim Maria");
+
+        assertThat(index.search("quincas joaquim", 10)).containsExactly(3L);
+        assertThat(index.search("machado", 10)).containsExactly(2L);
+    }
+
+    @Test
+    @DisplayName("Deve casar termos curtos só por igualdade")
+    public void shortTokenTest(){
+
+        index.index(Book.builder().id(4L).title("O Ano da Morte").author("M").build());
+
+        assertThat(index.search("m", 10)).containsExactly(4L);
+        assertThat(index.search("ma", 10)).isEmpty();
+        assertThat(index.search("mac", 10)).containsExactlyInAnyOrder(2L, 3L);
+    }
+
+    @Test
+    @DisplayName("Deve reaplicar na reconstrução as escritas feitas durante a leitura")
+    public void rebuildKeepsConcurrentWritesTest(){
+
+        index.rebuild(() -> {
+            // escritas confirmadas depois da leitura da base, que ainda vê o livro 1
+            index.index(Book.builder().id(9L).title("Quincas Borba").author("Machado de Assis").build());
+            index.remove(1L);
+            index.update(3L, "Esaú e Jacó", null);
+            return Stream.of(
+                    Book.builder().id(1L).title("As Aventuras de Tom Sawyer").author("Mark Twain").build(),
+                    Book.builder().id(3L).title("Dom Casmurro").author("Machado de Assis").build());
+        });
+
+        assertThat(index.search("sawyer", 10)).isEmpty();
+        assertThat(index.search("quincas", 10)).containsExactly(9L);
+        assertThat(index.search("esau machado", 10)).containsExactly(3L);
+        assertThat(index.search("memorias", 10)).isEmpty();
+        assertThat(index.size()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,243 @@
+package com.reynaldoabreu.libraryapi.service.stats;
+
+import com.reynaldoabreu.libraryapi.model.entity.Book;
+import com.reynaldoabreu.libraryapi.model.entity.Loan;
+import com.reynaldoabreu.libraryapi.model.projection.AuthorCount;
+import com.reynaldoabreu.libraryapi.model.repository.BookRepository;
+import com.reynaldoabreu.libraryapi.model.repository.CatalogStatRepository;
+import com.reynaldoabreu.libraryapi.model.repository.LoanRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// sem a transação do teste: os contadores só andam depois do commit das escritas
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+@Import(CatalogStatistics.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class CatalogStatisticsTest {
+
+    @Autowired
+    CatalogStatistics statistics;
+
+    @Autowired
+    CatalogStatRepository statRepository;
+
+    @SpyBean
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    public void tearDown(){
+        Mockito.reset(bookRepository);
+        loanRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+        statRepository.deleteAllInBatch();
+        statistics.rebuild();
+    }
+
+    @Test
+    @DisplayName("Deve recalcular as estatísticas a partir das tabelas de livros e empréstimos")
+    public void rebuildTest(){
+        //cenario
+        Book first = bookRepository.save(createBook("1", "Artur"));
+        bookRepository.save(createBook("2", "Artur"));
+        bookRepository.save(createBook("3", "Clarice"));
+        loanRepository.save(Loan.builder().book(first).costumer("Fulano").loanDate(LocalDate.now()).returned(true).build());
+        loanRepository.save(Loan.builder().book(first).costumer("Ciclano").loanDate(LocalDate.now()).returned(false).build());
+
+        //execução
+        statistics.rebuild();
+
+        //verificação
+        assertThat(statistics.books()).isEqualTo(3);
+        assertThat(statistics.authors()).isEqualTo(2);
+        assertThat(statistics.loans()).isEqualTo(2);
+        assertThat(statistics.activeLoans()).isEqualTo(1);
+        assertThat(statistics.topAuthors(1)).containsExactly(new AuthorCount("Artur", 2));
+        assertThat(statRepository.findById("books")).hasValueSatisfying(stat -> assertThat(stat.getTotal()).isEqualTo(3));
+    }
+
+    @Test
+    @DisplayName("Deve somar na tabela os incrementos acumulados no flush")
+    public void flushTest(){
+        //cenario
+        statistics.rebuild();
+        statistics.bookAdded();
+        statistics.bookAdded();
+        statistics.loanCreated();
+        statistics.loanReturned();
+
+        //execução
+        statistics.flush();
+
+        //verificação
+        assertThat(statRepository.findById("books").get().getTotal()).isEqualTo(2);
+        assertThat(statRepository.findById("loans").get().getTotal()).isEqualTo(1);
+        assertThat(statRepository.findById("loans.active").get().getTotal()).isZero();
+        assertThat(statistics.books()).isEqualTo(2);
+        assertThat(statistics.loans()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Não deve contar duas vezes os incrementos pendentes nem perder os que chegam durante o recálculo")
+    public void rebuildHoldsBackDeltasTest(){
+        //cenario
+        bookRepository.save(createBook("1", "Artur"));
+        statistics.bookAdded();
+        Mockito.doAnswer(invocation -> {
+            // um livro gravado depois do início da leitura: fica fora das contagens
+            bookRepository.save(createBook("2", "Clarice"));
+            statistics.bookAdded();
+            return List.of(new AuthorCount("Artur", 1));
+        }).when(bookRepository).countByAuthor();
+
+        //execução
+        statistics.rebuild();
+        long authorsAfterRebuild = statistics.authors();
+        Mockito.reset(bookRepository);
+        statistics.flush();
+
+        //verificação
+        assertThat(authorsAfterRebuild).isEqualTo(1);
+        assertThat(statistics.books()).isEqualTo(2);
+        assertThat(statistics.authors()).isEqualTo(2);
+        assertThat(statistics.authorBooks("Artur")).isEqualTo(1);
+        assertThat(statistics.authorBooks("Clarice")).isEqualTo(1);
+        assertThat(statRepository.findById("books").get().getTotal()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve manter só os maiores autores no ranking, calculado no flush")
+    public void topAuthorsTest(){
+        //cenario
+        statistics.rebuild();
+        for (int i = 0; i <= CatalogStatistics.MAX_TOP; i++) {
+            bookRepository.save(createBook("a" + i, "Autor " + i));
+            statistics.bookAdded();
+        }
+        bookRepository.save(createBook("1", "Artur"));
+        bookRepository.save(createBook("2", "Artur"));
+        statistics.bookAdded();
+        statistics.bookAdded();
+
+        //execução
+        long before = statistics.authors();
+        statistics.flush();
+
+        //verificação
+        assertThat(before).isZero();
+        assertThat(statistics.authors()).isEqualTo(CatalogStatistics.MAX_TOP + 2);
+        assertThat(statistics.topAuthors(CatalogStatistics.MAX_TOP + 10)).hasSize(CatalogStatistics.MAX_TOP)
+                .first().isEqualTo(new AuthorCount("Artur", 2));
+    }
+
+    @Test
+    @DisplayName("Não deve contar escritas de transações desfeitas")
+    public void rollbackTest(){
+        //cenario
+        statistics.rebuild();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        //execução
+        transaction.executeWithoutResult(status -> {
+            statistics.bookAdded();
+            status.setRollbackOnly();
+        });
+        transaction.executeWithoutResult(status -> statistics.bookAdded());
+
+        //verificação
+        assertThat(statistics.books()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve reler as contagens por autor do banco no flush depois de uma troca de autor")
+    public void authorsChangedTest(){
+        //cenario
+        Book book = bookRepository.save(createBook("1", "Artur"));
+        bookRepository.save(createBook("2", "Artur"));
+        statistics.rebuild();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            bookRepository.updateFields(book.getId(), null, "Clarice", null, Book.now());
+            statistics.authorsChanged();
+        });
+
+        //execução
+        long before = statistics.authorBooks("Clarice");
+        statistics.flush();
+
+        //verificação
+        assertThat(before).isZero();
+        assertThat(statistics.authorBooks("Artur")).isEqualTo(1);
+        assertThat(statistics.authorBooks("Clarice")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Não deve reler as contagens por autor num flush sem escritas de livros")
+    public void flushWithoutBookWritesTest(){
+        //cenario
+        statistics.rebuild();
+        statistics.loanCreated();
+        Mockito.clearInvocations(bookRepository);
+
+        //execução
+        statistics.flush();
+
+        //verificação
+        Mockito.verify(bookRepository, Mockito.never()).countByAuthor();
+    }
+
+    @Test
+    @DisplayName("Deve descartar no flush os incrementos contados antes do recálculo feito por outro nó")
+    public void staleGenerationFlushTest(){
+        //cenario
+        statistics.rebuild();
+        bookRepository.save(createBook("1", "Artur"));
+        statistics.bookAdded();
+        // outro nó recalcula: o snapshot já tem o livro, ainda pendente neste
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> statRepository.findAll().forEach(stat -> {
+            stat.setGeneration(stat.getGeneration() + 1);
+            if (stat.getName().equals("books")) {
+                stat.setTotal(1);
+            }
+        }));
+
+        //execução
+        statistics.flush();
+
+        //verificação
+        assertThat(statRepository.findById("books").get().getTotal()).isEqualTo(1);
+        assertThat(statistics.books()).isEqualTo(1);
+
+        statistics.bookAdded();
+        statistics.flush();
+        assertThat(statRepository.findById("books").get().getTotal()).isEqualTo(2);
+    }
+
+    private static Book createBook(String isbn, String author) {
+        return Book.builder().title("As aventuras").author(author).isbn(isbn).build();
+    }
+}
@@ -0,0 +1,135 @@
+package com.reynaldoabreu.libraryapi.service.writebehind;
+
+import com.reynaldoabreu.libraryapi.exception.BusinessException;
+import com.reynaldoabreu.libraryapi.model.entity.Book;
+import com.reynaldoabreu.libraryapi.model.entity.Loan;
+import com.reynaldoabreu.libraryapi.model.repository.LoanRepository;
+import com.reynaldoabreu.libraryapi.service.BookService;
+import com.reynaldoabreu.libraryapi.service.LoanService;
+import com.reynaldoabreu.libraryapi.service.availability.AvailabilityIndex;
+import com.reynaldoabreu.libraryapi.service.idempotency.IdempotencyStore;
+import com.reynaldoabreu.libraryapi.service.outbox.EventOutbox;
+import com.reynaldoabreu.libraryapi.service.stats.CatalogStatistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class LoanBatchWriterTest {
+
+    @MockBean
+    BookService bookService;
+
+    @MockBean
+    LoanService loanService;
+
+    @MockBean
+    LoanRepository loanRepository;
+
+    @MockBean
+    CatalogStatistics statistics;
+
+    @MockBean
+    AvailabilityIndex availability;
+
+    @MockBean
+    EventOutbox outbox;
+
+    @MockBean
+    IdempotencyStore idempotencyStore;
+
+    @MockBean
+    PlatformTransactionManager transactionManager;
+
+    LoanBatchWriter writer;
+
+    @BeforeEach
+    public void setUp(){
+        this.writer = new LoanBatchWriter(bookService, loanService, loanRepository, statistics, availability, outbox,
+                idempotencyStore, transactionManager);
+        Mockito.when(bookService.getBooksByIsbn(Mockito.any())).thenReturn(Map.of(
+                "1", Book.builder().id(1L).isbn("1").build(),
+                "2", Book.builder().id(2L).isbn("2").build(),
+                "3", Book.builder().id(3L).isbn("3").build()));
+    }
+
+    @Test
+    @DisplayName("Deve gravar o lote numa única chamada e recusar individualmente os pedidos inválidos")
+    public void writeBatchTest(){
+        //cenario
+        PendingLoan first = new PendingLoan("1", "Fulano", LocalDate.now(), "k1");
+        PendingLoan missing = pending("9");
+        PendingLoan sameBook = pending("1");
+        PendingLoan active = pending("2");
+        PendingLoan third = pending("3");
+        Mockito.when(loanRepository.findActiveBookIds(Mockito.any())).thenReturn(Set.of(2L));
+        Mockito.when(loanRepository.saveAllAndFlush(Mockito.anyList())).thenAnswer(invocation -> {
+            List<Loan> loans = new ArrayList<>(invocation.getArgument(0));
+            for (int i = 0; i < loans.size(); i++) {
+                loans.get(i).setId(100L + i);
+            }
+            return loans;
+        });
+
+        //execução
+        writer.write(List.of(first, missing, sameBook, active, third));
+
+        //verificação
+        assertThat(first.getResult()).isCompletedWithValue(100L);
+        assertThat(third.getResult()).isCompletedWithValue(101L);
+        assertThat(missing.getResult()).isCompletedExceptionally();
+        assertThat(sameBook.getResult()).isCompletedExceptionally();
+        assertThat(active.getResult()).isCompletedExceptionally();
+        Mockito.verify(loanRepository, Mockito.times(1)).saveAllAndFlush(Mockito.anyList());
+        Mockito.verify(bookService, Mockito.times(1)).getBooksByIsbn(Mockito.any());
+        Mockito.verify(statistics, Mockito.times(2)).loanCreated();
+        Mockito.verify(outbox, Mockito.times(1)).loansCreated(Mockito.anyList());
+        Mockito.verify(idempotencyStore, Mockito.times(1)).completeAll(Map.of("k1", 100L));
+        Mockito.verify(idempotencyStore, Mockito.never()).complete(Mockito.anyString(), Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("Deve gravar um a um quando o lote violar a restrição de empréstimo ativo")
+    public void fallbackToSingleWritesTest(){
+        //cenario
+        PendingLoan first = pending("1");
+        PendingLoan second = pending("2");
+        Mockito.when(loanRepository.findActiveBookIds(Mockito.any())).thenReturn(Set.of());
+        Mockito.when(loanRepository.saveAllAndFlush(Mockito.anyList())).thenThrow(new DataIntegrityViolationException("uk_loan_active_book"));
+        Mockito.when(loanService.save(Mockito.any(Loan.class))).thenAnswer(invocation -> {
+            Loan loan = invocation.getArgument(0);
+            if (loan.getBook().getId() == 1L) {
+                throw new BusinessException("Book already loaned");
+            }
+            loan.setId(7L);
+            return loan;
+        });
+
+        //execução
+        writer.write(List.of(first, second));
+
+        //verificação
+        assertThat(first.getResult()).isCompletedExceptionally();
+        assertThat(second.getResult()).isCompletedWithValue(7L);
+    }
+
+    private static PendingLoan pending(String isbn) {
+        return new PendingLoan(isbn, "Fulano", LocalDate.now(), null);
+    }
+}
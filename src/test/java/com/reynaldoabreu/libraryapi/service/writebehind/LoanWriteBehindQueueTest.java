@@ -0,0 +1,134 @@
+package com.reynaldoabreu.libraryapi.service.writebehind;
+
+import com.reynaldoabreu.libraryapi.exception.QueueFullException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class LoanWriteBehindQueueTest {
+
+    LoanWriteBehindQueue queue;
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        if (queue != null) {
+            queue.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("Deve completar cada pedido quando o lote for gravado")
+    public void submitTest() throws Exception {
+        //cenario
+        LoanBatchWriter writer = Mockito.mock(LoanBatchWriter.class);
+        Mockito.doAnswer(invocation -> {
+            List<PendingLoan> batch = invocation.getArgument(0);
+            batch.forEach(pending -> pending.getResult().complete((long) pending.getIsbn().hashCode()));
+            return null;
+        }).when(writer).write(Mockito.anyList());
+        queue = new LoanWriteBehindQueue(writer, properties(16));
+        queue.start();
+
+        //execução
+        CompletableFuture<Long> first = queue.submit("1", "Fulano", LocalDate.now(), null);
+        CompletableFuture<Long> second = queue.submit("2", "Ciclano", LocalDate.now(), null);
+
+        //verificação
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo((long) "1".hashCode());
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo((long) "2".hashCode());
+    }
+
+    @Test
+    @DisplayName("Deve recusar pedidos com a fila cheia")
+    public void queueFullTest() throws Exception {
+        //cenario: o escritor fica preso no primeiro lote
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch writing = new CountDownLatch(1);
+        LoanBatchWriter writer = Mockito.mock(LoanBatchWriter.class);
+        Mockito.doAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            List<PendingLoan> batch = invocation.getArgument(0);
+            batch.forEach(pending -> pending.getResult().complete(1L));
+            return null;
+        }).when(writer).write(Mockito.anyList());
+        queue = new LoanWriteBehindQueue(writer, properties(2));
+        queue.start();
+        queue.submit("0", "Fulano", LocalDate.now(), null);
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+
+        //execução
+        queue.submit("1", "Fulano", LocalDate.now(), null);
+        queue.submit("2", "Fulano", LocalDate.now(), null);
+        Throwable exception = catchThrowable(() -> queue.submit("3", "Fulano", LocalDate.now(), null));
+        release.countDown();
+
+        //verificação
+        assertThat(exception).isInstanceOf(QueueFullException.class);
+    }
+
+    @Test
+    @DisplayName("Deve completar todo pedido aceito mesmo com o desligamento concorrente")
+    public void submitDuringStopTest() throws Exception {
+        //cenario
+        LoanBatchWriter writer = Mockito.mock(LoanBatchWriter.class);
+        Mockito.doAnswer(invocation -> {
+            List<PendingLoan> batch = invocation.getArgument(0);
+            batch.forEach(pending -> pending.getResult().complete(1L));
+            return null;
+        }).when(writer).write(Mockito.anyList());
+        queue = new LoanWriteBehindQueue(writer, properties(64));
+        queue.start();
+
+        ConcurrentLinkedQueue<CompletableFuture<Long>> accepted = new ConcurrentLinkedQueue<>();
+        CountDownLatch producing = new CountDownLatch(4);
+        List<Thread> producers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread producer = new Thread(() -> {
+                producing.countDown();
+                while (true) {
+                    try {
+                        accepted.add(queue.submit("1", "Fulano", LocalDate.now(), null));
+                    } catch (QueueFullException ex) {
+                        if (ex.getMessage().contains("shutting down")) {
+                            return;
+                        }
+                    }
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+        assertThat(producing.await(5, TimeUnit.SECONDS)).isTrue();
+
+        //execução
+        queue.stop();
+        for (Thread producer : producers) {
+            producer.join(TimeUnit.SECONDS.toMillis(5));
+        }
+
+        //verificação: nada ficou esquecido na fila
+        assertThat(accepted).isNotEmpty().allMatch(CompletableFuture::isDone);
+        assertThat(queue.size()).isZero();
+    }
+
+    private static WriteBehindProperties properties(int capacity) {
+        WriteBehindProperties properties = new WriteBehindProperties();
+        properties.setEnabled(true);
+        properties.setCapacity(capacity);
+        properties.setBatchSize(100);
+        return properties;
+    }
+}